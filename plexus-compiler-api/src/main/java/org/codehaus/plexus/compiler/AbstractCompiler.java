@@ -24,14 +24,21 @@ package org.codehaus.plexus.compiler;
  * SOFTWARE.
  */
 
+import org.codehaus.plexus.compiler.util.CompactPathSet;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
 import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * @author <a href="mailto:jason@maven.org">Jason van Zyl </a>
@@ -40,7 +47,7 @@ import java.util.Set;
  */
 public abstract class AbstractCompiler
     extends AbstractLogEnabled
-    implements Compiler
+    implements AsyncCompiler
 {
     protected static final String EOL = System.getProperty( "line.separator" );
 
@@ -80,6 +87,23 @@ public abstract class AbstractCompiler
         throw new CompilerNotImplementedException("The performCompile method has not been implemented.");
     }
 
+    public Future<CompilerResult> performCompileAsync( final CompilerConfiguration configuration, Executor executor )
+        throws CompilerException
+    {
+        FutureTask<CompilerResult> task = new FutureTask<CompilerResult>( new Callable<CompilerResult>()
+        {
+            public CompilerResult call()
+                throws CompilerException
+            {
+                return performCompile( configuration );
+            }
+        } );
+
+        executor.execute( task );
+
+        return task;
+    }
+
     @Deprecated
     public List<CompilerError> compile(CompilerConfiguration configuration)
             throws CompilerException
@@ -126,6 +150,83 @@ public abstract class AbstractCompiler
         return true;
     }
 
+    /**
+     * @return the identifier reported to the {@link CompilerMetrics}, by convention the role hint of the component
+     * @since 2.5
+     */
+    protected String getCompilerId()
+    {
+        return getClass().getName();
+    }
+
+    // ----------------------------------------------------------------------
+    // Metrics
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return a span to {@link CompilerSpan#end() end} once the timed phase is over, reported to the
+     *         {@link CompilerMetrics} and the flight recorder
+     */
+    protected CompilerSpan startTimer( CompilerConfiguration config, CompilerMetrics.Timer timer )
+    {
+        return CompilerSpan.start( config, getCompilerId(), timer );
+    }
+
+    protected void count( CompilerConfiguration config, CompilerMetrics.Counter counter, long amount )
+    {
+        CompilerMetrics metrics = config.getCompilerMetrics();
+        if ( metrics.isEnabled() )
+        {
+            metrics.count( getCompilerId(), counter, amount );
+        }
+    }
+
+    /**
+     * {@link #getSourceFiles(CompilerConfiguration) Gets the source files}, reporting the time spent scanning and the
+     * number of files found. Called before compiling to the output location.
+     */
+    protected String[] scanSourceFiles( CompilerConfiguration config )
+    {
+        UpToDateCheck.compiling( config );
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.SCANNING );
+        String[] sourceFiles = getSourceFiles( config );
+        span.end( sourceFiles.length );
+        count( config, CompilerMetrics.Counter.FILES_SCANNED, sourceFiles.length );
+        return sourceFiles;
+    }
+
+    /**
+     * Reports the size of the given source files and of the in-memory sources as
+     * {@link CompilerMetrics.Counter#BYTES_READ}, if the metrics are enabled.
+     */
+    protected void countSourceBytes( CompilerConfiguration config, String[] sourceFiles )
+    {
+        if ( !config.getCompilerMetrics().isEnabled() )
+        {
+            return;
+        }
+        long bytes = 0;
+        if ( sourceFiles != null )
+        {
+            for ( String sourceFile : sourceFiles )
+            {
+                bytes += new File( sourceFile ).length();
+            }
+        }
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            try
+            {
+                bytes += source.getCharContent().length();
+            }
+            catch ( UnsupportedEncodingException e )
+            {
+                // reported by the compiler when it reads the source
+            }
+        }
+        count( config, CompilerMetrics.Counter.BYTES_READ, bytes );
+    }
+
     // ----------------------------------------------------------------------
     // Utility Methods
     // ----------------------------------------------------------------------
@@ -172,7 +273,7 @@ public abstract class AbstractCompiler
 
         String[] sourceDirectorySources = scanner.getIncludedFiles();
 
-        Set<String> sources = new HashSet<String>();
+        Set<String> sources = new CompactPathSet();
 
         for ( String sourceDirectorySource : sourceDirectorySources )
         {
@@ -186,37 +287,114 @@ public abstract class AbstractCompiler
 
     protected static String[] getSourceFiles( CompilerConfiguration config )
     {
-        Set<String> sources = new HashSet<String>();
-
-        Set<File> sourceFiles = config.getSourceFiles();
+        CompactPathSet sources = config.getSourcePaths();
 
-        if ( sourceFiles != null && !sourceFiles.isEmpty() )
-        {
-            for ( File sourceFile : sourceFiles )
-            {
-                sources.add( sourceFile.getAbsolutePath() );
-            }
-        }
-        else
+        if ( sources.isEmpty() )
         {
+            sources = new CompactPathSet();
+
             for ( String sourceLocation : config.getSourceLocations() )
             {
                 sources.addAll( getSourceFilesForSourceRoot( config, sourceLocation ) );
             }
         }
 
-        String[] result;
+        return sources.toArray();
+    }
 
-        if ( sources.isEmpty() )
+    /**
+     * Fails the running compilation if its thread has been interrupted, as done when the future returned by
+     * {@link #performCompileAsync(CompilerConfiguration, Executor)} gets cancelled. The interrupted status is kept
+     * so the caller can still see it.
+     *
+     * @throws CompilerCancelledException if the current thread has been interrupted
+     */
+    protected static void checkCancelled()
+        throws CompilerCancelledException
+    {
+        if ( Thread.currentThread().isInterrupted() )
         {
-            result = new String[0];
+            throw new CompilerCancelledException( "The compilation has been cancelled." );
         }
-        else
+    }
+
+    /**
+     * Waits for the {@link CompilerConfiguration#getHeapAdmissionController() heap admission controller}, if
+     * any, to admit an in-process compilation of the given sources.
+     *
+     * @return the permit to pass to {@link #release(HeapAdmissionController.Permit)} once done, or
+     *         <code>null</code> if no controller is configured
+     */
+    protected static HeapAdmissionController.Permit admit( CompilerConfiguration config, String[] sourceFiles )
+        throws CompilerException
+    {
+        HeapAdmissionController controller = config.getHeapAdmissionController();
+        if ( controller == null )
+        {
+            return null;
+        }
+        try
+        {
+            return controller.admit( config, sourceFiles );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new CompilerCancelledException( "The compilation has been cancelled while waiting for heap.", e );
+        }
+    }
+
+    protected static void release( HeapAdmissionController.Permit permit )
+    {
+        if ( permit != null )
         {
-            result = sources.toArray( new String[sources.size()] );
+            permit.release();
         }
+    }
 
-        return result;
+    /**
+     * Writes the {@link CompilerConfiguration#getInMemorySources() in-memory sources} below the given directory in
+     * the configured source encoding, for compilers which can only read source files from disk.
+     *
+     * @return the absolute paths of the written files
+     */
+    protected static String[] writeInMemorySources( CompilerConfiguration config, File directory )
+        throws CompilerException
+    {
+        List<String> paths = new ArrayList<String>();
+
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            File file = new File( directory, source.getPath() );
+            file.getParentFile().mkdirs();
+            try
+            {
+                FileUtils.fileWrite( file.getAbsolutePath(), config.getSourceEncoding(), source.getCharContent() );
+            }
+            catch ( IOException e )
+            {
+                throw new CompilerException( "Unable to write the in-memory source " + source + " to " + file, e );
+            }
+            paths.add( file.getAbsolutePath() );
+        }
+
+        return paths.toArray( new String[paths.size()] );
+    }
+
+    /**
+     * Fails when {@link CompilerConfiguration#getInMemorySources() in-memory sources} are configured for a compiler
+     * which cannot compile them, rather than leaving them out of an otherwise successful compilation.
+     *
+     * @param compilerId the role hint of the compiler, for the message
+     */
+    protected static void rejectInMemorySources( CompilerConfiguration config, String compilerId )
+        throws CompilerException
+    {
+        if ( !config.getInMemorySources().isEmpty() )
+        {
+            throw new CompilerException(
+                "The " + compilerId + " compiler cannot compile in-memory sources: " + config.getInMemorySources() );
+        }
     }
 
     protected static String makeClassName( String fileName, String sourceDir )
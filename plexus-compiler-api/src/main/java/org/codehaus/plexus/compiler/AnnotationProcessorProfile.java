@@ -0,0 +1,111 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The time an annotation processor took during a compilation, as reported by compilers supporting
+ * {@link CompilerConfiguration#setProfileAnnotationProcessors(boolean)}.
+ *
+ * @since 2.5
+ */
+public class AnnotationProcessorProfile
+{
+    private final String processor;
+
+    private long initNanos;
+
+    private final List<Long> roundNanos = new ArrayList<Long>();
+
+    private int generatedFiles;
+
+    /**
+     * @param processor the class name of the processor
+     */
+    public AnnotationProcessorProfile( String processor )
+    {
+        this.processor = processor;
+    }
+
+    public String getProcessor()
+    {
+        return processor;
+    }
+
+    /**
+     * @return the nanoseconds spent initializing the processor
+     */
+    public long getInitNanos()
+    {
+        return initNanos;
+    }
+
+    public void addInitNanos( long nanos )
+    {
+        initNanos += nanos;
+    }
+
+    /**
+     * @return the nanoseconds spent processing each round the processor has been called for
+     */
+    public List<Long> getRoundNanos()
+    {
+        return Collections.unmodifiableList( roundNanos );
+    }
+
+    public void addRound( long nanos )
+    {
+        roundNanos.add( nanos );
+    }
+
+    /**
+     * @return the nanoseconds spent initializing the processor and processing all rounds
+     */
+    public long getTotalNanos()
+    {
+        long total = initNanos;
+        for ( Long nanos : roundNanos )
+        {
+            total += nanos.longValue();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of source, class and resource files the processor created
+     */
+    public int getGeneratedFiles()
+    {
+        return generatedFiles;
+    }
+
+    public void addGeneratedFile()
+    {
+        generatedFiles++;
+    }
+
+    public String toString()
+    {
+        return processor + ": " + getTotalNanos() / 1000000 + " ms in " + roundNanos.size() + " rounds, "
+            + generatedFiles + " generated files";
+    }
+}
@@ -0,0 +1,47 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Compiler} which can run a compilation on a caller supplied {@link Executor}.
+ * <p/>
+ * The returned {@link Future} can be used to wait for the {@link CompilerResult} or to abort the
+ * compilation: {@link Future#cancel(boolean) cancel( true )} interrupts the thread running the compilation,
+ * which makes the implementation stop the in-process compiler or destroy the forked process as soon as it can.
+ * A compilation noticing the interruption fails with a {@link CompilerCancelledException}.
+ *
+ * @since 2.5
+ */
+public interface AsyncCompiler
+    extends Compiler
+{
+    /**
+     * Submits the compilation described by the configuration to the executor.
+     *
+     * @param configuration the configuration description of the compilation to perform
+     * @param executor      the executor running the compilation, the current thread is never blocked
+     * @return the pending result of the compilation
+     * @throws CompilerException if the compilation could not be submitted
+     */
+    Future<CompilerResult> performCompileAsync( CompilerConfiguration configuration, Executor executor )
+        throws CompilerException;
+}
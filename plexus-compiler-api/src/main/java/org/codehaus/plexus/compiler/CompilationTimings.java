@@ -0,0 +1,121 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The wall time a compilation spent per phase and per compilation unit, as reported by compilers supporting
+ * {@link CompilerConfiguration#setCollectTimings(boolean)}.
+ * <p/>
+ * Phases are named after the events of the compiler, for javac the <code>TaskEvent.Kind</code> constants:
+ * <code>PARSE</code>, <code>ENTER</code>, <code>ANALYZE</code>, <code>GENERATE</code>,
+ * <code>ANNOTATION_PROCESSING</code>, ... The time of a file is the sum of the phases javac reported for it, so it
+ * leaves out the time spent on all files at once, like annotation processing.
+ *
+ * @since 2.5
+ */
+public class CompilationTimings
+{
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<String, Long>();
+
+    private final Map<String, Long> fileNanos = new LinkedHashMap<String, Long>();
+
+    public void addPhase( String phase, long nanos )
+    {
+        add( phaseNanos, phase, nanos );
+    }
+
+    public void addFile( String file, long nanos )
+    {
+        add( fileNanos, file, nanos );
+    }
+
+    /**
+     * @return the nanoseconds spent per phase, in the order the phases were first reported
+     */
+    public Map<String, Long> getPhaseNanos()
+    {
+        return Collections.unmodifiableMap( phaseNanos );
+    }
+
+    /**
+     * @return the nanoseconds spent per file, in the order the files were first reported
+     */
+    public Map<String, Long> getFileNanos()
+    {
+        return Collections.unmodifiableMap( fileNanos );
+    }
+
+    /**
+     * @return the nanoseconds spent in the given phase, <code>0</code> if it has not been reported
+     */
+    public long getPhaseNanos( String phase )
+    {
+        Long nanos = phaseNanos.get( phase );
+        return nanos == null ? 0L : nanos.longValue();
+    }
+
+    /**
+     * @return the nanoseconds spent on the given file, <code>0</code> if it has not been reported
+     */
+    public long getFileNanos( String file )
+    {
+        Long nanos = fileNanos.get( file );
+        return nanos == null ? 0L : nanos.longValue();
+    }
+
+    /**
+     * @param count the maximum number of files to return
+     * @return the files which took the most time, slowest first
+     */
+    public List<String> getSlowestFiles( int count )
+    {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>( fileNanos.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<String, Long>>()
+        {
+            public int compare( Map.Entry<String, Long> e1, Map.Entry<String, Long> e2 )
+            {
+                return e2.getValue().compareTo( e1.getValue() );
+            }
+        } );
+        List<String> files = new ArrayList<String>( Math.min( count, entries.size() ) );
+        for ( int i = 0; i < count && i < entries.size(); i++ )
+        {
+            files.add( entries.get( i ).getKey() );
+        }
+        return files;
+    }
+
+    private static void add( Map<String, Long> nanos, String key, long amount )
+    {
+        Long previous = nanos.get( key );
+        nanos.put( key, previous == null ? amount : previous.longValue() + amount );
+    }
+
+    public String toString()
+    {
+        return "phases " + phaseNanos + ", slowest files " + getSlowestFiles( 10 );
+    }
+}
@@ -0,0 +1,211 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Estimates how much heap an in-process compilation needs, for use by a {@link HeapAdmissionController}.
+ * <p/>
+ * Estimates start from a linear model over the number and size of the sources, in-memory ones included, and the
+ * size of the classpath.
+ * Once a compilation finishes, the bytes it allocated are recorded: later compilations into the same output
+ * location reuse that figure, and the model is scaled by how far it was off on average. The learned figures can
+ * be {@link #store(File) stored} and {@link #load(File) loaded} to carry them across builds.
+ *
+ * @since 2.5
+ */
+public class CompileHeapEstimator
+{
+    static final long BASE_BYTES = 16L * 1024 * 1024;
+
+    static final long BYTES_PER_SOURCE_FILE = 64L * 1024;
+
+    static final long BYTES_PER_SOURCE_BYTE = 8;
+
+    static final long BYTES_PER_CLASSPATH_ENTRY = 256L * 1024;
+
+    /**
+     * Only a fraction of the classes on the classpath get loaded into the symbol table.
+     */
+    static final long CLASSPATH_BYTES_DIVISOR = 8;
+
+    private static final double LEARNING_RATE = 0.5;
+
+    private static final String CORRECTION_KEY = "*correction*";
+
+    private final Map<String, Long> learned = new HashMap<String, Long>();
+
+    private double correction = 1.0;
+
+    private double retainedFraction = 0.25;
+
+    /**
+     * Computes the model estimate, ignoring anything learned so far.
+     */
+    public long model( CompilerConfiguration config, String[] sourceFiles )
+    {
+        long bytes = BASE_BYTES;
+
+        if ( sourceFiles != null )
+        {
+            for ( String sourceFile : sourceFiles )
+            {
+                bytes += BYTES_PER_SOURCE_FILE + BYTES_PER_SOURCE_BYTE * new File( sourceFile ).length();
+            }
+        }
+
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            bytes += BYTES_PER_SOURCE_FILE + BYTES_PER_SOURCE_BYTE * source.getSize();
+        }
+
+        for ( String entry : config.getClasspathEntries() )
+        {
+            File file = new File( entry );
+            bytes += BYTES_PER_CLASSPATH_ENTRY;
+            if ( file.isFile() )
+            {
+                bytes += file.length() / CLASSPATH_BYTES_DIVISOR;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @param modelled the result of {@link #model(CompilerConfiguration, String[])} for the same compilation
+     */
+    public synchronized long estimate( CompilerConfiguration config, long modelled )
+    {
+        Long previous = config.getOutputLocation() == null ? null : learned.get( config.getOutputLocation() );
+        if ( previous != null )
+        {
+            return previous;
+        }
+        return (long) ( modelled * correction );
+    }
+
+    /**
+     * Learns from a finished compilation.
+     *
+     * @param modelled       the model estimate the compilation was admitted with
+     * @param allocatedBytes the bytes allocated by the compiling thread
+     */
+    public synchronized void record( CompilerConfiguration config, long modelled, long allocatedBytes )
+    {
+        long needed = (long) ( allocatedBytes * retainedFraction );
+        if ( needed <= 0 || modelled <= 0 )
+        {
+            return;
+        }
+
+        String key = config.getOutputLocation();
+        if ( key != null )
+        {
+            Long previous = learned.get( key );
+            learned.put( key, previous == null ? needed : (long) ( previous + LEARNING_RATE * ( needed - previous ) ) );
+        }
+
+        double ratio = Math.min( 10, Math.max( 0.1, (double) needed / modelled ) );
+        correction += LEARNING_RATE * ( ratio - correction );
+    }
+
+    /**
+     * The fraction of the allocated bytes assumed to be live at the same time, 0.25 by default. Allocation is
+     * used as the learning signal as it can be measured per thread while other compilations are running.
+     */
+    public void setRetainedFraction( double retainedFraction )
+    {
+        this.retainedFraction = retainedFraction;
+    }
+
+    public double getRetainedFraction()
+    {
+        return retainedFraction;
+    }
+
+    public synchronized void load( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+
+        for ( Map.Entry<Object, Object> entry : properties.entrySet() )
+        {
+            String key = (String) entry.getKey();
+            try
+            {
+                if ( CORRECTION_KEY.equals( key ) )
+                {
+                    correction = Double.parseDouble( (String) entry.getValue() );
+                }
+                else
+                {
+                    learned.put( key, Long.valueOf( (String) entry.getValue() ) );
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                // ignore the corrupt entry, it will be learned again
+            }
+        }
+    }
+
+    public synchronized void store( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Long> entry : learned.entrySet() )
+        {
+            properties.setProperty( entry.getKey(), entry.getValue().toString() );
+        }
+        properties.setProperty( CORRECTION_KEY, Double.toString( correction ) );
+
+        if ( file.getParentFile() != null )
+        {
+            file.getParentFile().mkdirs();
+        }
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            properties.store( out, "Learned heap estimates of plexus compiler runs" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
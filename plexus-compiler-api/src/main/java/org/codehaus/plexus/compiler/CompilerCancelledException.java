@@ -0,0 +1,40 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Thrown when a compilation was aborted because the thread running it has been interrupted,
+ * usually through {@link java.util.concurrent.Future#cancel(boolean)} on the result of
+ * {@link AsyncCompiler#performCompileAsync(CompilerConfiguration, java.util.concurrent.Executor)}.
+ *
+ * @since 2.5
+ */
+public class CompilerCancelledException
+    extends CompilerException
+{
+    public CompilerCancelledException( String message )
+    {
+        super( message );
+    }
+
+    public CompilerCancelledException( String message, Throwable cause )
+    {
+        super( message, cause );
+    }
+}
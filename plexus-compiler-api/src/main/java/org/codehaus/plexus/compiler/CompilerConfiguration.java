@@ -24,7 +24,11 @@ package org.codehaus.plexus.compiler;
  * SOFTWARE.
  */
 
+import org.codehaus.plexus.compiler.util.CompactPathSet;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -40,16 +44,18 @@ public class CompilerConfiguration
 {
     private String outputLocation;
 
-    private List<String> classpathEntries = new LinkedList<String>();
+    private CompactPathSet classpathEntries = new CompactPathSet();
 
     // ----------------------------------------------------------------------
     // Source Files
     // ----------------------------------------------------------------------
 
-    private Set<File> sourceFiles = new HashSet<File>();
+    private CompactPathSet sourceFiles = new CompactPathSet();
 
     private List<String> sourceLocations = new LinkedList<String>();
 
+    private List<InMemorySource> inMemorySources = new ArrayList<InMemorySource>();
+
     private Set<String> includes = new HashSet<String>();
 
     private Set<String> excludes = new HashSet<String>();
@@ -118,6 +124,48 @@ public class CompilerConfiguration
      */
     private String[] annotationProcessors;
 
+    /**
+     * -processorpath parameter in jdk 1.6+
+     * @since 2.5
+     */
+    private List<String> processorPathEntries = Collections.emptyList();
+
+    /**
+     * whether to return the time spent by each annotation processor with the result
+     * @since 2.5
+     */
+    private boolean profileAnnotationProcessors;
+
+    /**
+     * where to keep the files generated by annotation processors, to replay them when their inputs did not change
+     * @since 2.5
+     */
+    private File annotationProcessorCacheDirectory;
+
+    /**
+     * number of errors after which to stop compiling, <code>0</code> for no limit
+     * @since 2.5
+     */
+    private int maxErrors;
+
+    /**
+     * number of warnings and notes to return per message code, <code>0</code> to return them all
+     * @since 2.5
+     */
+    private int maxWarningsPerCode;
+
+    /**
+     * where to record the last successful compilation, to skip the next one when nothing changed
+     * @since 2.5
+     */
+    private File upToDateManifest;
+
+    /**
+     * stamps of the directory classpath entries shared with the other compilations of the build
+     * @since 2.5
+     */
+    private UpToDateCheck.DirectoryStamps directoryStamps;
+
     /**
      * default value {@link CompilerReuseStrategy.ReuseCreated}
      *
@@ -131,6 +179,46 @@ public class CompilerConfiguration
      */
     private boolean forceJavacCompilerUse=false;
 
+    /**
+     * gates in-process compilations against a heap budget shared with concurrent compilations
+     * @since 2.5
+     */
+    private HeapAdmissionController heapAdmissionController;
+
+    /**
+     * jar to write the compiled classes to, in addition to or instead of the output location
+     * @since 2.5
+     */
+    private File outputJarFile;
+
+    /**
+     * whether classes are written to the output location when an output jar is set
+     * @since 2.5
+     */
+    private boolean explodedOutput = true;
+
+    /**
+     * jar to write the API of the compiled classes to
+     * @since 2.5
+     */
+    private File abiJar;
+
+    /**
+     * @since 2.5
+     */
+    private CompilerMetrics compilerMetrics = CompilerMetrics.NO_OP;
+
+    /**
+     * @since 2.5
+     */
+    private TraceEventSink traceEventSink;
+
+    /**
+     * whether to return the time spent per phase and per file with the result
+     * @since 2.5
+     */
+    private boolean collectTimings;
+
     // ----------------------------------------------------------------------
     //
     // ----------------------------------------------------------------------
@@ -154,21 +242,21 @@ public class CompilerConfiguration
         classpathEntries.add( classpathEntry );
     }
 
+    /**
+     * Sets the classpath, an entry given more than once being only kept at its first position.
+     */
     public void setClasspathEntries( List<String> classpathEntries )
     {
-        if ( classpathEntries == null )
+        this.classpathEntries = new CompactPathSet();
+        if ( classpathEntries != null )
         {
-            this.classpathEntries = Collections.emptyList();
-        }
-        else
-        {
-            this.classpathEntries = new LinkedList<String>( classpathEntries );
+            this.classpathEntries.addAll( classpathEntries );
         }
     }
 
     public List<String> getClasspathEntries()
     {
-        return Collections.unmodifiableList( classpathEntries );
+        return classpathEntries.asList();
     }
 
     // ----------------------------------------------------------------------
@@ -177,17 +265,41 @@ public class CompilerConfiguration
 
     public void setSourceFiles( Set<File> sourceFiles )
     {
-        if ( sourceFiles == null )
+        this.sourceFiles = new CompactPathSet();
+        if ( sourceFiles != null )
         {
-            this.sourceFiles = Collections.emptySet();
+            this.sourceFiles.asFileSet().addAll( sourceFiles );
         }
-        else
+    }
+
+    /**
+     * @return the source files to compile, as a view of the {@link #getSourcePaths() absolute paths} of the files
+     *         set or added
+     */
+    public Set<File> getSourceFiles()
+    {
+        return sourceFiles.asFileSet();
+    }
+
+    /**
+     * Sets the source files to compile from their paths, stored as given.
+     *
+     * @since 2.5
+     */
+    public void setSourcePaths( Collection<String> sourcePaths )
+    {
+        this.sourceFiles = new CompactPathSet();
+        if ( sourcePaths != null )
         {
-            this.sourceFiles = new HashSet<File>( sourceFiles );
+            this.sourceFiles.addAll( sourcePaths );
         }
     }
 
-    public Set<File> getSourceFiles()
+    /**
+     * @return the paths of the source files to compile, in the order they were added
+     * @since 2.5
+     */
+    public CompactPathSet getSourcePaths()
     {
         return sourceFiles;
     }
@@ -214,6 +326,34 @@ public class CompilerConfiguration
         return Collections.unmodifiableList( sourceLocations );
     }
 
+    /**
+     * Adds a source to compile along with the ones found in the source locations, without it being on disk.
+     * Supported by the javac and eclipse compilers.
+     *
+     * @since 2.5
+     */
+    public void addInMemorySource( InMemorySource source )
+    {
+        inMemorySources.add( source );
+    }
+
+    public void setInMemorySources( List<InMemorySource> inMemorySources )
+    {
+        if ( inMemorySources == null )
+        {
+            this.inMemorySources = new ArrayList<InMemorySource>();
+        }
+        else
+        {
+            this.inMemorySources = new ArrayList<InMemorySource>( inMemorySources );
+        }
+    }
+
+    public List<InMemorySource> getInMemorySources()
+    {
+        return Collections.unmodifiableList( inMemorySources );
+    }
+
     public void addInclude( String include )
     {
         includes.add( include );
@@ -509,6 +649,70 @@ public class CompilerConfiguration
         return annotationProcessors;
     }
 
+    /**
+     * Sets where to look for annotation processors instead of the classpath. Processors loaded in-process by javac
+     * through javax.tools are loaded once per processor path and reused by later compilations, until one of the
+     * entries changes.
+     *
+     * @since 2.5
+     */
+    public void setProcessorPathEntries( List<String> processorPathEntries )
+    {
+        if ( processorPathEntries == null )
+        {
+            this.processorPathEntries = Collections.emptyList();
+        }
+        else
+        {
+            this.processorPathEntries = new LinkedList<String>( processorPathEntries );
+        }
+    }
+
+    /**
+     * @since 2.5
+     */
+    public List<String> getProcessorPathEntries()
+    {
+        return Collections.unmodifiableList( processorPathEntries );
+    }
+
+    public boolean isProfileAnnotationProcessors()
+    {
+        return profileAnnotationProcessors;
+    }
+
+    /**
+     * Returns the time spent by each annotation processor per round and the number of files it generated with the
+     * {@link CompilerResult#getAnnotationProcessorProfiles() result}. Only supported by javac running in-process
+     * through javax.tools; other compilers ignore it.
+     *
+     * @since 2.5
+     */
+    public void setProfileAnnotationProcessors( boolean profileAnnotationProcessors )
+    {
+        this.profileAnnotationProcessors = profileAnnotationProcessors;
+    }
+
+    public File getAnnotationProcessorCacheDirectory()
+    {
+        return annotationProcessorCacheDirectory;
+    }
+
+    /**
+     * Keeps the sources and resources generated by the annotation processors in the given directory, keyed by the
+     * processor path, the processors and their options, the sources and the classpath. When the key of a compilation
+     * matches, the processors are not run and their output is replayed instead. Generated files are only rewritten
+     * if their content changed, so that unchanged generated sources do not look stale. Requires a
+     * {@link #setGeneratedSourcesDirectory(File) generated sources directory}. Only supported by javac running
+     * in-process through javax.tools; other compilers ignore it.
+     *
+     * @since 2.5
+     */
+    public void setAnnotationProcessorCacheDirectory( File annotationProcessorCacheDirectory )
+    {
+        this.annotationProcessorCacheDirectory = annotationProcessorCacheDirectory;
+    }
+
     public CompilerReuseStrategy getCompilerReuseStrategy()
     {
         return compilerReuseStrategy;
@@ -567,4 +771,182 @@ public class CompilerConfiguration
     {
         this.forceJavacCompilerUse = forceJavacCompilerUse;
     }
+
+    public HeapAdmissionController getHeapAdmissionController()
+    {
+        return heapAdmissionController;
+    }
+
+    public void setHeapAdmissionController( HeapAdmissionController heapAdmissionController )
+    {
+        this.heapAdmissionController = heapAdmissionController;
+    }
+
+    public File getOutputJarFile()
+    {
+        return outputJarFile;
+    }
+
+    /**
+     * Packages the compiled classes and resources into a jar with deterministic entry order and timestamps. The
+     * javac compiler running in-process through javax.tools keeps the class files in memory and writes them straight
+     * into the jar; otherwise the output location is packaged after the compilation. Only written if the
+     * compilation succeeds.
+     */
+    public void setOutputJarFile( File outputJarFile )
+    {
+        this.outputJarFile = outputJarFile;
+    }
+
+    public boolean isExplodedOutput()
+    {
+        return explodedOutput;
+    }
+
+    /**
+     * When an {@link #setOutputJarFile(File) output jar} is set, <code>false</code> skips writing the class files to
+     * the output location where the compiler allows it. Defaults to <code>true</code>.
+     */
+    public void setExplodedOutput( boolean explodedOutput )
+    {
+        this.explodedOutput = explodedOutput;
+    }
+
+    public File getAbiJar()
+    {
+        return abiJar;
+    }
+
+    /**
+     * Writes a jar holding only the API of the compiled classes next to the regular output, for use on the classpath
+     * of dependent compilations: method bodies, private members and debug attributes are left out, so the jar stays
+     * byte-identical when only the implementation changes. Only written if the compilation succeeds.
+     *
+     * @see org.codehaus.plexus.compiler.util.ClassAbiStripper
+     */
+    public void setAbiJar( File abiJar )
+    {
+        this.abiJar = abiJar;
+    }
+
+    /**
+     * @return the metrics to report to, {@link CompilerMetrics#NO_OP} if none has been set
+     */
+    public CompilerMetrics getCompilerMetrics()
+    {
+        return compilerMetrics;
+    }
+
+    public void setCompilerMetrics( CompilerMetrics compilerMetrics )
+    {
+        this.compilerMetrics = compilerMetrics == null ? CompilerMetrics.NO_OP : compilerMetrics;
+    }
+
+    /**
+     * @return the sink to record the phases of the compilation to as trace events, <code>null</code> if none
+     */
+    public TraceEventSink getTraceEventSink()
+    {
+        return traceEventSink;
+    }
+
+    public void setTraceEventSink( TraceEventSink traceEventSink )
+    {
+        this.traceEventSink = traceEventSink;
+    }
+
+    public boolean isCollectTimings()
+    {
+        return collectTimings;
+    }
+
+    /**
+     * Returns the wall time spent per compiler phase and per compilation unit with the
+     * {@link CompilerResult#getTimings() result}. Only supported by javac running in-process through javax.tools;
+     * other compilers ignore it.
+     */
+    public void setCollectTimings( boolean collectTimings )
+    {
+        this.collectTimings = collectTimings;
+    }
+
+    public int getMaxErrors()
+    {
+        return maxErrors;
+    }
+
+    /**
+     * Stops the compilation once the given number of errors has been reported, <code>1</code> stopping on the first
+     * error and <code>0</code>, the default, compiling everything. The errors found so far are returned, with
+     * {@link CompilerResult#isStoppedEarly()} set. Supported by javac, except when run in-process through
+     * <code>com.sun.tools.javac.Main</code>, by the eclipse compiler and by ajc; other compilers ignore it.
+     *
+     * @since 2.5
+     */
+    public void setMaxErrors( int maxErrors )
+    {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return whether the given number of errors reaches the {@link #setMaxErrors(int) maximum}
+     * @since 2.5
+     */
+    public boolean isMaxErrorsReached( int errors )
+    {
+        return maxErrors > 0 && errors >= maxErrors;
+    }
+
+    public int getMaxWarningsPerCode()
+    {
+        return maxWarningsPerCode;
+    }
+
+    /**
+     * Returns only the first warnings and notes of each message code, such as the javac lint category, the others
+     * only being counted by the {@link CompilerMessageStore} returned as {@link CompilerResult#getCompilerMessages()}.
+     * Errors are always returned. Defaults to <code>0</code>, returning every message.
+     *
+     * @since 2.5
+     */
+    public void setMaxWarningsPerCode( int maxWarningsPerCode )
+    {
+        this.maxWarningsPerCode = maxWarningsPerCode;
+    }
+
+    public File getUpToDateManifest()
+    {
+        return upToDateManifest;
+    }
+
+    /**
+     * Records the inputs and the result of each successful compilation in the given file, and returns the recorded
+     * result without compiling when none of the sources, classpath entries or settings changed since, as checked by
+     * {@link UpToDateCheck}. The file should be kept out of the output location so that it is not packaged. Supported
+     * by javac and the eclipse compiler; other compilers ignore it.
+     *
+     * @since 2.5
+     */
+    public void setUpToDateManifest( File upToDateManifest )
+    {
+        this.upToDateManifest = upToDateManifest;
+    }
+
+    public UpToDateCheck.DirectoryStamps getDirectoryStamps()
+    {
+        return directoryStamps;
+    }
+
+    /**
+     * Shares the stamps the {@link #setUpToDateManifest(File) up-to-date check} takes of the directory classpath
+     * entries with the other compilations given the same instance, so that each directory is walked once. Meant to
+     * be set to a new instance for each build, as a directory changed by other tools than the compilers is not walked
+     * again. Defaults to <code>null</code>, walking the directories for every compilation.
+     *
+     * @since 2.5
+     */
+    public void setDirectoryStamps( UpToDateCheck.DirectoryStamps directoryStamps )
+    {
+        this.directoryStamps = directoryStamps;
+    }
 }
@@ -0,0 +1,39 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Records the {@link CompilerSpan}s of compilations as events of a profiler such as Java Flight Recorder. The flight
+ * recorder events live in the <code>plexus-compiler-jfr</code> module, which is picked up when it is on the class
+ * path of the API, so the API itself does not need the flight recorder to build or run.
+ *
+ * @since 2.5
+ */
+public interface CompilerEventRecorder
+{
+    /**
+     * @return the begun event, or <code>null</code> if the timer has no event or nothing records it
+     */
+    Object begin( CompilerMetrics.Timer timer );
+
+    /**
+     * @param event the event returned by {@link #begin(CompilerMetrics.Timer)}
+     */
+    void commit( Object event, String compilerId, String outputLocation, int fileCount );
+}
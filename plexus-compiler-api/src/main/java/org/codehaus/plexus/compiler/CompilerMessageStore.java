@@ -0,0 +1,317 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A compact list of compiler messages for builds reporting floods of identical warnings. File paths and message texts
+ * are interned and the messages are kept in flat arrays, a {@link CompilerMessage} only being created when read.
+ * Messages are counted per kind and per code, and only the first messages of each warning or note code are kept when
+ * a {@link #CompilerMessageStore(int) limit} is given; errors are always kept. Kept messages can be
+ * {@link #set(int, CompilerMessage) replaced} and {@link #remove(int) removed}, which updates the counts, but not
+ * inserted at a given index.
+ *
+ * @since 2.5
+ */
+public class CompilerMessageStore
+    extends AbstractList<CompilerMessage>
+    implements RandomAccess
+{
+    private static final CompilerMessage.Kind[] KINDS = CompilerMessage.Kind.values();
+
+    private final int maxPerCode;
+
+    private final Map<String, String> strings = new HashMap<String, String>();
+
+    private final int[] kindCounts = new int[KINDS.length];
+
+    private final Map<String, int[]> codeCounts = new LinkedHashMap<String, int[]>();
+
+    private int dropped;
+
+    private int size;
+
+    private String[] files = new String[16];
+
+    private String[] texts = new String[16];
+
+    private String[] codes = new String[16];
+
+    private byte[] kinds = new byte[16];
+
+    private int[] positions = new int[16 * 4];
+
+    /**
+     * Creates a store keeping every message.
+     */
+    public CompilerMessageStore()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param maxPerCode the number of warnings and notes to keep per code, <code>0</code> to keep them all
+     */
+    public CompilerMessageStore( int maxPerCode )
+    {
+        this.maxPerCode = maxPerCode;
+    }
+
+    /**
+     * Adds a message, counting it under the lint category it starts with, such as <code>[deprecation]</code>, or else
+     * under its first line.
+     *
+     * @return whether the message was kept
+     */
+    @Override
+    public boolean add( CompilerMessage message )
+    {
+        return add( message, null );
+    }
+
+    /**
+     * @param code the code of the message as reported by the compiler, or <code>null</code> to derive it from the
+     *             message
+     * @return whether the message was kept, <code>false</code> if it was only counted
+     */
+    public boolean add( CompilerMessage message, String code )
+    {
+        CompilerMessage.Kind kind = message.getKind() == null ? CompilerMessage.Kind.OTHER : message.getKind();
+        kindCounts[kind.ordinal()]++;
+
+        if ( code == null )
+        {
+            code = deriveCode( message.getMessage() );
+        }
+        code = intern( code );
+        int[] count = codeCounts.get( code );
+        if ( count == null )
+        {
+            count = new int[1];
+            codeCounts.put( code, count );
+        }
+        count[0]++;
+
+        if ( maxPerCode > 0 && count[0] > maxPerCode && kind != CompilerMessage.Kind.ERROR )
+        {
+            dropped++;
+            return false;
+        }
+
+        ensureCapacity( size + 1 );
+        codes[size] = code;
+        store( size, message, kind );
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces a kept message, counting it under the code of the message it replaces.
+     */
+    @Override
+    public CompilerMessage set( int index, CompilerMessage message )
+    {
+        CompilerMessage previous = get( index );
+        CompilerMessage.Kind kind = message.getKind() == null ? CompilerMessage.Kind.OTHER : message.getKind();
+        kindCounts[kinds[index]]--;
+        kindCounts[kind.ordinal()]++;
+        store( index, message, kind );
+        return previous;
+    }
+
+    /**
+     * Removes a kept message, and no longer counts it.
+     */
+    @Override
+    public CompilerMessage remove( int index )
+    {
+        CompilerMessage previous = get( index );
+        kindCounts[kinds[index]]--;
+        int[] count = codeCounts.get( codes[index] );
+        if ( --count[0] == 0 )
+        {
+            codeCounts.remove( codes[index] );
+        }
+
+        int moved = size - index - 1;
+        System.arraycopy( files, index + 1, files, index, moved );
+        System.arraycopy( texts, index + 1, texts, index, moved );
+        System.arraycopy( codes, index + 1, codes, index, moved );
+        System.arraycopy( kinds, index + 1, kinds, index, moved );
+        System.arraycopy( positions, ( index + 1 ) * 4, positions, index * 4, moved * 4 );
+        size--;
+        files[size] = null;
+        texts[size] = null;
+        codes[size] = null;
+        modCount++;
+        return previous;
+    }
+
+    private void store( int index, CompilerMessage message, CompilerMessage.Kind kind )
+    {
+        files[index] = intern( message.getFile() );
+        texts[index] = intern( message.getMessage() );
+        kinds[index] = (byte) kind.ordinal();
+        positions[index * 4] = message.getStartLine();
+        positions[index * 4 + 1] = message.getStartColumn();
+        positions[index * 4 + 2] = message.getEndLine();
+        positions[index * 4 + 3] = message.getEndColumn();
+    }
+
+    @Override
+    public CompilerMessage get( int index )
+    {
+        if ( index < 0 || index >= size )
+        {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+        }
+        int p = index * 4;
+        return new CompilerMessage( files[index], KINDS[kinds[index]], positions[p], positions[p + 1],
+                                    positions[p + 2], positions[p + 3], texts[index] );
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public void clear()
+    {
+        strings.clear();
+        codeCounts.clear();
+        for ( int i = 0; i < kindCounts.length; i++ )
+        {
+            kindCounts[i] = 0;
+        }
+        for ( int i = 0; i < size; i++ )
+        {
+            files[i] = null;
+            texts[i] = null;
+            codes[i] = null;
+        }
+        dropped = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * @return the number of messages of the given kind added, including the ones not kept
+     */
+    public int getCount( CompilerMessage.Kind kind )
+    {
+        return kindCounts[kind.ordinal()];
+    }
+
+    /**
+     * @return the number of messages added per code, including the ones not kept, in the order the codes were first
+     *         reported
+     */
+    public Map<String, Integer> getCodeCounts()
+    {
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        for ( Map.Entry<String, int[]> entry : codeCounts.entrySet() )
+        {
+            counts.put( entry.getKey(), Integer.valueOf( entry.getValue()[0] ) );
+        }
+        return Collections.unmodifiableMap( counts );
+    }
+
+    /**
+     * @return the number of messages counted but not kept
+     */
+    public int getDroppedCount()
+    {
+        return dropped;
+    }
+
+    private String intern( String s )
+    {
+        if ( s == null )
+        {
+            return null;
+        }
+        String interned = strings.get( s );
+        if ( interned == null )
+        {
+            strings.put( s, s );
+            interned = s;
+        }
+        return interned;
+    }
+
+    private void ensureCapacity( int capacity )
+    {
+        if ( capacity <= files.length )
+        {
+            return;
+        }
+        int length = Math.max( capacity, files.length * 2 );
+
+        String[] newFiles = new String[length];
+        System.arraycopy( files, 0, newFiles, 0, size );
+        files = newFiles;
+
+        String[] newTexts = new String[length];
+        System.arraycopy( texts, 0, newTexts, 0, size );
+        texts = newTexts;
+
+        String[] newCodes = new String[length];
+        System.arraycopy( codes, 0, newCodes, 0, size );
+        codes = newCodes;
+
+        byte[] newKinds = new byte[length];
+        System.arraycopy( kinds, 0, newKinds, 0, size );
+        kinds = newKinds;
+
+        int[] newPositions = new int[length * 4];
+        System.arraycopy( positions, 0, newPositions, 0, size * 4 );
+        positions = newPositions;
+    }
+
+    static String deriveCode( String message )
+    {
+        if ( message == null )
+        {
+            return "";
+        }
+        if ( message.startsWith( "[" ) )
+        {
+            int end = message.indexOf( ']' );
+            if ( end > 0 )
+            {
+                return message.substring( 0, end + 1 );
+            }
+        }
+        int eol = message.indexOf( '\n' );
+        if ( eol >= 0 )
+        {
+            return message.substring( 0, eol > 0 && message.charAt( eol - 1 ) == '\r' ? eol - 1 : eol );
+        }
+        return message;
+    }
+}
@@ -0,0 +1,148 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Receives timings and counts from the compilers, to find out where the time of a compilation goes. Attached to a
+ * compilation with {@link CompilerConfiguration#setCompilerMetrics(CompilerMetrics)}.
+ * <p/>
+ * Implementations must be thread safe, as concurrent compilations may share them, and must answer
+ * {@link #isEnabled()} the same way for their whole life. Compilers do not read the clock when metrics are
+ * disabled, so {@link #NO_OP}, the default, costs nothing.
+ *
+ * @since 2.5
+ */
+public interface CompilerMetrics
+{
+    enum Timer
+    {
+        /**
+         * Scanning the source locations for the files to compile.
+         */
+        SCANNING,
+
+        /**
+         * Turning the configuration into compiler arguments or settings.
+         */
+        ARGUMENT_BUILDING,
+
+        /**
+         * Getting hold of a compiler instance: loading its classes, or taking one from the pool.
+         */
+        STARTUP,
+
+        /**
+         * Looking up a compiler instance in the pool kept as per the
+         * {@link CompilerConfiguration.CompilerReuseStrategy}, or a cached result.
+         */
+        CACHE_LOOKUP,
+
+        /**
+         * Running the compiler, including the process for forked compilers.
+         */
+        COMPILE,
+
+        /**
+         * Waiting for a forked compiler process to finish, reported within {@link #COMPILE}.
+         */
+        FORK_WAIT,
+
+        /**
+         * Turning the compiler output or diagnostics into {@link CompilerMessage}s once the compiler ran. Compilers
+         * storing the messages as they are reported, such as javac, do it within {@link #COMPILE}.
+         */
+        OUTPUT_PARSING,
+
+        /**
+         * Writing the generated classes, where the compiler lets it be measured apart from compiling.
+         */
+        CLASS_WRITING
+    }
+
+    enum Counter
+    {
+        FILES_SCANNED,
+
+        /**
+         * Bytes of source handed to the compiler.
+         */
+        BYTES_READ,
+
+        CLASSES_WRITTEN,
+
+        MESSAGES_PARSED,
+
+        /**
+         * Compiler instances reused instead of created, as per the
+         * {@link CompilerConfiguration.CompilerReuseStrategy}.
+         */
+        POOL_HITS,
+
+        /**
+         * Classloaders created to load a compiler, such as javac from <code>tools.jar</code>.
+         */
+        CLASS_LOADERS_CREATED,
+
+        /**
+         * Classloaders of a compiler closed once no longer pooled, see {@link #CLASS_LOADERS_CREATED}.
+         */
+        CLASS_LOADERS_CLOSED,
+
+        /**
+         * Bytes the class metadata space of the JVM grew by during an in-process compilation, where the JVM reports
+         * it. This is an approximation: the space is shared by the whole JVM, so classes loaded by other threads
+         * meanwhile, such as concurrent compilations, are counted too, and classes unloaded meanwhile are not
+         * subtracted.
+         */
+        METASPACE_BYTES
+    }
+
+    CompilerMetrics NO_OP = new CompilerMetrics()
+    {
+        public boolean isEnabled()
+        {
+            return false;
+        }
+
+        public void time( String compilerId, Timer timer, long nanos )
+        {
+            // no op
+        }
+
+        public void count( String compilerId, Counter counter, long amount )
+        {
+            // no op
+        }
+    };
+
+    /**
+     * @return <code>false</code> to keep compilers from measuring anything
+     */
+    boolean isEnabled();
+
+    /**
+     * @param compilerId the role hint of the compiler, such as <code>javac</code>
+     */
+    void time( String compilerId, Timer timer, long nanos );
+
+    /**
+     * @param compilerId the role hint of the compiler, such as <code>javac</code>
+     */
+    void count( String compilerId, Counter counter, long amount );
+}
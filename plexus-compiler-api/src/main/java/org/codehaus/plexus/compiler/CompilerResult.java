@@ -34,6 +34,12 @@ public class CompilerResult
 
     private List<CompilerMessage> compilerMessages;
 
+    private CompilationTimings timings;
+
+    private List<AnnotationProcessorProfile> annotationProcessorProfiles;
+
+    private boolean stoppedEarly;
+
     /**
      * Constructs a successful compiler result with no messages.
      */
@@ -89,4 +95,67 @@ public class CompilerResult
         this.setCompilerMessages( compilerMessages );
         return this;
     }
+
+    /**
+     * @return the time spent per phase and per file, or <code>null</code> if they have not been
+     *         {@link CompilerConfiguration#setCollectTimings(boolean) collected}
+     * @since 2.5
+     */
+    public CompilationTimings getTimings()
+    {
+        return timings;
+    }
+
+    public void setTimings( CompilationTimings timings )
+    {
+        this.timings = timings;
+    }
+
+    public CompilerResult timings( CompilationTimings timings )
+    {
+        this.setTimings( timings );
+        return this;
+    }
+
+    /**
+     * @return the time spent by each annotation processor, or <code>null</code> if the processors have not been
+     *         {@link CompilerConfiguration#setProfileAnnotationProcessors(boolean) profiled}
+     * @since 2.5
+     */
+    public List<AnnotationProcessorProfile> getAnnotationProcessorProfiles()
+    {
+        return annotationProcessorProfiles;
+    }
+
+    public void setAnnotationProcessorProfiles( List<AnnotationProcessorProfile> annotationProcessorProfiles )
+    {
+        this.annotationProcessorProfiles = annotationProcessorProfiles;
+    }
+
+    public CompilerResult annotationProcessorProfiles( List<AnnotationProcessorProfile> annotationProcessorProfiles )
+    {
+        this.setAnnotationProcessorProfiles( annotationProcessorProfiles );
+        return this;
+    }
+
+    /**
+     * @return whether the compiler stopped before compiling everything, as the
+     *         {@link CompilerConfiguration#setMaxErrors(int) maximum number of errors} has been reached
+     * @since 2.5
+     */
+    public boolean isStoppedEarly()
+    {
+        return stoppedEarly;
+    }
+
+    public void setStoppedEarly( boolean stoppedEarly )
+    {
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    public CompilerResult stoppedEarly( boolean stoppedEarly )
+    {
+        this.setStoppedEarly( stoppedEarly );
+        return this;
+    }
 }
@@ -0,0 +1,108 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Locale;
+
+/**
+ * A timed part of a compilation, reported to the {@link CompilerMetrics} of the configuration, to its
+ * {@link TraceEventSink} if any and, while Java Flight Recorder is recording, as a flight recorder event.
+ * <p/>
+ * When none of them wants it, {@link #start(CompilerConfiguration, String, CompilerMetrics.Timer)} returns a shared
+ * instance which does nothing, so a span costs neither a clock read nor an allocation.
+ *
+ * @since 2.5
+ */
+public final class CompilerSpan
+{
+    private static final CompilerSpan DISABLED = new CompilerSpan( null, null, null, null, null, 0L, null );
+
+    private final CompilerMetrics metrics;
+
+    private final TraceEventSink trace;
+
+    private final String compilerId;
+
+    private final CompilerMetrics.Timer timer;
+
+    private final String outputLocation;
+
+    private final long start;
+
+    private final Object event;
+
+    private CompilerSpan( CompilerMetrics metrics, TraceEventSink trace, String compilerId,
+                          CompilerMetrics.Timer timer, String outputLocation, long start, Object event )
+    {
+        this.metrics = metrics;
+        this.trace = trace;
+        this.compilerId = compilerId;
+        this.timer = timer;
+        this.outputLocation = outputLocation;
+        this.start = start;
+        this.event = event;
+    }
+
+    /**
+     * @param compilerId the role hint of the compiler
+     */
+    public static CompilerSpan start( CompilerConfiguration config, String compilerId, CompilerMetrics.Timer timer )
+    {
+        CompilerMetrics metrics = config.getCompilerMetrics();
+        TraceEventSink trace = config.getTraceEventSink();
+        Object event = FlightRecorderSupport.begin( timer );
+        if ( !metrics.isEnabled() )
+        {
+            if ( event == null && trace == null )
+            {
+                return DISABLED;
+            }
+            metrics = null;
+        }
+        return new CompilerSpan( metrics, trace, compilerId, timer, config.getOutputLocation(),
+                                 metrics == null && trace == null ? 0L : System.nanoTime(), event );
+    }
+
+    public void end()
+    {
+        end( -1 );
+    }
+
+    /**
+     * @param fileCount the number of files handled, reported to the flight recorder, or <code>-1</code> if unknown
+     */
+    public void end( int fileCount )
+    {
+        long end = metrics == null && trace == null ? 0L : System.nanoTime();
+        if ( metrics != null )
+        {
+            metrics.time( compilerId, timer, end - start );
+        }
+        if ( trace != null )
+        {
+            trace.complete( timer.name().toLowerCase( Locale.ENGLISH ).replace( '_', ' ' ), "phase", start, end,
+                            "compilerId", compilerId, "outputLocation", String.valueOf( outputLocation ),
+                            "fileCount", String.valueOf( fileCount ) );
+        }
+        if ( event != null )
+        {
+            FlightRecorderSupport.commit( event, compilerId, outputLocation, fileCount );
+        }
+    }
+}
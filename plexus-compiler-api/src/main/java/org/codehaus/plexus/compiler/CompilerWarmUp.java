@@ -0,0 +1,350 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles a bundled workload over and over until the compilation time converges, so that a long-lived JVM, such as
+ * a build daemon, has the code of an in-process compiler compiled by the JIT before the first real compilation.
+ * <p/>
+ * The workload is compiled with the reuse strategy, source and target versions, encoding and javac selection of the
+ * given configuration, so it warms up the same code path. Forked compilations have nothing to warm up and are left
+ * alone.
+ *
+ * @since 2.5
+ */
+public final class CompilerWarmUp
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private static final int WORKLOAD_CLASSES = 16;
+
+    private static final Clock SYSTEM_CLOCK = new Clock()
+    {
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+    };
+
+    private final Compiler compiler;
+
+    private final CompilerConfiguration configuration;
+
+    private int maxIterations = 20;
+
+    private int window = 3;
+
+    private double tolerance = 0.15;
+
+    private Clock clock = SYSTEM_CLOCK;
+
+    /**
+     * @param configuration the configuration real compilations will use, only read
+     */
+    public CompilerWarmUp( Compiler compiler, CompilerConfiguration configuration )
+    {
+        this.compiler = compiler;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Sets how many compilations to run at most, whether or not the time has converged by then.
+     */
+    public CompilerWarmUp setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Sets the time as converged once the slowest of the last <code>window</code> compilations takes at most
+     * <code>tolerance</code> more than the fastest of them, <code>0.1</code> meaning 10%.
+     */
+    public CompilerWarmUp setConvergence( int window, double tolerance )
+    {
+        if ( window < 1 )
+        {
+            throw new IllegalArgumentException( "window must be at least 1, was " + window );
+        }
+        this.window = window;
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Sets where the compilations are timed from, for tests.
+     */
+    CompilerWarmUp setClock( Clock clock )
+    {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * @throws CompilerException if the workload does not compile
+     */
+    public Result run()
+        throws CompilerException
+    {
+        if ( configuration.isFork() )
+        {
+            return new Result( new long[0], 0, false );
+        }
+
+        File directory = null;
+        try
+        {
+            directory = File.createTempFile( "compiler-warm-up", "" );
+            FileUtils.forceDelete( directory );
+            File src = new File( directory, "src" );
+            File output = new File( directory, "classes" );
+            writeWorkload( new File( src, "warmup" ) );
+
+            long[] times = new long[maxIterations];
+            for ( int i = 0; i < maxIterations; i++ )
+            {
+                FileUtils.deleteDirectory( output );
+
+                CompilerConfiguration warmUp = new CompilerConfiguration();
+                warmUp.addSourceLocation( src.getAbsolutePath() );
+                warmUp.setOutputLocation( output.getAbsolutePath() );
+                warmUp.setCompilerReuseStrategy( configuration.getCompilerReuseStrategy() );
+                warmUp.setForceJavacCompilerUse( configuration.isForceJavacCompilerUse() );
+                warmUp.setSourceVersion( configuration.getSourceVersion() );
+                warmUp.setTargetVersion( configuration.getTargetVersion() );
+                warmUp.setSourceEncoding( configuration.getSourceEncoding() );
+                warmUp.setDebug( configuration.isDebug() );
+
+                long start = clock.nanoTime();
+                CompilerResult result = compiler.performCompile( warmUp );
+                times[i] = clock.nanoTime() - start;
+
+                if ( !result.isSuccess() )
+                {
+                    throw new CompilerException( "The warm-up workload does not compile: "
+                                                     + result.getCompilerMessages() );
+                }
+
+                if ( hasConverged( times, i + 1 ) )
+                {
+                    return new Result( times, i + 1, true );
+                }
+            }
+            return new Result( times, maxIterations, false );
+        }
+        catch ( IOException e )
+        {
+            throw new CompilerException( "Cannot write the warm-up workload: " + e.getMessage(), e );
+        }
+        finally
+        {
+            if ( directory != null )
+            {
+                try
+                {
+                    FileUtils.deleteDirectory( directory );
+                }
+                catch ( IOException e )
+                {
+                    // left for the system to clean up
+                }
+            }
+        }
+    }
+
+    private boolean hasConverged( long[] times, int count )
+    {
+        if ( count < window )
+        {
+            return false;
+        }
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for ( int i = count - window; i < count; i++ )
+        {
+            min = Math.min( min, times[i] );
+            max = Math.max( max, times[i] );
+        }
+        return max - min <= min * tolerance;
+    }
+
+    /**
+     * Writes classes exercising generics, inner and anonymous classes, enums and switches, each using the
+     * previous one, so that attribution, flow analysis and code generation all get their share.
+     */
+    private static void writeWorkload( File directory )
+        throws IOException
+    {
+        directory.mkdirs();
+        for ( int i = 0; i < WORKLOAD_CLASSES; i++ )
+        {
+            String previous = i == 0 ? "Object" : "Part" + ( i - 1 ) + "<String>";
+            String source = "package warmup;" + EOL
+                + "" + EOL
+                + "import java.util.ArrayList;" + EOL
+                + "import java.util.HashMap;" + EOL
+                + "import java.util.List;" + EOL
+                + "import java.util.Map;" + EOL
+                + "" + EOL
+                + "public class Part" + i + "<T extends Comparable<T>>" + EOL
+                + "{" + EOL
+                + "    public enum State" + EOL
+                + "    {" + EOL
+                + "        NEW, RUNNING, DONE" + EOL
+                + "    }" + EOL
+                + "" + EOL
+                + "    private final Map<String, List<T>> values = new HashMap<String, List<T>>();" + EOL
+                + "" + EOL
+                + "    private " + previous + " previous;" + EOL
+                + "" + EOL
+                + "    private State state = State.NEW;" + EOL
+                + "" + EOL
+                + "    public <K extends Comparable<K>> K max( List<? extends K> keys )" + EOL
+                + "    {" + EOL
+                + "        K max = null;" + EOL
+                + "        for ( K key : keys )" + EOL
+                + "        {" + EOL
+                + "            max = max == null || key.compareTo( max ) > 0 ? key : max;" + EOL
+                + "        }" + EOL
+                + "        return max;" + EOL
+                + "    }" + EOL
+                + "" + EOL
+                + "    public void add( String key, T... items )" + EOL
+                + "    {" + EOL
+                + "        List<T> list = values.get( key );" + EOL
+                + "        if ( list == null )" + EOL
+                + "        {" + EOL
+                + "            list = new ArrayList<T>();" + EOL
+                + "            values.put( key, list );" + EOL
+                + "        }" + EOL
+                + "        for ( T item : items )" + EOL
+                + "        {" + EOL
+                + "            list.add( item );" + EOL
+                + "        }" + EOL
+                + "    }" + EOL
+                + "" + EOL
+                + "    public String describe()" + EOL
+                + "    {" + EOL
+                + "        switch ( state )" + EOL
+                + "        {" + EOL
+                + "            case NEW:" + EOL
+                + "                return \"new \" + values.size();" + EOL
+                + "            case RUNNING:" + EOL
+                + "                return \"running after \" + previous;" + EOL
+                + "            default:" + EOL
+                + "                return String.valueOf( values.keySet() );" + EOL
+                + "        }" + EOL
+                + "    }" + EOL
+                + "" + EOL
+                + "    public Runnable task()" + EOL
+                + "    {" + EOL
+                + "        return new Runnable()" + EOL
+                + "        {" + EOL
+                + "            public void run()" + EOL
+                + "            {" + EOL
+                + "                try" + EOL
+                + "                {" + EOL
+                + "                    state = State.RUNNING;" + EOL
+                + "                    values.clear();" + EOL
+                + "                }" + EOL
+                + "                finally" + EOL
+                + "                {" + EOL
+                + "                    state = State.DONE;" + EOL
+                + "                }" + EOL
+                + "            }" + EOL
+                + "        };" + EOL
+                + "    }" + EOL
+                + "" + EOL
+                + "    static class Holder<V>" + EOL
+                + "    {" + EOL
+                + "        V value;" + EOL
+                + "    }" + EOL
+                + "}" + EOL;
+
+            FileUtils.fileWrite( new File( directory, "Part" + i + ".java" ).getAbsolutePath(), "UTF-8", source );
+        }
+    }
+
+    /**
+     * The time source of the compilations.
+     */
+    interface Clock
+    {
+        long nanoTime();
+    }
+
+    /**
+     * The times of the warm-up compilations.
+     */
+    public static final class Result
+    {
+        private final long[] times;
+
+        private final int iterations;
+
+        private final boolean converged;
+
+        Result( long[] times, int iterations, boolean converged )
+        {
+            this.times = times;
+            this.iterations = iterations;
+            this.converged = converged;
+        }
+
+        public int getIterations()
+        {
+            return iterations;
+        }
+
+        /**
+         * @return the time of the given compilation, in nanoseconds
+         */
+        public long getTime( int iteration )
+        {
+            if ( iteration >= iterations )
+            {
+                throw new IndexOutOfBoundsException( "Only " + iterations + " compilations ran" );
+            }
+            return times[iteration];
+        }
+
+        /**
+         * @return whether the time converged before the maximum number of compilations was reached
+         */
+        public boolean isConverged()
+        {
+            return converged;
+        }
+
+        public String toString()
+        {
+            if ( iterations == 0 )
+            {
+                return "No warm-up compilation ran";
+            }
+            return ( converged ? "Converged" : "Did not converge" ) + " after " + iterations + " compilations: "
+                + times[0] / 1000000 + "ms first, " + times[iterations - 1] / 1000000 + "ms last";
+        }
+    }
+}
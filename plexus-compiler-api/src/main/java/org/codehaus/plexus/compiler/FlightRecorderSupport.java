@@ -0,0 +1,67 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Finds the {@link CompilerEventRecorder} of the <code>plexus-compiler-jfr</code> module, which is only loaded when
+ * that module is on the class path and the JVM has the flight recorder API.
+ */
+final class FlightRecorderSupport
+{
+    static final String RECORDER_CLASS = "org.codehaus.plexus.compiler.jfr.CompilerEvents";
+
+    private static final CompilerEventRecorder RECORDER = load();
+
+    private FlightRecorderSupport()
+    {
+        // no op
+    }
+
+    private static CompilerEventRecorder load()
+    {
+        try
+        {
+            Class<?> type = Class.forName( RECORDER_CLASS, true, FlightRecorderSupport.class.getClassLoader() );
+            return (CompilerEventRecorder) type.newInstance();
+        }
+        catch ( LinkageError e )
+        {
+            // no flight recorder in this JVM
+            return null;
+        }
+        catch ( Exception e )
+        {
+            // plexus-compiler-jfr is not on the class path
+            return null;
+        }
+    }
+
+    /**
+     * @return the begun event, or <code>null</code> if nothing records it
+     */
+    static Object begin( CompilerMetrics.Timer timer )
+    {
+        return RECORDER == null ? null : RECORDER.begin( timer );
+    }
+
+    static void commit( Object event, String compilerId, String outputLocation, int fileCount )
+    {
+        RECORDER.commit( event, compilerId, outputLocation, fileCount );
+    }
+}
@@ -0,0 +1,318 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gates concurrent in-process compilations against a heap budget, like a semaphore counting bytes instead of
+ * permits. A compilation waits until its {@link CompileHeapEstimator estimated} heap need fits into what is left of
+ * the budget. Smaller compilations may overtake a waiting heavy one, but only a bounded number of times, so the
+ * heavy one cannot starve. A compilation needing more than the whole budget runs alone.
+ * <p/>
+ * Share one instance between all the {@link CompilerConfiguration}s compiled concurrently in a JVM.
+ *
+ * @since 2.5
+ */
+public class HeapAdmissionController
+{
+    /**
+     * How many later compilations may be admitted before a waiting one blocks further overtaking.
+     */
+    static final int MAX_OVERTAKES = 8;
+
+    private static final Object THREAD_MX_BEAN;
+
+    private static final Method THREAD_ALLOCATED_BYTES;
+
+    static
+    {
+        Object bean = null;
+        Method method = null;
+        try
+        {
+            bean = ManagementFactory.getThreadMXBean();
+            Class<?> type = Class.forName( "com.sun.management.ThreadMXBean" );
+            if ( type.isInstance( bean ) )
+            {
+                method = type.getMethod( "getThreadAllocatedBytes", long.class );
+            }
+        }
+        catch ( Exception e )
+        {
+            // not a HotSpot JVM, estimates will not be learned
+        }
+        catch ( LinkageError e )
+        {
+            // same
+        }
+        THREAD_MX_BEAN = bean;
+        THREAD_ALLOCATED_BYTES = method;
+    }
+
+    private final long budget;
+
+    private final CompileHeapEstimator estimator;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    private final LinkedList<Waiter> waiters = new LinkedList<Waiter>();
+
+    private long used;
+
+    public HeapAdmissionController( long budget )
+    {
+        this( budget, new CompileHeapEstimator() );
+    }
+
+    public HeapAdmissionController( long budget, CompileHeapEstimator estimator )
+    {
+        if ( budget <= 0 )
+        {
+            throw new IllegalArgumentException( "budget must be positive, was " + budget );
+        }
+        this.budget = budget;
+        this.estimator = estimator;
+    }
+
+    /**
+     * Creates a controller whose budget is the given fraction of the maximum heap of this JVM.
+     */
+    public static HeapAdmissionController forMaxHeapFraction( double fraction )
+    {
+        return new HeapAdmissionController( (long) ( Runtime.getRuntime().maxMemory() * fraction ) );
+    }
+
+    /**
+     * Waits until the compilation of the given sources fits into the budget.
+     *
+     * @return the permit to {@link Permit#release() release} once the compilation is done, from the same thread
+     */
+    public Permit admit( CompilerConfiguration config, String[] sourceFiles )
+        throws InterruptedException
+    {
+        long modelled = estimator.model( config, sourceFiles );
+        long bytes = Math.max( 1, Math.min( budget, estimator.estimate( config, modelled ) ) );
+
+        acquire( bytes );
+
+        return new Permit( config, modelled, bytes );
+    }
+
+    void acquire( long bytes )
+        throws InterruptedException
+    {
+        lock.lock();
+        try
+        {
+            Waiter waiter = new Waiter( bytes );
+            waiters.add( waiter );
+            try
+            {
+                while ( !mayProceed( waiter ) )
+                {
+                    changed.await();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                waiters.remove( waiter );
+                changed.signalAll();
+                throw e;
+            }
+
+            for ( Iterator<Waiter> it = waiters.iterator(); it.hasNext(); )
+            {
+                Waiter other = it.next();
+                if ( other == waiter )
+                {
+                    it.remove();
+                    break;
+                }
+                other.overtaken++;
+            }
+            used += bytes;
+            // waiters held back by this one may go now if they still fit
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private boolean mayProceed( Waiter waiter )
+    {
+        if ( used + waiter.bytes > budget )
+        {
+            return false;
+        }
+        for ( Waiter other : waiters )
+        {
+            if ( other == waiter )
+            {
+                return true;
+            }
+            if ( other.overtaken >= MAX_OVERTAKES )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void release( long bytes )
+    {
+        lock.lock();
+        try
+        {
+            used -= bytes;
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public long getUsedBytes()
+    {
+        lock.lock();
+        try
+        {
+            return used;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength()
+    {
+        lock.lock();
+        try
+        {
+            return waiters.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public CompileHeapEstimator getEstimator()
+    {
+        return estimator;
+    }
+
+    private static long currentThreadAllocatedBytes()
+    {
+        if ( THREAD_ALLOCATED_BYTES == null )
+        {
+            return -1;
+        }
+        try
+        {
+            return (Long) THREAD_ALLOCATED_BYTES.invoke( THREAD_MX_BEAN, Thread.currentThread().getId() );
+        }
+        catch ( Exception e )
+        {
+            return -1;
+        }
+    }
+
+    private static class Waiter
+    {
+        final long bytes;
+
+        int overtaken;
+
+        Waiter( long bytes )
+        {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The share of the budget granted to one compilation.
+     */
+    public class Permit
+    {
+        private final CompilerConfiguration config;
+
+        private final long modelled;
+
+        private final long bytes;
+
+        private final Thread thread = Thread.currentThread();
+
+        private final long allocatedAtStart = currentThreadAllocatedBytes();
+
+        private boolean released;
+
+        Permit( CompilerConfiguration config, long modelled, long bytes )
+        {
+            this.config = config;
+            this.modelled = modelled;
+            this.bytes = bytes;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * Returns the bytes to the budget and teaches the estimator what the compilation really allocated. Calling
+         * it again has no effect.
+         */
+        public synchronized void release()
+        {
+            if ( released )
+            {
+                return;
+            }
+            released = true;
+
+            if ( allocatedAtStart >= 0 && thread == Thread.currentThread() )
+            {
+                long allocated = currentThreadAllocatedBytes();
+                if ( allocated > allocatedAtStart )
+                {
+                    estimator.record( config, modelled, allocated - allocatedAtStart );
+                }
+            }
+
+            HeapAdmissionController.this.release( bytes );
+        }
+    }
+}
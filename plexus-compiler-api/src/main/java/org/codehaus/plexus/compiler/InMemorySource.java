@@ -0,0 +1,112 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A source file held in memory, typically produced by a code generator, that is compiled without ever being
+ * written to disk. The javac and eclipse compilers read it directly; a compiler that can only read files, such as a
+ * forked javac, gets it written to a temporary directory first.
+ *
+ * @see CompilerConfiguration#addInMemorySource(InMemorySource)
+ * @since 2.5
+ */
+public class InMemorySource
+{
+    private final String path;
+
+    private final byte[] content;
+
+    private final String encoding;
+
+    private String text;
+
+    /**
+     * @param path    the path of the source relative to a source root, using <code>/</code> as separator, eg
+     *                <code>org/acme/Foo.java</code>
+     * @param content the source code
+     */
+    public InMemorySource( String path, String content )
+    {
+        this( path, null, null );
+        this.text = content;
+    }
+
+    /**
+     * @param encoding the encoding of <code>content</code>, or <code>null</code> for the platform default
+     */
+    public InMemorySource( String path, byte[] content, String encoding )
+    {
+        if ( path == null )
+        {
+            throw new IllegalArgumentException( "path is null" );
+        }
+        this.path = path.replace( '\\', '/' );
+        this.content = content;
+        this.encoding = encoding;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return the fully qualified name of the class matching the path, eg <code>org.acme.Foo</code>
+     */
+    public String getClassName()
+    {
+        String name = path.startsWith( "/" ) ? path.substring( 1 ) : path;
+        int dot = name.lastIndexOf( '.' );
+        if ( dot > name.lastIndexOf( '/' ) )
+        {
+            name = name.substring( 0, dot );
+        }
+        return name.replace( '/', '.' );
+    }
+
+    public String getEncoding()
+    {
+        return encoding;
+    }
+
+    /**
+     * @return the size of the source code, in bytes when it was given as bytes and in characters otherwise
+     */
+    public synchronized int getSize()
+    {
+        return content != null ? content.length : text == null ? 0 : text.length();
+    }
+
+    public synchronized String getCharContent()
+        throws UnsupportedEncodingException
+    {
+        if ( text == null )
+        {
+            text = encoding == null ? new String( content ) : new String( content, encoding );
+        }
+        return text;
+    }
+
+    public String toString()
+    {
+        return path;
+    }
+}
@@ -0,0 +1,197 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects timed spans as Chrome trace events and writes them as a JSON file which opens directly in
+ * <code>chrome://tracing</code> or the Perfetto UI. Each thread gets its own track, and the spans of a thread nest
+ * by time, so the phases of a compilation show up within the module compiling them.
+ * <p/>
+ * One sink is typically shared by the configurations of all the modules of a build, see
+ * {@link CompilerConfiguration#setTraceEventSink(TraceEventSink)}. It is safe for use by concurrent compilations.
+ *
+ * @since 2.5
+ */
+public final class TraceEventSink
+{
+    private final File file;
+
+    private final long origin = System.nanoTime();
+
+    private final StringBuilder events = new StringBuilder();
+
+    private final Set<Long> namedThreads = new HashSet<Long>();
+
+    private boolean closed;
+
+    /**
+     * @param file where {@link #close()} writes the trace
+     */
+    public TraceEventSink( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the current time in the clock of {@link #complete(String, String, long, long, String...)}
+     */
+    public long now()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a span which ran on the current thread.
+     *
+     * @param start when the span started, as per {@link #now()}
+     * @param end when the span ended, as per {@link #now()}
+     * @param args names and values to show with the span, alternating
+     */
+    public void complete( String name, String category, long start, long end, String... args )
+    {
+        Thread thread = Thread.currentThread();
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            if ( namedThreads.add( thread.getId() ) )
+            {
+                separate();
+                events.append( "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" ).append( thread.getId() );
+                events.append( ",\"args\":{\"name\":" );
+                quote( thread.getName() );
+                events.append( "}}" );
+            }
+            separate();
+            events.append( "{\"name\":" );
+            quote( name );
+            events.append( ",\"cat\":" );
+            quote( category );
+            events.append( ",\"ph\":\"X\",\"pid\":1,\"tid\":" ).append( thread.getId() );
+            events.append( ",\"ts\":" ).append( micros( Math.max( 0, start - origin ) ) );
+            events.append( ",\"dur\":" ).append( micros( Math.max( 0, end - start ) ) );
+            if ( args.length > 0 )
+            {
+                events.append( ",\"args\":{" );
+                for ( int i = 0; i + 1 < args.length; i += 2 )
+                {
+                    if ( i > 0 )
+                    {
+                        events.append( ',' );
+                    }
+                    quote( args[i] );
+                    events.append( ':' );
+                    quote( args[i + 1] );
+                }
+                events.append( '}' );
+            }
+            events.append( '}' );
+        }
+    }
+
+    /**
+     * Writes the trace. Spans completing afterwards are ignored.
+     */
+    public void close()
+        throws IOException
+    {
+        String json;
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            json = "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" + events + "]}";
+            events.setLength( 0 );
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ( parent != null )
+        {
+            parent.mkdirs();
+        }
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            writer.write( json );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    private void separate()
+    {
+        if ( events.length() > 0 )
+        {
+            events.append( ",\n" );
+        }
+    }
+
+    private static String micros( long nanos )
+    {
+        // keeps sub-microsecond precision so that short spans do not collapse
+        return nanos / 1000 + "." + ( nanos % 1000 + 1000 + "" ).substring( 1 );
+    }
+
+    private void quote( String value )
+    {
+        events.append( '"' );
+        if ( value != null )
+        {
+            for ( int i = 0; i < value.length(); i++ )
+            {
+                char c = value.charAt( i );
+                if ( c == '"' || c == '\\' )
+                {
+                    events.append( '\\' ).append( c );
+                }
+                else if ( c < 0x20 )
+                {
+                    events.append( "\\u" ).append( Integer.toHexString( c | 0x10000 ).substring( 1 ) );
+                }
+                else
+                {
+                    events.append( c );
+                }
+            }
+        }
+        events.append( '"' );
+    }
+}
@@ -0,0 +1,801 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.util.CompactPathSet;
+import org.codehaus.plexus.compiler.util.FileFingerprintService;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells whether a compilation can be skipped as nothing changed since the last successful one, as recorded in the
+ * {@link CompilerConfiguration#setUpToDateManifest(File) up-to-date manifest}, and returns the result it had.
+ * <p/>
+ * The manifest holds a hash of the properties of the configuration which affect the compilation, the size and
+ * modification time of the sources and of the directories of the source locations, which change when a source is added
+ * or removed, the size, modification time and content hash of the classpath and processor path entries, and the size
+ * and modification time of the files found in the output location and of the output jar after compiling. An entry
+ * whose size or modification time changed still matches when its content did not, as when an unchanged upstream jar is
+ * rebuilt. Contents are hashed by the {@link FileFingerprintService#getShared() shared fingerprint service}. The output
+ * location and the generated sources directory are left out of the classpath, being written by the compilation itself.
+ * <p/>
+ * Directory classpath entries are stamped by walking them. The compilations of one build can share these stamps
+ * through {@link CompilerConfiguration#setDirectoryStamps(DirectoryStamps)}, so that each directory is walked once
+ * per build, until a compilation writes to it; a directory written by other tools during the build is then only
+ * noticed by the next build. Without shared stamps, every check walks the directories again.
+ * <p/>
+ * Checking only reads the manifest and stats the files it lists, without scanning the source locations, so that an
+ * unchanged module costs a few milliseconds. Compilers call {@link #open(CompilerConfiguration, String)} before doing
+ * anything, {@link #stampSources(String[])} once they scanned the sources and {@link #store(CompilerResult)} once
+ * compiled.
+ *
+ * @since 2.5
+ */
+public final class UpToDateCheck
+{
+    private static final int VERSION = 2;
+
+    private static final long MISSING = -1;
+
+    private static final long IGNORED = -2;
+
+    private final CompilerConfiguration config;
+
+    private final File manifest;
+
+    private final String key;
+
+    private final boolean explicitSources;
+
+    private final List<Stamp> paths;
+
+    private List<Stamp> previousPaths;
+
+    private List<Stamp> directories;
+
+    private List<Stamp> sources;
+
+    private List<Stamp> outputs;
+
+    private CompilerResult result;
+
+    private UpToDateCheck( CompilerConfiguration config, File manifest, String key )
+    {
+        this.config = config;
+        this.manifest = manifest;
+        this.key = key;
+        this.explicitSources = !config.getSourcePaths().isEmpty();
+        this.paths = stampPaths( config );
+    }
+
+    /**
+     * @return the check for the given compilation, or <code>null</code> if it has no
+     *         {@link CompilerConfiguration#getUpToDateManifest() up-to-date manifest}
+     */
+    public static UpToDateCheck open( CompilerConfiguration config, String compilerId )
+        throws CompilerException
+    {
+        File manifest = config.getUpToDateManifest();
+        if ( manifest == null )
+        {
+            compiling( config );
+            return null;
+        }
+        CompilerSpan span = CompilerSpan.start( config, compilerId, CompilerMetrics.Timer.CACHE_LOOKUP );
+        try
+        {
+            UpToDateCheck check = new UpToDateCheck( config, manifest, computeKey( config, compilerId ) );
+            check.read();
+            span.end( check.isUpToDate() ? 1 : 0 );
+            if ( !check.isUpToDate() )
+            {
+                compiling( config );
+            }
+            return check;
+        }
+        catch ( IOException e )
+        {
+            throw new CompilerException( "Unable to check whether the compilation is up to date", e );
+        }
+    }
+
+    /**
+     * Forgets the shared stamp of the output location of a compilation about to write to it.
+     */
+    static void compiling( CompilerConfiguration config )
+    {
+        DirectoryStamps directoryStamps = config.getDirectoryStamps();
+        if ( directoryStamps != null && config.getOutputLocation() != null )
+        {
+            directoryStamps.stamps.remove( new File( config.getOutputLocation() ).getAbsolutePath() );
+        }
+    }
+
+    /**
+     * @return whether nothing changed since the compilation recorded in the manifest
+     */
+    public boolean isUpToDate()
+    {
+        return result != null;
+    }
+
+    /**
+     * @return the result of the compilation recorded in the manifest, if {@link #isUpToDate() up to date}
+     */
+    public CompilerResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Records the size and modification time of the given sources, and of the directories of the source locations
+     * when the sources were scanned from them. Called before compiling, so that a source changing during the
+     * compilation gets compiled again next time.
+     */
+    public void stampSources( String[] sourceFiles )
+    {
+        sources = new ArrayList<Stamp>( sourceFiles.length );
+        for ( String sourceFile : sourceFiles )
+        {
+            sources.add( stampFile( sourceFile ) );
+        }
+        directories = new ArrayList<Stamp>();
+        if ( !explicitSources )
+        {
+            for ( String sourceLocation : config.getSourceLocations() )
+            {
+                stampDirectories( new File( sourceLocation ), directories );
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest after a successful compilation, or deletes it after a failed one.
+     */
+    public void store( CompilerResult compilerResult )
+        throws CompilerException
+    {
+        compiling( config );
+        if ( !compilerResult.isSuccess() || sources == null )
+        {
+            manifest.delete();
+            return;
+        }
+        try
+        {
+            outputs = stampOutputs( config );
+
+            List<Stamp> unhashed = new ArrayList<Stamp>();
+            List<File> unhashedFiles = new ArrayList<File>();
+            for ( int i = 0; i < paths.size(); i++ )
+            {
+                Stamp stamp = paths.get( i );
+                Stamp previous = previousPaths == null || i >= previousPaths.size() ? null : previousPaths.get( i );
+                if ( stamp.hash == null && stamp.equals( previous ) )
+                {
+                    stamp.hash = previous.hash;
+                }
+                if ( stamp.hash == null && stamp.size >= 0 )
+                {
+                    unhashed.add( stamp );
+                    File file = new File( stamp.path );
+                    if ( file.isFile() )
+                    {
+                        unhashedFiles.add( file );
+                    }
+                }
+            }
+            // hashes the jars in parallel, the directories being hashed in parallel one at a time
+            FileFingerprintService.getShared().fingerprint( unhashedFiles );
+            for ( Stamp stamp : unhashed )
+            {
+                stamp.hash = contentHash( stamp );
+            }
+            write( compilerResult.getCompilerMessages() );
+        }
+        catch ( IOException e )
+        {
+            throw new CompilerException( "Unable to write the up-to-date manifest " + manifest, e );
+        }
+    }
+
+    private void read()
+        throws IOException
+    {
+        if ( !manifest.isFile() )
+        {
+            return;
+        }
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( manifest ) ) );
+        try
+        {
+            if ( in.readInt() != VERSION || !key.equals( readString( in ) ) )
+            {
+                return;
+            }
+            previousPaths = readStamps( in );
+            boolean recordedExplicitSources = in.readBoolean();
+            List<Stamp> recordedDirectories = readStamps( in );
+            List<Stamp> recordedSources = readStamps( in );
+            List<Stamp> recordedOutputs = readStamps( in );
+            List<CompilerMessage> messages = readMessages( in );
+
+            if ( recordedExplicitSources != explicitSources || !matchStamps( recordedOutputs ) || !matchPaths()
+                || !matchStamps( recordedDirectories ) || !matchSources( recordedSources ) )
+            {
+                return;
+            }
+            result = new CompilerResult( true, messages );
+            if ( !paths.equals( previousPaths ) )
+            {
+                // keep the next checks from hashing the entries whose content did not change again
+                sources = recordedSources;
+                directories = recordedDirectories;
+                outputs = recordedOutputs;
+                write( messages );
+            }
+        }
+        catch ( IOException e )
+        {
+            // an unreadable manifest is as good as none
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    private boolean matchPaths()
+        throws IOException
+    {
+        if ( paths.size() != previousPaths.size() )
+        {
+            return false;
+        }
+        for ( int i = 0; i < paths.size(); i++ )
+        {
+            Stamp stamp = paths.get( i );
+            Stamp previous = previousPaths.get( i );
+            if ( stamp.equals( previous ) )
+            {
+                stamp.hash = previous.hash;
+            }
+            else if ( stamp.path.equals( previous.path ) && stamp.size >= 0 && previous.hash != null )
+            {
+                stamp.hash = contentHash( stamp );
+                if ( !stamp.hash.equals( previous.hash ) )
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchSources( List<Stamp> recordedSources )
+    {
+        if ( explicitSources )
+        {
+            CompactPathSet sourcePaths = config.getSourcePaths();
+            if ( sourcePaths.size() != recordedSources.size() )
+            {
+                return false;
+            }
+            for ( int i = 0; i < recordedSources.size(); i++ )
+            {
+                if ( !sourcePaths.get( i ).equals( recordedSources.get( i ).path ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return matchStamps( recordedSources );
+    }
+
+    private static boolean matchStamps( List<Stamp> stamps )
+    {
+        for ( Stamp stamp : stamps )
+        {
+            File file = new File( stamp.path );
+            if ( file.lastModified() != stamp.lastModified || ( stamp.size >= 0 && file.length() != stamp.size ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write( List<CompilerMessage> messages )
+        throws IOException
+    {
+        File parent = manifest.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File temp = new File( parent, manifest.getName() + ".tmp" );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+        try
+        {
+            out.writeInt( VERSION );
+            writeString( out, key );
+            writeStamps( out, paths );
+            out.writeBoolean( explicitSources );
+            writeStamps( out, directories );
+            writeStamps( out, sources );
+            writeStamps( out, outputs );
+            out.writeInt( messages.size() );
+            for ( CompilerMessage message : messages )
+            {
+                writeString( out, message.getKind() == null ? null : message.getKind().name() );
+                writeString( out, message.getFile() );
+                out.writeInt( message.getStartLine() );
+                out.writeInt( message.getStartColumn() );
+                out.writeInt( message.getEndLine() );
+                out.writeInt( message.getEndColumn() );
+                writeString( out, message.getMessage() );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        if ( !temp.renameTo( manifest ) )
+        {
+            manifest.delete();
+            if ( !temp.renameTo( manifest ) )
+            {
+                throw new IOException( "Unable to rename " + temp + " to " + manifest );
+            }
+        }
+    }
+
+    private static List<CompilerMessage> readMessages( DataInputStream in )
+        throws IOException
+    {
+        int count = in.readInt();
+        List<CompilerMessage> messages = new CompilerMessageStore();
+        for ( int i = 0; i < count; i++ )
+        {
+            String kind = readString( in );
+            String file = readString( in );
+            int startLine = in.readInt();
+            int startColumn = in.readInt();
+            int endLine = in.readInt();
+            int endColumn = in.readInt();
+            messages.add( new CompilerMessage( file, kind == null ? null : CompilerMessage.Kind.valueOf( kind ),
+                                               startLine, startColumn, endLine, endColumn, readString( in ) ) );
+        }
+        return messages;
+    }
+
+    private static List<Stamp> readStamps( DataInputStream in )
+        throws IOException
+    {
+        int count = in.readInt();
+        List<Stamp> stamps = new ArrayList<Stamp>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            Stamp stamp = new Stamp( readString( in ), in.readLong(), in.readLong() );
+            stamp.hash = readString( in );
+            stamps.add( stamp );
+        }
+        return stamps;
+    }
+
+    private static void writeStamps( DataOutputStream out, List<Stamp> stamps )
+        throws IOException
+    {
+        out.writeInt( stamps.size() );
+        for ( Stamp stamp : stamps )
+        {
+            writeString( out, stamp.path );
+            out.writeLong( stamp.size );
+            out.writeLong( stamp.lastModified );
+            writeString( out, stamp.hash );
+        }
+    }
+
+    private static String readString( DataInputStream in )
+        throws IOException
+    {
+        int length = in.readInt();
+        if ( length < 0 )
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+    }
+
+    private static void writeString( DataOutputStream out, String s )
+        throws IOException
+    {
+        if ( s == null )
+        {
+            out.writeInt( -1 );
+        }
+        else
+        {
+            byte[] bytes = s.getBytes( "UTF-8" );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    private static List<Stamp> stampPaths( CompilerConfiguration config )
+    {
+        Set<String> ignored = new TreeSet<String>();
+        if ( config.getOutputLocation() != null )
+        {
+            ignored.add( new File( config.getOutputLocation() ).getAbsolutePath() );
+        }
+        if ( config.getGeneratedSourcesDirectory() != null )
+        {
+            ignored.add( config.getGeneratedSourcesDirectory().getAbsolutePath() );
+        }
+
+        DirectoryStamps directoryStamps = config.getDirectoryStamps();
+        if ( directoryStamps == null )
+        {
+            directoryStamps = new DirectoryStamps();
+        }
+
+        List<Stamp> stamps = new ArrayList<Stamp>();
+        for ( String entry : config.getClasspathEntries() )
+        {
+            stamps.add( ignored.contains( new File( entry ).getAbsolutePath() )
+                            ? new Stamp( entry, IGNORED, 0 )
+                            : stampEntry( entry, directoryStamps ) );
+        }
+        for ( String entry : config.getProcessorPathEntries() )
+        {
+            stamps.add( stampEntry( entry, directoryStamps ) );
+        }
+        return stamps;
+    }
+
+    private static Stamp stampFile( String path )
+    {
+        File file = new File( path );
+        return file.isFile() ? new Stamp( path, file.length(), file.lastModified() ) : new Stamp( path, MISSING, 0 );
+    }
+
+    /**
+     * Stamps a file by its size and modification time, and a directory by its number of files and a hash of their
+     * paths, sizes and modification times, reusing the stamp taken earlier in the build.
+     */
+    private static Stamp stampEntry( String path, DirectoryStamps directoryStamps )
+    {
+        File file = new File( path );
+        if ( !file.isDirectory() )
+        {
+            return stampFile( path );
+        }
+        String key = file.getAbsolutePath();
+        Stamp stamp = directoryStamps.stamps.get( key );
+        if ( stamp == null )
+        {
+            List<File> files = listFiles( file );
+            long hash = 0;
+            for ( File f : files )
+            {
+                hash = 31 * ( 31 * ( 31 * hash + f.getPath().hashCode() ) + f.length() ) + f.lastModified();
+            }
+            stamp = new Stamp( path, files.size(), hash );
+            directoryStamps.stamps.put( key, stamp );
+        }
+        // the hash of the returned stamp gets set
+        return new Stamp( path, stamp.size, stamp.lastModified );
+    }
+
+    /**
+     * Stamps the files of the output location and the output jar, so that a class deleted or rewritten since the
+     * compilation gets compiled again.
+     */
+    private static List<Stamp> stampOutputs( CompilerConfiguration config )
+    {
+        List<Stamp> stamps = new ArrayList<Stamp>();
+        if ( config.getOutputLocation() != null )
+        {
+            for ( File file : listFiles( new File( config.getOutputLocation() ) ) )
+            {
+                stamps.add( stampFile( file.getPath() ) );
+            }
+        }
+        if ( config.getOutputJarFile() != null )
+        {
+            stamps.add( stampFile( config.getOutputJarFile().getPath() ) );
+        }
+        if ( config.getAbiJar() != null )
+        {
+            stamps.add( stampFile( config.getAbiJar().getPath() ) );
+        }
+        return stamps;
+    }
+
+    private static void stampDirectories( File directory, List<Stamp> stamps )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return;
+        }
+        stamps.add( new Stamp( directory.getPath(), MISSING, directory.lastModified() ) );
+        for ( File child : children )
+        {
+            if ( child.isDirectory() )
+            {
+                stampDirectories( child, stamps );
+            }
+        }
+    }
+
+    private static List<File> listFiles( File directory )
+    {
+        List<File> files = new ArrayList<File>();
+        addFiles( directory, files );
+        Collections.sort( files, new Comparator<File>()
+        {
+            public int compare( File a, File b )
+            {
+                return a.getPath().compareTo( b.getPath() );
+            }
+        } );
+        return files;
+    }
+
+    private static void addFiles( File directory, List<File> files )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return;
+        }
+        for ( File child : children )
+        {
+            if ( child.isDirectory() )
+            {
+                addFiles( child, files );
+            }
+            else
+            {
+                files.add( child );
+            }
+        }
+    }
+
+    private static String contentHash( Stamp stamp )
+        throws IOException
+    {
+        File file = new File( stamp.path );
+        if ( !file.isDirectory() )
+        {
+            return Long.toHexString( FileFingerprintService.getShared().fingerprint( file ) );
+        }
+        List<File> files = listFiles( file );
+        long[] hashes = FileFingerprintService.getShared().fingerprint( files );
+        MessageDigest digest = newDigest();
+        int prefix = file.getPath().length();
+        for ( int i = 0; i < hashes.length; i++ )
+        {
+            digest.update( files.get( i ).getPath().substring( prefix ).getBytes( "UTF-8" ) );
+            digest.update( (byte) 0 );
+            digest.update( Long.toHexString( hashes[i] ).getBytes( "UTF-8" ) );
+        }
+        return toHex( digest.digest() );
+    }
+
+    private static String computeKey( CompilerConfiguration config, String compilerId )
+        throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( compilerId ).append( '\n' );
+        sb.append( System.getProperty( "java.version" ) ).append( '\n' );
+        sb.append( System.getProperty( "java.home" ) ).append( '\n' );
+
+        // the classpath, the processor path and the sources are stamped apart
+        key( sb, "outputLocation", config.getOutputLocation() );
+        key( sb, "sourceLocations", config.getSourceLocations() );
+        key( sb, "includes", config.getIncludes() );
+        key( sb, "excludes", config.getExcludes() );
+        key( sb, "debug", config.isDebug() );
+        key( sb, "debugLevel", config.getDebugLevel() );
+        key( sb, "showWarnings", config.isShowWarnings() );
+        key( sb, "showDeprecation", config.isShowDeprecation() );
+        key( sb, "sourceVersion", config.getSourceVersion() );
+        key( sb, "targetVersion", config.getTargetVersion() );
+        key( sb, "sourceEncoding", config.getSourceEncoding() );
+        key( sb, "customCompilerArguments", config.getCustomCompilerArgumentsAsMap() );
+        key( sb, "fork", config.isFork() );
+        key( sb, "meminitial", config.getMeminitial() );
+        key( sb, "maxmem", config.getMaxmem() );
+        key( sb, "executable", config.getExecutable() );
+        key( sb, "workingDirectory", config.getWorkingDirectory() );
+        key( sb, "buildDirectory", config.getBuildDirectory() );
+        key( sb, "outputFileName", config.getOutputFileName() );
+        key( sb, "optimize", config.isOptimize() );
+        key( sb, "compilerVersion", config.getCompilerVersion() );
+        key( sb, "verbose", config.isVerbose() );
+        key( sb, "generatedSourcesDirectory", config.getGeneratedSourcesDirectory() );
+        key( sb, "proc", config.getProc() );
+        key( sb, "annotationProcessors", config.getAnnotationProcessors() );
+        key( sb, "profileAnnotationProcessors", config.isProfileAnnotationProcessors() );
+        key( sb, "forceJavacCompilerUse", config.isForceJavacCompilerUse() );
+        key( sb, "outputJarFile", config.getOutputJarFile() );
+        key( sb, "explodedOutput", config.isExplodedOutput() );
+        key( sb, "abiJar", config.getAbiJar() );
+        key( sb, "collectTimings", config.isCollectTimings() );
+        key( sb, "maxErrors", config.getMaxErrors() );
+        key( sb, "maxWarningsPerCode", config.getMaxWarningsPerCode() );
+
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            sb.append( source.getPath() ).append( '\n' ).append( source.getCharContent() ).append( '\n' );
+        }
+
+        return toHex( newDigest().digest( sb.toString().getBytes( "UTF-8" ) ) );
+    }
+
+    private static void key( StringBuilder sb, String name, Object value )
+    {
+        sb.append( name ).append( '=' ).append( normalize( value ) ).append( '\n' );
+    }
+
+    /**
+     * @return a string for the values making up the configuration, with sets and maps sorted, <code>"null"</code> for
+     *         <code>null</code>
+     */
+    private static Object normalize( Object value )
+    {
+        if ( value == null )
+        {
+            return "null";
+        }
+        if ( value instanceof String || value instanceof Boolean || value instanceof Number || value instanceof Enum )
+        {
+            return value.toString();
+        }
+        if ( value instanceof File )
+        {
+            return ( (File) value ).getAbsolutePath();
+        }
+        if ( value instanceof Object[] )
+        {
+            return normalize( Arrays.asList( (Object[]) value ) );
+        }
+        if ( value instanceof Map )
+        {
+            Map<String, Object> sorted = new TreeMap<String, Object>();
+            for ( Map.Entry<?, ?> entry : ( (Map<?, ?>) value ).entrySet() )
+            {
+                sorted.put( String.valueOf( normalize( entry.getKey() ) ), normalize( entry.getValue() ) );
+            }
+            return sorted.toString();
+        }
+        if ( value instanceof Collection )
+        {
+            Collection<Object> normalized =
+                value instanceof Set ? new TreeSet<Object>() : new ArrayList<Object>();
+            for ( Object element : (Collection<?>) value )
+            {
+                normalized.add( String.valueOf( normalize( element ) ) );
+            }
+            return normalized.toString();
+        }
+        return value.toString();
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The stamps of the directory classpath entries taken during one build, shared by its compilations through
+     * {@link CompilerConfiguration#setDirectoryStamps(DirectoryStamps)}. It is safe for use by concurrent
+     * compilations.
+     */
+    public static final class DirectoryStamps
+    {
+        /**
+         * by absolute path
+         */
+        private final Map<String, Stamp> stamps = new ConcurrentHashMap<String, Stamp>();
+    }
+
+    /**
+     * The size and modification time of a file, <code>-1</code> as size marking a missing file or a directory of the
+     * source locations, <code>-2</code> a classpath entry not taken into account.
+     */
+    private static final class Stamp
+    {
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private String hash;
+
+        Stamp( String path, long size, long lastModified )
+        {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( !( o instanceof Stamp ) )
+            {
+                return false;
+            }
+            Stamp other = (Stamp) o;
+            return path.equals( other.path ) && size == other.size && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return path.hashCode();
+        }
+    }
+}
@@ -0,0 +1,822 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reduces a class file to what compiling against it needs: signatures, constants and annotations are kept while
+ * method bodies, private and synthetic members, static initializers and debug attributes are dropped, and the
+ * constant pool is rebuilt from what is left. Anonymous, local and private classes are dropped altogether.
+ * <p/>
+ * The result only depends on the API of the class, so it stays byte-identical as long as only implementation
+ * changes. It is meant for compile classpaths and cannot be loaded by a JVM.
+ *
+ * @since 2.5
+ */
+public final class ClassAbiStripper
+{
+    private static final int ACC_PRIVATE = 0x0002;
+
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int ACC_MODULE = 0x8000;
+
+    private static final int UTF8 = 1;
+
+    private static final int INTEGER = 3;
+
+    private static final int FLOAT = 4;
+
+    private static final int LONG = 5;
+
+    private static final int DOUBLE = 6;
+
+    private static final int CLASS = 7;
+
+    private static final int STRING = 8;
+
+    private static final int METHOD_HANDLE = 15;
+
+    private static final int METHOD_TYPE = 16;
+
+    private static final int MODULE = 19;
+
+    private static final int PACKAGE = 20;
+
+    private static final String INNER_CLASSES = "InnerClasses";
+
+    private static final Set<String> MEMBER_ATTRIBUTES = new HashSet<String>(
+        Arrays.asList( "ConstantValue", "Exceptions", "Signature", "Deprecated", "RuntimeVisibleAnnotations",
+                       "RuntimeInvisibleAnnotations", "RuntimeVisibleParameterAnnotations",
+                       "RuntimeInvisibleParameterAnnotations", "RuntimeVisibleTypeAnnotations",
+                       "RuntimeInvisibleTypeAnnotations", "AnnotationDefault", "MethodParameters" ) );
+
+    private static final Set<String> CLASS_ATTRIBUTES = new HashSet<String>(
+        Arrays.asList( "Signature", "Deprecated", "RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations",
+                       "RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations", "PermittedSubclasses",
+                       "Record" ) );
+
+    private final Constant[] constants;
+
+    private final List<byte[]> pool = new ArrayList<byte[]>();
+
+    private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+
+    private int poolCount = 1;
+
+    /**
+     * The strings and class names of the rebuilt pool, to find the nested classes the API refers to.
+     */
+    private final Set<String> strings = new HashSet<String>();
+
+    private final Set<String> classes = new HashSet<String>();
+
+    private ClassAbiStripper( Constant[] constants )
+    {
+        this.constants = constants;
+    }
+
+    public static boolean isClassFile( String name )
+    {
+        return name.endsWith( ".class" );
+    }
+
+    /**
+     * @return the stripped class file, or <code>null</code> if the class is not part of the API
+     * @throws IOException if the content is not a valid class file
+     */
+    public static byte[] strip( byte[] classFile )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( classFile ) );
+        if ( in.readInt() != 0xCAFEBABE )
+        {
+            throw new IOException( "Not a class file" );
+        }
+        int minorVersion = in.readUnsignedShort();
+        int majorVersion = in.readUnsignedShort();
+
+        ClassAbiStripper stripper = new ClassAbiStripper( readConstants( in ) );
+
+        int access = in.readUnsignedShort();
+        if ( ( access & ACC_MODULE ) != 0 )
+        {
+            // module descriptors have no implementation to strip
+            return classFile;
+        }
+        if ( ( access & ACC_SYNTHETIC ) != 0 )
+        {
+            return null;
+        }
+        int thisClass = in.readUnsignedShort();
+        int superClass = in.readUnsignedShort();
+        int[] interfaces = new int[in.readUnsignedShort()];
+        for ( int i = 0; i < interfaces.length; i++ )
+        {
+            interfaces[i] = in.readUnsignedShort();
+        }
+        List<Member> fields = stripper.readMembers( in );
+        List<Member> methods = stripper.readMembers( in );
+        List<Attribute> attributes = stripper.readAttributes( in );
+
+        return stripper.write( minorVersion, majorVersion, access, thisClass, superClass, interfaces, fields, methods,
+                               attributes );
+    }
+
+    private byte[] write( int minorVersion, int majorVersion, int access, int thisClass, int superClass,
+                          int[] interfaces, List<Member> fields, List<Member> methods, List<Attribute> attributes )
+        throws IOException
+    {
+        String thisName = className( thisClass );
+        List<InnerClass> innerClasses = new ArrayList<InnerClass>();
+        for ( Attribute attribute : attributes )
+        {
+            if ( "EnclosingMethod".equals( attribute.name ) )
+            {
+                // local or anonymous
+                return null;
+            }
+            if ( INNER_CLASSES.equals( attribute.name ) )
+            {
+                innerClasses.addAll( readInnerClasses( attribute.data ) );
+            }
+        }
+        if ( !isAccessible( thisName, innerClasses ) )
+        {
+            return null;
+        }
+
+        Buffer body = new Buffer();
+        body.writeShort( access );
+        body.writeShort( copy( thisClass ) );
+        body.writeShort( superClass == 0 ? 0 : copy( superClass ) );
+        body.writeShort( interfaces.length );
+        for ( int anInterface : interfaces )
+        {
+            body.writeShort( copy( anInterface ) );
+        }
+        writeMembers( body, fields, false );
+        writeMembers( body, methods, true );
+
+        List<Attribute> kept = new ArrayList<Attribute>();
+        for ( Attribute attribute : attributes )
+        {
+            if ( CLASS_ATTRIBUTES.contains( attribute.name ) )
+            {
+                kept.add( attribute );
+            }
+        }
+        body.writeShort( kept.size() + ( innerClasses.isEmpty() ? 0 : 1 ) );
+        for ( Attribute attribute : kept )
+        {
+            writeAttribute( body, attribute );
+        }
+        // last, as which nested classes to keep depends on everything else
+        if ( !innerClasses.isEmpty() )
+        {
+            byte[] data = writeInnerClasses( thisName, innerClasses );
+            body.writeShort( utf8( INNER_CLASSES ) );
+            body.writeInt( data.length );
+            body.write( data );
+        }
+
+        Buffer out = new Buffer();
+        out.writeInt( 0xCAFEBABE );
+        out.writeShort( minorVersion );
+        out.writeShort( majorVersion );
+        out.writeShort( poolCount );
+        for ( byte[] constant : pool )
+        {
+            out.write( constant );
+        }
+        out.write( body.toByteArray() );
+        return out.toByteArray();
+    }
+
+    // ----------------------------------------------------------------------
+    // Reading
+    // ----------------------------------------------------------------------
+
+    private static Constant[] readConstants( DataInputStream in )
+        throws IOException
+    {
+        Constant[] constants = new Constant[in.readUnsignedShort()];
+        for ( int i = 1; i < constants.length; i++ )
+        {
+            Constant constant = new Constant( in.readUnsignedByte() );
+            constants[i] = constant;
+            switch ( constant.tag )
+            {
+                case UTF8:
+                    constant.utf8 = in.readUTF();
+                    break;
+                case INTEGER:
+                case FLOAT:
+                    constant.value = in.readInt();
+                    break;
+                case LONG:
+                case DOUBLE:
+                    constant.value = in.readLong();
+                    // takes two slots
+                    i++;
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    constant.reference = in.readUnsignedShort();
+                    break;
+                case METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    // member references, name and types and dynamic call sites only matter to code
+                    in.readInt();
+                    break;
+                default:
+                    throw new IOException( "Unknown constant pool tag " + constant.tag );
+            }
+        }
+        return constants;
+    }
+
+    private List<Member> readMembers( DataInputStream in )
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        List<Member> members = new ArrayList<Member>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            Member member = new Member();
+            member.access = in.readUnsignedShort();
+            member.name = in.readUnsignedShort();
+            member.descriptor = in.readUnsignedShort();
+            member.attributes = readAttributes( in );
+            members.add( member );
+        }
+        return members;
+    }
+
+    private List<Attribute> readAttributes( DataInputStream in )
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        List<Attribute> attributes = new ArrayList<Attribute>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            Attribute attribute = new Attribute();
+            attribute.name = utf8At( in.readUnsignedShort() );
+            attribute.data = new byte[in.readInt()];
+            in.readFully( attribute.data );
+            attributes.add( attribute );
+        }
+        return attributes;
+    }
+
+    private List<InnerClass> readInnerClasses( byte[] data )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( data ) );
+        int count = in.readUnsignedShort();
+        List<InnerClass> innerClasses = new ArrayList<InnerClass>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            InnerClass innerClass = new InnerClass();
+            innerClass.inner = in.readUnsignedShort();
+            innerClass.outer = in.readUnsignedShort();
+            innerClass.name = in.readUnsignedShort();
+            innerClass.access = in.readUnsignedShort();
+            innerClass.innerName = className( innerClass.inner );
+            innerClass.outerName = innerClass.outer == 0 ? null : className( innerClass.outer );
+            innerClass.simpleName = innerClass.name == 0 ? null : utf8At( innerClass.name );
+            innerClasses.add( innerClass );
+        }
+        return innerClasses;
+    }
+
+    /**
+     * Tells whether neither the class nor any class enclosing it is anonymous, local or private.
+     */
+    private static boolean isAccessible( String name, List<InnerClass> innerClasses )
+    {
+        Set<String> seen = new HashSet<String>();
+        while ( name != null && seen.add( name ) )
+        {
+            InnerClass entry = null;
+            for ( InnerClass innerClass : innerClasses )
+            {
+                if ( name.equals( innerClass.innerName ) )
+                {
+                    entry = innerClass;
+                    break;
+                }
+            }
+            if ( entry == null )
+            {
+                return true;
+            }
+            if ( entry.outer == 0 || entry.name == 0 || ( entry.access & ( ACC_PRIVATE | ACC_SYNTHETIC ) ) != 0 )
+            {
+                return false;
+            }
+            name = entry.outerName;
+        }
+        return true;
+    }
+
+    private Constant constant( int index )
+        throws IOException
+    {
+        if ( index <= 0 || index >= constants.length || constants[index] == null )
+        {
+            throw new IOException( "Invalid constant pool index " + index );
+        }
+        return constants[index];
+    }
+
+    private String utf8At( int index )
+        throws IOException
+    {
+        Constant constant = constant( index );
+        if ( constant.tag != UTF8 )
+        {
+            throw new IOException( "Constant " + index + " is not a string" );
+        }
+        return constant.utf8;
+    }
+
+    private String className( int index )
+        throws IOException
+    {
+        return utf8At( constant( index ).reference );
+    }
+
+    // ----------------------------------------------------------------------
+    // Writing
+    // ----------------------------------------------------------------------
+
+    private void writeMembers( Buffer out, List<Member> members, boolean methods )
+        throws IOException
+    {
+        List<Member> kept = new ArrayList<Member>();
+        for ( Member member : members )
+        {
+            if ( ( member.access & ( ACC_PRIVATE | ACC_SYNTHETIC ) ) == 0
+                && !( methods && "<clinit>".equals( utf8At( member.name ) ) ) )
+            {
+                kept.add( member );
+            }
+        }
+        out.writeShort( kept.size() );
+        for ( Member member : kept )
+        {
+            out.writeShort( member.access );
+            out.writeShort( copy( member.name ) );
+            out.writeShort( copy( member.descriptor ) );
+            writeAttributes( out, member.attributes, MEMBER_ATTRIBUTES );
+        }
+    }
+
+    private void writeAttributes( Buffer out, List<Attribute> attributes, Set<String> allowed )
+        throws IOException
+    {
+        List<Attribute> kept = new ArrayList<Attribute>();
+        for ( Attribute attribute : attributes )
+        {
+            if ( allowed.contains( attribute.name ) )
+            {
+                kept.add( attribute );
+            }
+        }
+        out.writeShort( kept.size() );
+        for ( Attribute attribute : kept )
+        {
+            writeAttribute( out, attribute );
+        }
+    }
+
+    private void writeAttribute( Buffer out, Attribute attribute )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( attribute.data ) );
+        Buffer data = new Buffer();
+        String name = attribute.name;
+        if ( "ConstantValue".equals( name ) || "Signature".equals( name ) )
+        {
+            data.writeShort( copy( in.readUnsignedShort() ) );
+        }
+        else if ( "Exceptions".equals( name ) || "PermittedSubclasses".equals( name ) )
+        {
+            int count = in.readUnsignedShort();
+            data.writeShort( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                data.writeShort( copy( in.readUnsignedShort() ) );
+            }
+        }
+        else if ( name.endsWith( "ParameterAnnotations" ) )
+        {
+            int parameters = in.readUnsignedByte();
+            data.writeByte( parameters );
+            for ( int i = 0; i < parameters; i++ )
+            {
+                copyAnnotations( in, data );
+            }
+        }
+        else if ( name.endsWith( "TypeAnnotations" ) )
+        {
+            int count = in.readUnsignedShort();
+            data.writeShort( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                copyTypeAnnotation( in, data );
+            }
+        }
+        else if ( name.endsWith( "Annotations" ) )
+        {
+            copyAnnotations( in, data );
+        }
+        else if ( "AnnotationDefault".equals( name ) )
+        {
+            copyElementValue( in, data );
+        }
+        else if ( "MethodParameters".equals( name ) )
+        {
+            int count = in.readUnsignedByte();
+            data.writeByte( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                int parameterName = in.readUnsignedShort();
+                data.writeShort( parameterName == 0 ? 0 : copy( parameterName ) );
+                data.writeShort( in.readUnsignedShort() );
+            }
+        }
+        else if ( "Record".equals( name ) )
+        {
+            int count = in.readUnsignedShort();
+            data.writeShort( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                data.writeShort( copy( in.readUnsignedShort() ) );
+                data.writeShort( copy( in.readUnsignedShort() ) );
+                writeAttributes( data, readAttributes( in ), MEMBER_ATTRIBUTES );
+            }
+        }
+        // anything else kept, such as Deprecated, has no content
+
+        byte[] bytes = data.toByteArray();
+        out.writeShort( utf8( name ) );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private void copyAnnotations( DataInputStream in, Buffer out )
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        out.writeShort( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            copyAnnotation( in, out );
+        }
+    }
+
+    private void copyAnnotation( DataInputStream in, Buffer out )
+        throws IOException
+    {
+        out.writeShort( copy( in.readUnsignedShort() ) );
+        int pairs = in.readUnsignedShort();
+        out.writeShort( pairs );
+        for ( int i = 0; i < pairs; i++ )
+        {
+            out.writeShort( copy( in.readUnsignedShort() ) );
+            copyElementValue( in, out );
+        }
+    }
+
+    private void copyElementValue( DataInputStream in, Buffer out )
+        throws IOException
+    {
+        int tag = in.readUnsignedByte();
+        out.writeByte( tag );
+        switch ( tag )
+        {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+            case 'c':
+                out.writeShort( copy( in.readUnsignedShort() ) );
+                break;
+            case 'e':
+                out.writeShort( copy( in.readUnsignedShort() ) );
+                out.writeShort( copy( in.readUnsignedShort() ) );
+                break;
+            case '@':
+                copyAnnotation( in, out );
+                break;
+            case '[':
+                int count = in.readUnsignedShort();
+                out.writeShort( count );
+                for ( int i = 0; i < count; i++ )
+                {
+                    copyElementValue( in, out );
+                }
+                break;
+            default:
+                throw new IOException( "Unknown annotation element tag " + tag );
+        }
+    }
+
+    private void copyTypeAnnotation( DataInputStream in, Buffer out )
+        throws IOException
+    {
+        int target = in.readUnsignedByte();
+        out.writeByte( target );
+        switch ( target )
+        {
+            case 0x00:
+            case 0x01:
+            case 0x16:
+                // type parameter, formal parameter
+                out.writeByte( in.readUnsignedByte() );
+                break;
+            case 0x10:
+            case 0x11:
+            case 0x12:
+            case 0x17:
+                // supertype, type parameter bound, throws
+                out.writeShort( in.readUnsignedShort() );
+                break;
+            case 0x13:
+            case 0x14:
+            case 0x15:
+                // field, return type, receiver
+                break;
+            default:
+                throw new IOException( "Unexpected type annotation target " + target + " outside of code" );
+        }
+        int pathLength = in.readUnsignedByte();
+        out.writeByte( pathLength );
+        for ( int i = 0; i < pathLength; i++ )
+        {
+            out.writeShort( in.readUnsignedShort() );
+        }
+        copyAnnotation( in, out );
+    }
+
+    /**
+     * Keeps the entries for this class, its API member classes and the nested classes its API refers to, along with
+     * their enclosing classes, sorted so that references from code cannot reorder them.
+     */
+    private byte[] writeInnerClasses( String thisName, List<InnerClass> innerClasses )
+        throws IOException
+    {
+        List<InnerClass> candidates = new ArrayList<InnerClass>();
+        for ( InnerClass innerClass : innerClasses )
+        {
+            if ( innerClass.outer != 0 && innerClass.name != 0
+                && ( innerClass.access & ( ACC_PRIVATE | ACC_SYNTHETIC ) ) == 0 )
+            {
+                candidates.add( innerClass );
+            }
+        }
+
+        Set<String> referenced = new HashSet<String>( classes );
+        List<InnerClass> kept = new ArrayList<InnerClass>();
+        boolean changed = true;
+        while ( changed )
+        {
+            changed = false;
+            for ( InnerClass candidate : candidates )
+            {
+                if ( !kept.contains( candidate )
+                    && ( thisName.equals( candidate.innerName ) || thisName.equals( candidate.outerName )
+                    || referenced.contains( candidate.innerName ) || isReferenced( candidate ) ) )
+                {
+                    kept.add( candidate );
+                    referenced.add( candidate.outerName );
+                    changed = true;
+                }
+            }
+        }
+        Collections.sort( kept, new Comparator<InnerClass>()
+        {
+            public int compare( InnerClass first, InnerClass second )
+            {
+                return first.innerName.compareTo( second.innerName );
+            }
+        } );
+
+        Buffer out = new Buffer();
+        out.writeShort( kept.size() );
+        for ( InnerClass innerClass : kept )
+        {
+            out.writeShort( copy( innerClass.inner ) );
+            out.writeShort( copy( innerClass.outer ) );
+            out.writeShort( copy( innerClass.name ) );
+            out.writeShort( innerClass.access );
+        }
+        return out.toByteArray();
+    }
+
+    private boolean isReferenced( InnerClass innerClass )
+    {
+        String type = "L" + innerClass.innerName;
+        String outerType = "L" + innerClass.outerName;
+        // generic signatures name a nested class of a parameterized class after a dot
+        String nested = "." + innerClass.simpleName;
+        for ( String string : strings )
+        {
+            if ( contains( string, type ) || ( string.contains( outerType ) && contains( string, nested ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains( String string, String type )
+    {
+        return string.contains( type + ";" ) || string.contains( type + "<" );
+    }
+
+    // ----------------------------------------------------------------------
+    // Constant pool
+    // ----------------------------------------------------------------------
+
+    /**
+     * Adds the given constant of the original pool to the new one.
+     *
+     * @return its index in the new pool
+     */
+    private int copy( int index )
+        throws IOException
+    {
+        Constant constant = constant( index );
+        Buffer bytes = new Buffer();
+        bytes.writeByte( constant.tag );
+        switch ( constant.tag )
+        {
+            case UTF8:
+                return utf8( constant.utf8 );
+            case INTEGER:
+            case FLOAT:
+                bytes.writeInt( (int) constant.value );
+                return add( constant.tag + ":" + constant.value, bytes, 1 );
+            case LONG:
+            case DOUBLE:
+                bytes.writeLong( constant.value );
+                return add( constant.tag + ":" + constant.value, bytes, 2 );
+            case CLASS:
+            case STRING:
+            case MODULE:
+            case PACKAGE:
+                String value = utf8At( constant.reference );
+                if ( constant.tag == CLASS )
+                {
+                    classes.add( value );
+                }
+                int reference = utf8( value );
+                bytes.writeShort( reference );
+                return add( constant.tag + ":" + reference, bytes, 1 );
+            default:
+                throw new IOException( "Unexpected constant pool tag " + constant.tag + " outside of code" );
+        }
+    }
+
+    private int utf8( String value )
+        throws IOException
+    {
+        strings.add( value );
+        Buffer bytes = new Buffer();
+        bytes.writeByte( UTF8 );
+        bytes.writeUTF( value );
+        return add( UTF8 + ":" + value, bytes, 1 );
+    }
+
+    private int add( String key, Buffer bytes, int slots )
+        throws IOException
+    {
+        Integer index = poolIndexes.get( key );
+        if ( index == null )
+        {
+            index = poolCount;
+            poolIndexes.put( key, index );
+            pool.add( bytes.toByteArray() );
+            poolCount += slots;
+            if ( poolCount > 0xFFFF )
+            {
+                throw new IOException( "Constant pool overflow" );
+            }
+        }
+        return index;
+    }
+
+    private static final class Constant
+    {
+        private final int tag;
+
+        private String utf8;
+
+        private long value;
+
+        private int reference;
+
+        private Constant( int tag )
+        {
+            this.tag = tag;
+        }
+    }
+
+    private static final class Member
+    {
+        private int access;
+
+        private int name;
+
+        private int descriptor;
+
+        private List<Attribute> attributes;
+    }
+
+    private static final class Attribute
+    {
+        private String name;
+
+        private byte[] data;
+    }
+
+    private static final class InnerClass
+    {
+        private int inner;
+
+        private int outer;
+
+        private int name;
+
+        private int access;
+
+        private String innerName;
+
+        private String outerName;
+
+        private String simpleName;
+    }
+
+    private static final class Buffer
+        extends DataOutputStream
+    {
+        private Buffer()
+        {
+            super( new ByteArrayOutputStream() );
+        }
+
+        private byte[] toByteArray()
+        {
+            return ( (ByteArrayOutputStream) out ).toByteArray();
+        }
+    }
+}
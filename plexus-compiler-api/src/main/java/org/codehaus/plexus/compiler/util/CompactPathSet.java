@@ -0,0 +1,406 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A set of file paths keeping the order they were added in, for the hundred thousands of sources and classpath
+ * entries of large modules. Paths are kept as the strings they were added as, so reading them, as the argument file
+ * and <code>javax.tools</code> do, copies nothing; they are indexed by an open addressing table of array positions
+ * rather than by a map entry per path, and looked up by the hash code the strings cache. The files of the
+ * {@link #asFileSet() file view} are created on first access and kept. Paths are compared as strings, without being
+ * normalized.
+ * <p/>
+ * A removed path leaves a hole which is compacted once the set grows or is accessed by index, so that removing many
+ * paths, such as through an iterator or {@link #retainAll(Collection)}, takes linear time overall.
+ *
+ * @since 2.5
+ */
+public class CompactPathSet
+    extends AbstractSet<String>
+{
+    private String[] paths = new String[16];
+
+    /**
+     * the files of the paths at the same positions, <code>null</code> until asked for
+     */
+    private File[] files = new File[16];
+
+    /**
+     * positions in use, including the holes left by removed paths
+     */
+    private int count;
+
+    private int size;
+
+    /**
+     * open addressing table of positions plus one, <code>0</code> marking a free slot
+     */
+    private int[] table = new int[32];
+
+    public CompactPathSet()
+    {
+    }
+
+    public CompactPathSet( Collection<String> paths )
+    {
+        addAll( paths );
+    }
+
+    @Override
+    public boolean add( String path )
+    {
+        if ( find( path ) >= 0 )
+        {
+            return false;
+        }
+
+        if ( count == paths.length )
+        {
+            if ( size < count )
+            {
+                rehash( table.length );
+            }
+            if ( count == paths.length )
+            {
+                String[] newPaths = new String[count * 2];
+                System.arraycopy( paths, 0, newPaths, 0, count );
+                paths = newPaths;
+
+                File[] newFiles = new File[count * 2];
+                System.arraycopy( files, 0, newFiles, 0, count );
+                files = newFiles;
+            }
+        }
+        paths[count++] = path;
+        size++;
+
+        if ( count * 2 > table.length )
+        {
+            rehash( size * 2 > table.length ? table.length * 2 : table.length );
+        }
+        else
+        {
+            insert( count - 1 );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains( Object o )
+    {
+        return o instanceof String && find( (String) o ) >= 0;
+    }
+
+    @Override
+    public boolean remove( Object o )
+    {
+        int index = o instanceof String ? find( (String) o ) : -1;
+        if ( index < 0 )
+        {
+            return false;
+        }
+        removeAt( index );
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        paths = new String[16];
+        files = new File[16];
+        count = 0;
+        size = 0;
+        table = new int[32];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the path added at the given position among those left
+     */
+    public String get( int index )
+    {
+        if ( index < 0 || index >= size )
+        {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+        }
+        if ( count > size )
+        {
+            rehash( table.length );
+        }
+        return paths[index];
+    }
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new Cursor<String>()
+        {
+            String at( int index )
+            {
+                return paths[index];
+            }
+        };
+    }
+
+    @Override
+    public String[] toArray()
+    {
+        String[] array = new String[size];
+        int j = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( paths[i] != null )
+            {
+                array[j++] = paths[i];
+            }
+        }
+        return array;
+    }
+
+    /**
+     * @return an unmodifiable list of the paths in the order they were added, reading through to this set
+     */
+    public List<String> asList()
+    {
+        return new PathList();
+    }
+
+    /**
+     * @return a view of this set as the files with the paths it contains, files added to the view being stored with
+     *         their absolute path
+     */
+    public Set<File> asFileSet()
+    {
+        return new FileSet();
+    }
+
+    private int find( String path )
+    {
+        int mask = table.length - 1;
+        for ( int slot = hash( path ) & mask; table[slot] != 0; slot = ( slot + 1 ) & mask )
+        {
+            int index = table[slot] - 1;
+            if ( path.equals( paths[index] ) )
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void insert( int index )
+    {
+        int mask = table.length - 1;
+        int slot = hash( paths[index] ) & mask;
+        while ( table[slot] != 0 )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Compacts the holes left by removed paths and indexes the paths left in a table of the given length.
+     */
+    private void rehash( int length )
+    {
+        if ( count > size )
+        {
+            int j = 0;
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( paths[i] != null )
+                {
+                    paths[j] = paths[i];
+                    files[j] = files[i];
+                    j++;
+                }
+            }
+            Arrays.fill( paths, j, count, null );
+            Arrays.fill( files, j, count, null );
+            count = j;
+        }
+
+        table = new int[length];
+        for ( int i = 0; i < count; i++ )
+        {
+            insert( i );
+        }
+    }
+
+    /**
+     * Leaves a hole at the given position, which its slot in the table keeps pointing to until the next rehash.
+     */
+    private void removeAt( int index )
+    {
+        paths[index] = null;
+        files[index] = null;
+        size--;
+    }
+
+    private File file( int index )
+    {
+        File file = files[index];
+        if ( file == null )
+        {
+            file = new File( paths[index] );
+            files[index] = file;
+        }
+        return file;
+    }
+
+    private static int hash( String path )
+    {
+        int h = path.hashCode();
+        return h ^ ( h >>> 16 );
+    }
+
+    /**
+     * Walks the positions in use, skipping the holes, without compacting them.
+     */
+    private abstract class Cursor<T>
+        implements Iterator<T>
+    {
+        private int next = skip( 0 );
+
+        private int last = -1;
+
+        abstract T at( int index );
+
+        public boolean hasNext()
+        {
+            return next < count;
+        }
+
+        public T next()
+        {
+            if ( next >= count )
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = skip( next + 1 );
+            return at( last );
+        }
+
+        public void remove()
+        {
+            if ( last < 0 )
+            {
+                throw new IllegalStateException();
+            }
+            removeAt( last );
+            last = -1;
+        }
+
+        private int skip( int index )
+        {
+            while ( index < count && paths[index] == null )
+            {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    private class PathList
+        extends AbstractList<String>
+        implements RandomAccess
+    {
+        @Override
+        public String get( int index )
+        {
+            return CompactPathSet.this.get( index );
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean contains( Object o )
+        {
+            return CompactPathSet.this.contains( o );
+        }
+    }
+
+    private class FileSet
+        extends AbstractSet<File>
+    {
+        @Override
+        public boolean add( File file )
+        {
+            return CompactPathSet.this.add( file.getAbsolutePath() );
+        }
+
+        @Override
+        public boolean contains( Object o )
+        {
+            return o instanceof File && CompactPathSet.this.contains( ( (File) o ).getAbsolutePath() );
+        }
+
+        @Override
+        public boolean remove( Object o )
+        {
+            return o instanceof File && CompactPathSet.this.remove( ( (File) o ).getAbsolutePath() );
+        }
+
+        @Override
+        public void clear()
+        {
+            CompactPathSet.this.clear();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Iterator<File> iterator()
+        {
+            return new Cursor<File>()
+            {
+                File at( int index )
+                {
+                    return file( index );
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a jar whose bytes only depend on the names and contents of its entries: entries are sorted by name, parent
+ * directories are added implicitly, and every entry carries the same fixed timestamp. Entries are deflated in
+ * parallel before being written out in order.
+ *
+ * @since 2.5
+ */
+public class DeterministicJarWriter
+{
+    public static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    /**
+     * 1980-02-01 00:00:00 in MS-DOS format, the earliest date which survives timezone conversions in zip tools.
+     */
+    private static final int DOS_DATE = ( 2 << 5 ) | 1;
+
+    private static final int DOS_TIME = 0;
+
+    /**
+     * Below this many bytes in total, handing entries to other threads costs more than deflating on the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int UTF8_NAMES = 0x0800;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final byte[] DEFAULT_MANIFEST =
+        "Manifest-Version: 1.0\r\nCreated-By: Plexus Compiler\r\n\r\n".getBytes();
+
+    private static ExecutorService executor;
+
+    private final SortedMap<String, byte[]> entries = new TreeMap<String, byte[]>();
+
+    /**
+     * Adds a file entry, replacing any previous entry with the same name.
+     *
+     * @param name the path of the entry in the jar, using <code>/</code> as separator
+     */
+    public synchronized void add( String name, byte[] content )
+    {
+        name = name.replace( '\\', '/' );
+        while ( name.startsWith( "/" ) )
+        {
+            name = name.substring( 1 );
+        }
+        entries.put( name, content );
+    }
+
+    /**
+     * Adds every file below the given directory, named after its path relative to it.
+     */
+    public void addDirectory( File directory )
+        throws IOException
+    {
+        addDirectory( directory, "" );
+    }
+
+    private void addDirectory( File directory, String prefix )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addDirectory( file, prefix + file.getName() + "/" );
+            }
+            else
+            {
+                add( prefix + file.getName(), readFile( file ) );
+            }
+        }
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Writes the jar, with a minimal manifest if none has been added.
+     */
+    public synchronized void write( File jar )
+        throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+        List<byte[]> contents = new ArrayList<byte[]>();
+
+        // the manifest must come first for JarInputStream to find it
+        names.add( "META-INF/" );
+        contents.add( null );
+        names.add( MANIFEST_NAME );
+        contents.add( entries.containsKey( MANIFEST_NAME ) ? entries.get( MANIFEST_NAME ) : DEFAULT_MANIFEST );
+
+        Set<String> directories = new HashSet<String>();
+        directories.add( "META-INF/" );
+        for ( Map.Entry<String, byte[]> entry : entries.entrySet() )
+        {
+            String name = entry.getKey();
+            if ( MANIFEST_NAME.equals( name ) || name.endsWith( "/" ) )
+            {
+                continue;
+            }
+            for ( int slash = name.indexOf( '/' ); slash >= 0; slash = name.indexOf( '/', slash + 1 ) )
+            {
+                String directory = name.substring( 0, slash + 1 );
+                if ( directories.add( directory ) )
+                {
+                    names.add( directory );
+                    contents.add( null );
+                }
+            }
+            names.add( name );
+            contents.add( entry.getValue() );
+        }
+
+        if ( names.size() > 0xFFFF )
+        {
+            throw new IOException( "Too many entries for a jar without zip64 support: " + names.size() );
+        }
+
+        List<Compressed> compressed = compress( contents );
+
+        if ( jar.getParentFile() != null )
+        {
+            jar.getParentFile().mkdirs();
+        }
+
+        ZipStream out = new ZipStream( new BufferedOutputStream( new FileOutputStream( jar ), 64 * 1024 ) );
+        try
+        {
+            long[] offsets = new long[names.size()];
+            for ( int i = 0; i < names.size(); i++ )
+            {
+                offsets[i] = out.written;
+                byte[] name = names.get( i ).getBytes( "UTF-8" );
+                Compressed data = compressed.get( i );
+
+                out.writeInt( LOCAL_HEADER );
+                out.writeShort( 20 );
+                out.writeShort( UTF8_NAMES );
+                out.writeShort( data.method );
+                out.writeShort( DOS_TIME );
+                out.writeShort( DOS_DATE );
+                out.writeInt( data.crc );
+                out.writeInt( data.bytes.length );
+                out.writeInt( data.size );
+                out.writeShort( name.length );
+                out.writeShort( 0 );
+                out.write( name );
+                out.write( data.bytes );
+            }
+
+            long centralDirectory = out.written;
+            for ( int i = 0; i < names.size(); i++ )
+            {
+                byte[] name = names.get( i ).getBytes( "UTF-8" );
+                Compressed data = compressed.get( i );
+
+                out.writeInt( CENTRAL_HEADER );
+                out.writeShort( 20 );
+                out.writeShort( 20 );
+                out.writeShort( UTF8_NAMES );
+                out.writeShort( data.method );
+                out.writeShort( DOS_TIME );
+                out.writeShort( DOS_DATE );
+                out.writeInt( data.crc );
+                out.writeInt( data.bytes.length );
+                out.writeInt( data.size );
+                out.writeShort( name.length );
+                out.writeShort( 0 );
+                out.writeShort( 0 );
+                out.writeShort( 0 );
+                out.writeShort( 0 );
+                // MS-DOS directory attribute
+                out.writeInt( names.get( i ).endsWith( "/" ) ? 0x10 : 0 );
+                out.writeInt( offsets[i] );
+                out.write( name );
+            }
+            long centralDirectorySize = out.written - centralDirectory;
+
+            if ( out.written > 0xFFFFFFFFL )
+            {
+                throw new IOException( "Jar too large without zip64 support: " + jar );
+            }
+
+            out.writeInt( END_OF_CENTRAL_DIRECTORY );
+            out.writeShort( 0 );
+            out.writeShort( 0 );
+            out.writeShort( names.size() );
+            out.writeShort( names.size() );
+            out.writeInt( centralDirectorySize );
+            out.writeInt( centralDirectory );
+            out.writeShort( 0 );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static List<Compressed> compress( List<byte[]> contents )
+        throws IOException
+    {
+        List<Compressed> result = new ArrayList<Compressed>( contents.size() );
+
+        long total = 0;
+        for ( byte[] content : contents )
+        {
+            total += content == null ? 0 : content.length;
+        }
+
+        if ( total < PARALLEL_THRESHOLD || contents.size() < 2 || Runtime.getRuntime().availableProcessors() < 2 )
+        {
+            for ( byte[] content : contents )
+            {
+                result.add( new Compressed( content ) );
+            }
+            return result;
+        }
+
+        ExecutorService executor = getExecutor();
+        List<Future<Compressed>> futures = new ArrayList<Future<Compressed>>( contents.size() );
+        try
+        {
+            for ( final byte[] content : contents )
+            {
+                futures.add( executor.submit( new Callable<Compressed>()
+                {
+                    public Compressed call()
+                    {
+                        return new Compressed( content );
+                    }
+                } ) );
+            }
+            for ( Future<Compressed> future : futures )
+            {
+                result.add( future.get() );
+            }
+            return result;
+        }
+        catch ( InterruptedException e )
+        {
+            for ( Future<Compressed> future : futures )
+            {
+                future.cancel( false );
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while compressing jar entries" );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( e.getCause().toString() );
+        }
+    }
+
+    /**
+     * The pool shared by all writers, so jarring many modules does not start threads for each of them.
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+            {
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "plexus-compiler-jar" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return executor;
+    }
+
+    private static byte[] readFile( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream( (int) file.length() );
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = in.read( buffer ) ) > 0 )
+            {
+                out.write( buffer, 0, n );
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * An entry ready to be written: deflated, unless that would not make it smaller.
+     */
+    private static class Compressed
+    {
+        final int method;
+
+        final byte[] bytes;
+
+        final int size;
+
+        final long crc;
+
+        Compressed( byte[] content )
+        {
+            if ( content == null )
+            {
+                method = STORED;
+                bytes = new byte[0];
+                size = 0;
+                crc = 0;
+                return;
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update( content );
+            crc = checksum.getValue();
+            size = content.length;
+
+            Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+            try
+            {
+                deflater.setInput( content );
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream( content.length / 2 + 64 );
+                byte[] buffer = new byte[8192];
+                while ( !deflater.finished() )
+                {
+                    out.write( buffer, 0, deflater.deflate( buffer ) );
+                }
+                if ( out.size() < content.length )
+                {
+                    method = DEFLATED;
+                    bytes = out.toByteArray();
+                }
+                else
+                {
+                    method = STORED;
+                    bytes = content;
+                }
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Little endian output keeping track of the offset.
+     */
+    private static class ZipStream
+    {
+        private final OutputStream out;
+
+        long written;
+
+        ZipStream( OutputStream out )
+        {
+            this.out = out;
+        }
+
+        void writeShort( int value )
+            throws IOException
+        {
+            out.write( value & 0xff );
+            out.write( ( value >>> 8 ) & 0xff );
+            written += 2;
+        }
+
+        void writeInt( long value )
+            throws IOException
+        {
+            writeShort( (int) ( value & 0xffff ) );
+            writeShort( (int) ( ( value >>> 16 ) & 0xffff ) );
+        }
+
+        void write( byte[] bytes )
+            throws IOException
+        {
+            out.write( bytes );
+            written += bytes.length;
+        }
+
+        void close()
+            throws IOException
+        {
+            out.close();
+        }
+    }
+}
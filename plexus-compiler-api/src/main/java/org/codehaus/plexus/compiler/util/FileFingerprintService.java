@@ -0,0 +1,362 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the xxHash64 of file contents, for the up-to-date checks and caches which need to know whether a file
+ * changed. Results are memoized by path, size and modification time, the file only being read again once one of
+ * them changes, and can be kept across builds in a table on disk. Files are read through their channel into a buffer
+ * reused by each hashing thread, and lists of files are hashed in parallel.
+ * <p/>
+ * The {@link #getShared() shared instance} serves every compiler of the JVM, persisting its table in the file named by
+ * the <code>plexus.compiler.fingerprints</code> system property, if set, when the JVM exits.
+ *
+ * @since 2.5
+ */
+public class FileFingerprintService
+{
+    /**
+     * size of the buffer each hashing thread reads files into
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * number of entries after which the table starts over, to bound its size
+     */
+    private static final int MAX_ENTRIES = 200000;
+
+    private static final int VERSION = 1;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>()
+    {
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocate( BUFFER_SIZE );
+        }
+    };
+
+    private static FileFingerprintService shared;
+
+    private final File table;
+
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<String, Fingerprint>();
+
+    private volatile boolean loaded;
+
+    private volatile boolean dirty;
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a service memoizing its results in memory only.
+     */
+    public FileFingerprintService()
+    {
+        this( null );
+    }
+
+    /**
+     * @param table the file to load the memoized results from and {@link #save() save} them to, or <code>null</code>
+     */
+    public FileFingerprintService( File table )
+    {
+        this.table = table;
+    }
+
+    /**
+     * @return the instance shared by the compilers of this JVM
+     */
+    public static synchronized FileFingerprintService getShared()
+    {
+        if ( shared == null )
+        {
+            String table = System.getProperty( "plexus.compiler.fingerprints" );
+            shared = new FileFingerprintService( table == null ? null : new File( table ) );
+            if ( table != null )
+            {
+                Runtime.getRuntime().addShutdownHook( new Thread( "plexus-compiler-fingerprints" )
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            shared.save();
+                        }
+                        catch ( IOException e )
+                        {
+                            // the table is only a cache
+                        }
+                    }
+                } );
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return the hash of the content of the given file, <code>0</code> if it is missing
+     */
+    public long fingerprint( File file )
+        throws IOException
+    {
+        load();
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 && !file.isFile() )
+        {
+            return 0;
+        }
+        Fingerprint fingerprint = fingerprints.get( path );
+        if ( fingerprint != null && fingerprint.size == size && fingerprint.lastModified == lastModified )
+        {
+            return fingerprint.hash;
+        }
+        long hash = hash( file );
+        if ( fingerprints.size() >= MAX_ENTRIES )
+        {
+            fingerprints.clear();
+        }
+        fingerprints.put( path, new Fingerprint( size, lastModified, hash ) );
+        dirty = true;
+        return hash;
+    }
+
+    /**
+     * Hashes the given files in parallel.
+     *
+     * @return the hash of each file, in the order of the given list
+     */
+    public long[] fingerprint( List<File> files )
+        throws IOException
+    {
+        long[] hashes = new long[files.size()];
+        if ( files.size() < 2 )
+        {
+            for ( int i = 0; i < hashes.length; i++ )
+            {
+                hashes[i] = fingerprint( files.get( i ) );
+            }
+            return hashes;
+        }
+        List<Future<Long>> futures = new ArrayList<Future<Long>>( files.size() );
+        ExecutorService executor = getExecutor();
+        for ( final File file : files )
+        {
+            futures.add( executor.submit( new Callable<Long>()
+            {
+                public Long call()
+                    throws IOException
+                {
+                    return Long.valueOf( fingerprint( file ) );
+                }
+            } ) );
+        }
+        try
+        {
+            for ( int i = 0; i < hashes.length; i++ )
+            {
+                hashes[i] = futures.get( i ).get().longValue();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while hashing files" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException( e.getCause() );
+        }
+        finally
+        {
+            for ( Future<Long> future : futures )
+            {
+                future.cancel( true );
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Writes the memoized results to the table given at creation, if any changed.
+     */
+    public synchronized void save()
+        throws IOException
+    {
+        if ( table == null || !dirty )
+        {
+            return;
+        }
+        dirty = false;
+        File parent = table.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File temp = File.createTempFile( table.getName(), ".tmp", parent );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+        try
+        {
+            out.writeInt( VERSION );
+            for ( Map.Entry<String, Fingerprint> entry : fingerprints.entrySet() )
+            {
+                out.writeBoolean( true );
+                out.writeUTF( entry.getKey() );
+                out.writeLong( entry.getValue().size );
+                out.writeLong( entry.getValue().lastModified );
+                out.writeLong( entry.getValue().hash );
+            }
+            out.writeBoolean( false );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        if ( !temp.renameTo( table ) )
+        {
+            table.delete();
+            if ( !temp.renameTo( table ) )
+            {
+                temp.delete();
+                throw new IOException( "Unable to rename " + temp + " to " + table );
+            }
+        }
+    }
+
+    private void load()
+    {
+        if ( loaded )
+        {
+            return;
+        }
+        synchronized ( this )
+        {
+            if ( loaded )
+            {
+                return;
+            }
+            if ( table != null && table.isFile() )
+            {
+                DataInputStream in = null;
+                try
+                {
+                    in = new DataInputStream( new BufferedInputStream( new FileInputStream( table ) ) );
+                    if ( in.readInt() == VERSION )
+                    {
+                        while ( in.readBoolean() )
+                        {
+                            String path = in.readUTF();
+                            fingerprints.put( path, new Fingerprint( in.readLong(), in.readLong(), in.readLong() ) );
+                        }
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // a truncated table keeps the entries read so far
+                }
+                finally
+                {
+                    IOUtil.close( in );
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+            {
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "plexus-compiler-fingerprint" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return executor;
+    }
+
+    static long hash( File file )
+        throws IOException
+    {
+        XxHash64 hash = new XxHash64( 0 );
+        ByteBuffer buffer = BUFFERS.get();
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            FileChannel channel = in.getChannel();
+            buffer.clear();
+            while ( channel.read( buffer ) >= 0 )
+            {
+                hash.update( buffer.array(), 0, buffer.position() );
+                buffer.clear();
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return hash.digest();
+    }
+
+    private static final class Fingerprint
+    {
+        private final long size;
+
+        private final long lastModified;
+
+        private final long hash;
+
+        Fingerprint( long size, long lastModified, long hash )
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Streaming implementation of the xxHash64 non-cryptographic hash, see
+ * <a href="https://github.com/Cyan4973/xxHash">xxHash</a>.
+ *
+ * @since 2.5
+ */
+final class XxHash64
+{
+    private static final long P1 = 0x9E3779B185EBCA87L;
+
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long P3 = 0x165667B19E3779F9L;
+
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+
+    private long v1;
+
+    private long v2;
+
+    private long v3;
+
+    private long v4;
+
+    private long total;
+
+    private final byte[] buffer = new byte[32];
+
+    private int buffered;
+
+    XxHash64( long seed )
+    {
+        this.seed = seed;
+        v1 = seed + P1 + P2;
+        v2 = seed + P2;
+        v3 = seed;
+        v4 = seed - P1;
+    }
+
+    void update( byte[] b, int off, int len )
+    {
+        total += len;
+        if ( buffered + len < 32 )
+        {
+            System.arraycopy( b, off, buffer, buffered, len );
+            buffered += len;
+            return;
+        }
+        int end = off + len;
+        if ( buffered > 0 )
+        {
+            int fill = 32 - buffered;
+            System.arraycopy( b, off, buffer, buffered, fill );
+            stripe( buffer, 0 );
+            off += fill;
+            buffered = 0;
+        }
+        for ( ; off + 32 <= end; off += 32 )
+        {
+            stripe( b, off );
+        }
+        buffered = end - off;
+        System.arraycopy( b, off, buffer, 0, buffered );
+    }
+
+    long digest()
+    {
+        long h;
+        if ( total >= 32 )
+        {
+            h = Long.rotateLeft( v1, 1 ) + Long.rotateLeft( v2, 7 ) + Long.rotateLeft( v3, 12 )
+                + Long.rotateLeft( v4, 18 );
+            h = merge( h, v1 );
+            h = merge( h, v2 );
+            h = merge( h, v3 );
+            h = merge( h, v4 );
+        }
+        else
+        {
+            h = seed + P5;
+        }
+        h += total;
+
+        int i = 0;
+        for ( ; i + 8 <= buffered; i += 8 )
+        {
+            h ^= round( 0, getLong( buffer, i ) );
+            h = Long.rotateLeft( h, 27 ) * P1 + P4;
+        }
+        if ( i + 4 <= buffered )
+        {
+            h ^= ( getInt( buffer, i ) & 0xFFFFFFFFL ) * P1;
+            h = Long.rotateLeft( h, 23 ) * P2 + P3;
+            i += 4;
+        }
+        for ( ; i < buffered; i++ )
+        {
+            h ^= ( buffer[i] & 0xFF ) * P5;
+            h = Long.rotateLeft( h, 11 ) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private void stripe( byte[] b, int off )
+    {
+        v1 = round( v1, getLong( b, off ) );
+        v2 = round( v2, getLong( b, off + 8 ) );
+        v3 = round( v3, getLong( b, off + 16 ) );
+        v4 = round( v4, getLong( b, off + 24 ) );
+    }
+
+    private static long round( long acc, long input )
+    {
+        return Long.rotateLeft( acc + input * P2, 31 ) * P1;
+    }
+
+    private static long merge( long acc, long v )
+    {
+        return ( acc ^ round( 0, v ) ) * P1 + P4;
+    }
+
+    private static long getLong( byte[] b, int i )
+    {
+        return ( getInt( b, i ) & 0xFFFFFFFFL ) | ( (long) getInt( b, i + 4 ) << 32 );
+    }
+
+    private static int getInt( byte[] b, int i )
+    {
+        return ( b[i] & 0xFF ) | ( ( b[i + 1] & 0xFF ) << 8 ) | ( ( b[i + 2] & 0xFF ) << 16 ) | ( b[i + 3] << 24 );
+    }
+}
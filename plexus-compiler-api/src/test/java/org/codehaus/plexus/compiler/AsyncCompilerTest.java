@@ -0,0 +1,139 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncCompilerTest
+    extends TestCase
+{
+    private ExecutorService executor;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testResultIsDelivered()
+        throws Exception
+    {
+        Future<CompilerResult> future =
+            new StubCompiler( null, null, null ).performCompileAsync( new CompilerConfiguration(), executor );
+
+        assertTrue( future.get( 10, TimeUnit.SECONDS ).isSuccess() );
+    }
+
+    public void testCancelInterruptsRunningCompilation()
+        throws Exception
+    {
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch finished = new CountDownLatch( 1 );
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Future<CompilerResult> future =
+            new StubCompiler( started, finished, failure ).performCompileAsync( new CompilerConfiguration(),
+                                                                               executor );
+
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        assertTrue( future.cancel( true ) );
+        assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+
+        assertTrue( future.isCancelled() );
+        assertTrue( failure.get() instanceof CompilerCancelledException );
+        try
+        {
+            future.get();
+            fail( "Expected CancellationException" );
+        }
+        catch ( CancellationException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Succeeds immediately without latches, otherwise polls for cancellation until interrupted.
+     */
+    private static class StubCompiler
+        extends AbstractCompiler
+    {
+        private final CountDownLatch started;
+
+        private final CountDownLatch finished;
+
+        private final AtomicReference<Throwable> failure;
+
+        StubCompiler( CountDownLatch started, CountDownLatch finished, AtomicReference<Throwable> failure )
+        {
+            super( CompilerOutputStyle.ONE_OUTPUT_FILE_PER_INPUT_FILE, ".java", ".class", null );
+            this.started = started;
+            this.finished = finished;
+            this.failure = failure;
+        }
+
+        public CompilerResult performCompile( CompilerConfiguration configuration )
+            throws CompilerException
+        {
+            if ( started == null )
+            {
+                return new CompilerResult();
+            }
+            started.countDown();
+            try
+            {
+                while ( true )
+                {
+                    checkCancelled();
+                    Thread.yield();
+                }
+            }
+            catch ( CompilerException e )
+            {
+                failure.set( e );
+                throw e;
+            }
+            finally
+            {
+                finished.countDown();
+            }
+        }
+
+        public String[] createCommandLine( CompilerConfiguration config )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompilerMessageStoreTest
+    extends TestCase
+{
+    public void testKeepsFirstWarningsPerCode()
+    {
+        CompilerMessageStore store = new CompilerMessageStore( 2 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertEquals( i < 2, store.add( warning( "[deprecation] old" + i + "() in Old has been deprecated" ) ) );
+            assertTrue( store.add( warning( "[unchecked] unchecked call" ), "compiler.warn.unchecked" ) == i < 2 );
+        }
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertTrue( store.add( new CompilerMessage( "/src/A.java", CompilerMessage.Kind.ERROR, i, 1, i, 1,
+                                                        "cannot find symbol" ), "compiler.err.cant.resolve" ) );
+        }
+
+        assertEquals( 7, store.size() );
+        assertEquals( 6, store.getDroppedCount() );
+        assertEquals( 10, store.getCount( CompilerMessage.Kind.WARNING ) );
+        assertEquals( 3, store.getCount( CompilerMessage.Kind.ERROR ) );
+        assertEquals( Integer.valueOf( 5 ), store.getCodeCounts().get( "[deprecation]" ) );
+        assertEquals( Integer.valueOf( 5 ), store.getCodeCounts().get( "compiler.warn.unchecked" ) );
+        assertEquals( Integer.valueOf( 3 ), store.getCodeCounts().get( "compiler.err.cant.resolve" ) );
+    }
+
+    public void testMessagesAreReadBack()
+    {
+        CompilerMessageStore store = new CompilerMessageStore();
+        List<CompilerMessage> expected = new ArrayList<CompilerMessage>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            CompilerMessage message =
+                new CompilerMessage( "/src/A" + ( i % 3 ) + ".java", CompilerMessage.Kind.values()[i % 5], i, i + 1,
+                                     i + 2, i + 3, "message " + ( i % 7 ) );
+            expected.add( message );
+            store.add( message );
+        }
+
+        assertEquals( 100, store.size() );
+        assertEquals( 0, store.getDroppedCount() );
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            CompilerMessage message = store.get( i );
+            assertEquals( expected.get( i ).toString(), message.toString() );
+            assertEquals( expected.get( i ).getKind(), message.getKind() );
+            assertEquals( expected.get( i ).getEndColumn(), message.getEndColumn() );
+        }
+        assertSame( store.get( 0 ).getFile(), store.get( 3 ).getFile() );
+        assertSame( store.get( 0 ).getMessage(), store.get( 7 ).getMessage() );
+    }
+
+    public void testMessagesAreReplacedAndRemoved()
+    {
+        CompilerMessageStore store = new CompilerMessageStore();
+        for ( int i = 0; i < 3; i++ )
+        {
+            store.add( new CompilerMessage( "/src/A.java", CompilerMessage.Kind.ERROR, i, 1, i, 1, "error " + i ),
+                       "compiler.err" + i );
+        }
+
+        CompilerMessage previous = store.set( 1, warning( "replaced" ) );
+
+        assertEquals( "error 1", previous.getMessage() );
+        assertEquals( "replaced", store.get( 1 ).getMessage() );
+        assertEquals( 2, store.getCount( CompilerMessage.Kind.ERROR ) );
+        assertEquals( 1, store.getCount( CompilerMessage.Kind.WARNING ) );
+
+        assertEquals( "error 0", store.remove( 0 ).getMessage() );
+
+        assertEquals( 2, store.size() );
+        assertEquals( "replaced", store.get( 0 ).getMessage() );
+        assertEquals( "error 2", store.get( 1 ).getMessage() );
+        assertEquals( 2, store.get( 1 ).getStartLine() );
+        assertEquals( 1, store.getCount( CompilerMessage.Kind.ERROR ) );
+        assertFalse( store.getCodeCounts().containsKey( "compiler.err0" ) );
+        assertEquals( Integer.valueOf( 1 ), store.getCodeCounts().get( "compiler.err1" ) );
+
+        store.subList( 0, 1 ).clear();
+
+        assertEquals( 1, store.size() );
+        assertEquals( "error 2", store.get( 0 ).getMessage() );
+    }
+
+    private static CompilerMessage warning( String message )
+    {
+        return new CompilerMessage( "/src/Old.java", CompilerMessage.Kind.WARNING, 1, 1, 1, 1, message );
+    }
+}
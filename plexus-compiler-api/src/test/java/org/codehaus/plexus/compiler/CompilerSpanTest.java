@@ -0,0 +1,64 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompilerSpanTest
+    extends TestCase
+{
+    public void testReportsToMetrics()
+    {
+        final List<String> timings = new ArrayList<String>();
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setCompilerMetrics( new CompilerMetrics()
+        {
+            public boolean isEnabled()
+            {
+                return true;
+            }
+
+            public void time( String compilerId, Timer timer, long nanos )
+            {
+                assertTrue( nanos >= 0 );
+                timings.add( compilerId + ":" + timer );
+            }
+
+            public void count( String compilerId, Counter counter, long amount )
+            {
+            }
+        } );
+
+        CompilerSpan.start( config, "javac", CompilerMetrics.Timer.SCANNING ).end( 3 );
+        CompilerSpan.start( config, "javac", CompilerMetrics.Timer.COMPILE ).end();
+
+        assertEquals( "[javac:SCANNING, javac:COMPILE]", timings.toString() );
+    }
+
+    public void testDisabledSpansAreShared()
+    {
+        CompilerConfiguration config = new CompilerConfiguration();
+
+        assertSame( CompilerSpan.start( config, "javac", CompilerMetrics.Timer.SCANNING ),
+                    CompilerSpan.start( config, "eclipse", CompilerMetrics.Timer.COMPILE ) );
+    }
+}
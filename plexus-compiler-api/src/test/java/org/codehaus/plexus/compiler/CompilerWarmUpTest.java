@@ -0,0 +1,112 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CompilerWarmUpTest
+    extends TestCase
+{
+    public void testRunsUntilTheTimeConverges()
+        throws Exception
+    {
+        SteppingCompiler compiler = new SteppingCompiler( 200, 150, 100, 50, 52, 48, 50, 50 );
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setCompilerReuseStrategy( CompilerConfiguration.CompilerReuseStrategy.AlwaysNew );
+
+        CompilerWarmUp.Result result = new CompilerWarmUp( compiler, configuration ).setClock( compiler )
+            .setConvergence( 3, 0.1 ).setMaxIterations( 8 ).run();
+
+        assertTrue( result.toString(), result.isConverged() );
+        assertEquals( 6, result.getIterations() );
+        assertEquals( 200, result.getTime( 0 ) );
+        assertEquals( 48, result.getTime( 5 ) );
+        assertEquals( Collections.nCopies( 6, CompilerConfiguration.CompilerReuseStrategy.AlwaysNew ),
+                      compiler.strategies );
+        assertEquals( 16, compiler.sourceCount );
+    }
+
+    public void testStopsAtTheMaximumIterations()
+        throws Exception
+    {
+        SteppingCompiler compiler = new SteppingCompiler( 100, 10, 100, 10 );
+
+        CompilerWarmUp.Result result = new CompilerWarmUp( compiler, new CompilerConfiguration() ).setClock( compiler )
+            .setMaxIterations( 4 ).run();
+
+        assertFalse( result.isConverged() );
+        assertEquals( 4, result.getIterations() );
+    }
+
+    public void testLeavesForkedCompilationsAlone()
+        throws Exception
+    {
+        SteppingCompiler compiler = new SteppingCompiler( 10 );
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setFork( true );
+
+        assertEquals( 0, new CompilerWarmUp( compiler, configuration ).setClock( compiler ).run().getIterations() );
+        assertTrue( compiler.strategies.isEmpty() );
+    }
+
+    /**
+     * Advances its clock by the given durations, one per compilation, instead of taking any time.
+     */
+    private static class SteppingCompiler
+        extends AbstractCompiler
+        implements CompilerWarmUp.Clock
+    {
+        private final long[] durations;
+
+        final List<CompilerConfiguration.CompilerReuseStrategy> strategies =
+            new ArrayList<CompilerConfiguration.CompilerReuseStrategy>();
+
+        int sourceCount;
+
+        private long now;
+
+        SteppingCompiler( long... durations )
+        {
+            super( CompilerOutputStyle.ONE_OUTPUT_FILE_PER_INPUT_FILE, ".java", ".class", null );
+            this.durations = durations;
+        }
+
+        public long nanoTime()
+        {
+            return now;
+        }
+
+        public CompilerResult performCompile( CompilerConfiguration configuration )
+        {
+            sourceCount = getSourceFiles( configuration ).length;
+            strategies.add( configuration.getCompilerReuseStrategy() );
+            now += durations[Math.min( strategies.size(), durations.length ) - 1];
+            return new CompilerResult();
+        }
+
+        public String[] createCommandLine( CompilerConfiguration config )
+        {
+            return null;
+        }
+    }
+}
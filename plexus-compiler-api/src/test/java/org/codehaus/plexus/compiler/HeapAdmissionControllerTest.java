@@ -0,0 +1,173 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class HeapAdmissionControllerTest
+    extends TestCase
+{
+    public void testSmallCompilationOvertakesWaitingHeavyOne()
+        throws Exception
+    {
+        HeapAdmissionController controller = new HeapAdmissionController( 100 );
+        controller.acquire( 60 );
+
+        Acquirer heavy = new Acquirer( controller, 60 );
+        heavy.start();
+        awaitQueueLength( controller, 1 );
+
+        controller.acquire( 30 );
+        assertEquals( 90, controller.getUsedBytes() );
+        assertFalse( heavy.admitted.await( 50, TimeUnit.MILLISECONDS ) );
+
+        controller.release( 60 );
+        controller.release( 30 );
+        assertTrue( heavy.admitted.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( 60, controller.getUsedBytes() );
+    }
+
+    public void testWaitingCompilationIsNotStarved()
+        throws Exception
+    {
+        HeapAdmissionController controller = new HeapAdmissionController( 100 );
+        controller.acquire( 60 );
+
+        Acquirer heavy = new Acquirer( controller, 60 );
+        heavy.start();
+        awaitQueueLength( controller, 1 );
+
+        for ( int i = 0; i < HeapAdmissionController.MAX_OVERTAKES; i++ )
+        {
+            controller.acquire( 10 );
+            controller.release( 10 );
+        }
+
+        Acquirer small = new Acquirer( controller, 10 );
+        small.start();
+        awaitQueueLength( controller, 2 );
+        assertFalse( small.admitted.await( 50, TimeUnit.MILLISECONDS ) );
+
+        controller.release( 60 );
+        assertTrue( heavy.admitted.await( 10, TimeUnit.SECONDS ) );
+        assertTrue( small.admitted.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( 70, controller.getUsedBytes() );
+    }
+
+    public void testOversizedCompilationRunsAlone()
+        throws Exception
+    {
+        HeapAdmissionController controller = new HeapAdmissionController( 1024 );
+
+        HeapAdmissionController.Permit permit = controller.admit( new CompilerConfiguration(), new String[0] );
+
+        assertEquals( 1024, permit.getBytes() );
+        permit.release();
+        permit.release();
+        assertEquals( 0, controller.getUsedBytes() );
+    }
+
+    public void testEstimatorLearnsPerOutputLocation()
+        throws Exception
+    {
+        CompileHeapEstimator estimator = new CompileHeapEstimator();
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setOutputLocation( "target/classes" );
+        CompilerConfiguration other = new CompilerConfiguration();
+        other.setOutputLocation( "target/test-classes" );
+
+        long modelled = estimator.model( config, new String[0] );
+        assertEquals( CompileHeapEstimator.BASE_BYTES, modelled );
+        assertEquals( modelled, estimator.estimate( config, modelled ) );
+
+        estimator.record( config, modelled, modelled * 8 );
+
+        assertEquals( modelled * 2, estimator.estimate( config, modelled ) );
+        assertTrue( estimator.estimate( other, modelled ) > modelled );
+
+        File file = File.createTempFile( "heap-estimates", ".properties" );
+        try
+        {
+            estimator.store( file );
+            CompileHeapEstimator loaded = new CompileHeapEstimator();
+            loaded.load( file );
+            assertEquals( modelled * 2, loaded.estimate( config, modelled ) );
+            assertEquals( estimator.estimate( other, modelled ), loaded.estimate( other, modelled ) );
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testEstimatorModelsInMemorySources()
+    {
+        CompileHeapEstimator estimator = new CompileHeapEstimator();
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.addInMemorySource( new InMemorySource( "gen/Generated.java", "package gen; class Generated { }" ) );
+
+        assertEquals( CompileHeapEstimator.BASE_BYTES + CompileHeapEstimator.BYTES_PER_SOURCE_FILE
+                          + CompileHeapEstimator.BYTES_PER_SOURCE_BYTE * 32, estimator.model( config, new String[0] ) );
+    }
+
+    private static void awaitQueueLength( HeapAdmissionController controller, int length )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( controller.getQueueLength() != length )
+        {
+            assertTrue( "timed out waiting for queue length " + length, System.currentTimeMillis() < deadline );
+            Thread.sleep( 5 );
+        }
+    }
+
+    private static class Acquirer
+        extends Thread
+    {
+        private final HeapAdmissionController controller;
+
+        private final long bytes;
+
+        final CountDownLatch admitted = new CountDownLatch( 1 );
+
+        Acquirer( HeapAdmissionController controller, long bytes )
+        {
+            this.controller = controller;
+            this.bytes = bytes;
+            setDaemon( true );
+        }
+
+        public void run()
+        {
+            try
+            {
+                controller.acquire( bytes );
+                admitted.countDown();
+            }
+            catch ( InterruptedException e )
+            {
+                // test failed anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+
+public class UpToDateCheckTest
+    extends TestCase
+{
+    private File basedir = new File( "target/up-to-date" ).getAbsoluteFile();
+
+    private File source;
+
+    private File jar;
+
+    private CompilerConfiguration config;
+
+    protected void setUp()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( basedir );
+        source = new File( basedir, "src/p/A.java" );
+        jar = new File( basedir, "lib/lib.jar" );
+        write( source, "package p; class A {}" );
+        write( jar, "jar" );
+        new File( basedir, "classes" ).mkdirs();
+
+        config = new CompilerConfiguration();
+        config.setOutputLocation( new File( basedir, "classes" ).getPath() );
+        config.addSourceLocation( new File( basedir, "src" ).getPath() );
+        config.addClasspathEntry( jar.getPath() );
+        config.addClasspathEntry( config.getOutputLocation() );
+        config.setUpToDateManifest( new File( basedir, "manifest" ) );
+    }
+
+    public void testReturnsRecordedResultWhenNothingChanged()
+        throws Exception
+    {
+        assertFalse( compile() );
+        assertTrue( check().isUpToDate() );
+        assertEquals( "unchecked call", check().getResult().getCompilerMessages().get( 0 ).getMessage() );
+        assertEquals( source.getPath(), check().getResult().getCompilerMessages().get( 0 ).getFile() );
+
+        // written by the compilation itself
+        write( new File( basedir, "classes/p/A.class" ), "class" );
+        assertTrue( check().isUpToDate() );
+    }
+
+    public void testClasspathEntryIsComparedByContent()
+        throws Exception
+    {
+        compile();
+
+        jar.setLastModified( jar.lastModified() - 10000 );
+        assertTrue( check().isUpToDate() );
+
+        write( jar, "jar2" );
+        assertFalse( check().isUpToDate() );
+    }
+
+    public void testChangesAreDetected()
+        throws Exception
+    {
+        compile();
+
+        source.setLastModified( source.lastModified() - 10000 );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        File added = new File( basedir, "src/p/q/B.java" );
+        write( added, "package p.q; class B {}" );
+        new File( basedir, "src/p" ).setLastModified( new File( basedir, "src/p" ).lastModified() - 10000 );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        config.setDebug( !config.isDebug() );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        config.setClasspathEntries( Collections.singletonList( jar.getPath() ) );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        assertTrue( check().isUpToDate() );
+    }
+
+    public void testChangedOutputIsDetected()
+        throws Exception
+    {
+        File classFile = new File( basedir, "classes/p/A.class" );
+        write( classFile, "class" );
+        compile();
+        assertTrue( check().isUpToDate() );
+
+        classFile.setLastModified( classFile.lastModified() - 10000 );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        classFile.delete();
+        assertFalse( check().isUpToDate() );
+    }
+
+    public void testDirectoryEntryIsStampedOncePerBuild()
+        throws Exception
+    {
+        File upstream = new File( basedir, "upstream" );
+        File upstreamClass = new File( upstream, "q/B.class" );
+        write( upstreamClass, "class" );
+        config.addClasspathEntry( upstream.getPath() );
+        config.setDirectoryStamps( new UpToDateCheck.DirectoryStamps() );
+        compile();
+
+        // not walked again in this build
+        write( new File( upstream, "q/C.class" ), "class" );
+        assertTrue( check().isUpToDate() );
+
+        config.setDirectoryStamps( new UpToDateCheck.DirectoryStamps() );
+        assertFalse( check().isUpToDate() );
+        compile();
+
+        // unless compiled to
+        write( upstreamClass, "class2" );
+        CompilerConfiguration upstreamConfig = new CompilerConfiguration();
+        upstreamConfig.setOutputLocation( upstream.getPath() );
+        upstreamConfig.setDirectoryStamps( config.getDirectoryStamps() );
+        assertNull( UpToDateCheck.open( upstreamConfig, "javac" ) );
+        assertFalse( check().isUpToDate() );
+    }
+
+    public void testDirectoryEntryIsWalkedByEveryCheckWithoutSharedStamps()
+        throws Exception
+    {
+        File upstream = new File( basedir, "upstream" );
+        write( new File( upstream, "q/B.class" ), "class" );
+        config.addClasspathEntry( upstream.getPath() );
+        compile();
+        assertTrue( check().isUpToDate() );
+
+        write( new File( upstream, "q/C.class" ), "class" );
+        assertFalse( check().isUpToDate() );
+    }
+
+    public void testFailedCompilationIsNotRecorded()
+        throws Exception
+    {
+        compile();
+
+        source.setLastModified( source.lastModified() - 10000 );
+        UpToDateCheck check = check();
+        check.stampSources( new String[]{ source.getPath() } );
+        check.store( new CompilerResult().success( false ) );
+
+        assertFalse( check().isUpToDate() );
+        assertFalse( config.getUpToDateManifest().exists() );
+    }
+
+    private static void write( File file, String content )
+        throws Exception
+    {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), content );
+    }
+
+    private UpToDateCheck check()
+        throws Exception
+    {
+        return UpToDateCheck.open( config, "javac" );
+    }
+
+    /**
+     * @return whether the compilation was up to date
+     */
+    private boolean compile()
+        throws Exception
+    {
+        UpToDateCheck check = check();
+        if ( check.isUpToDate() )
+        {
+            return true;
+        }
+        check.stampSources( AbstractCompiler.getSourceFiles( config ) );
+        CompilerMessage warning =
+            new CompilerMessage( source.getPath(), CompilerMessage.Kind.WARNING, 1, 1, 1, 1, "unchecked call" );
+        check.store( new CompilerResult( true, Collections.singletonList( warning ) ) );
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class CompactPathSetTest
+    extends TestCase
+{
+    public void testKeepsInsertionOrderWithoutDuplicates()
+    {
+        List<String> paths = new ArrayList<String>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            paths.add( "/project/src/main/java/p" + ( i % 17 ) + "/C" + ( i * 7 % 500 ) + ".java" );
+        }
+        paths.add( "C.java" );
+        paths.add( "c:\\project\\C.java" );
+
+        CompactPathSet set = new CompactPathSet( paths );
+        Set<String> expected = new LinkedHashSet<String>( paths );
+
+        assertEquals( expected.size(), set.size() );
+        assertEquals( new ArrayList<String>( expected ), set.asList() );
+        assertEquals( expected, set );
+        assertEquals( expected.hashCode(), set.hashCode() );
+        assertTrue( Arrays.equals( expected.toArray(), set.toArray() ) );
+        assertTrue( set.contains( "C.java" ) );
+        assertTrue( set.contains( "c:\\project\\C.java" ) );
+        assertFalse( set.contains( "/project/src/main/java/p0/C1.java" ) );
+        assertFalse( set.contains( "/elsewhere/C0.java" ) );
+    }
+
+    public void testRemove()
+    {
+        CompactPathSet set = new CompactPathSet( Arrays.asList( "/a/A.java", "/a/B.java", "/b/A.java" ) );
+
+        assertTrue( set.remove( "/a/A.java" ) );
+        assertFalse( set.remove( "/a/A.java" ) );
+        assertEquals( Arrays.asList( "/a/B.java", "/b/A.java" ), set.asList() );
+        assertTrue( set.contains( "/b/A.java" ) );
+
+        Iterator<String> it = set.iterator();
+        it.next();
+        it.remove();
+        assertEquals( Arrays.asList( "/b/A.java" ), set.asList() );
+
+        assertTrue( set.add( "/a/A.java" ) );
+        assertEquals( Arrays.asList( "/b/A.java", "/a/A.java" ), set.asList() );
+    }
+
+    public void testRemovingManyPathsKeepsTheOthersInOrder()
+    {
+        List<String> paths = new ArrayList<String>();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            paths.add( "/project/src/p" + ( i % 10 ) + "/C" + i + ".java" );
+        }
+        CompactPathSet set = new CompactPathSet( paths );
+
+        for ( Iterator<String> it = set.iterator(); it.hasNext(); )
+        {
+            if ( it.next().startsWith( "/project/src/p1/" ) )
+            {
+                it.remove();
+            }
+        }
+        set.removeAll( paths.subList( 0, 5000 ) );
+        set.retainAll( paths.subList( 0, 9000 ) );
+
+        List<String> expected = new ArrayList<String>();
+        for ( String path : paths.subList( 5000, 9000 ) )
+        {
+            if ( !path.startsWith( "/project/src/p1/" ) )
+            {
+                expected.add( path );
+            }
+        }
+        assertEquals( expected, new ArrayList<String>( set ) );
+        assertEquals( expected, set.asList() );
+        assertFalse( set.contains( paths.get( 9001 ) ) );
+
+        assertTrue( set.add( paths.get( 0 ) ) );
+        assertFalse( set.add( paths.get( 5000 ) ) );
+        assertEquals( expected.size() + 1, set.size() );
+        assertEquals( paths.get( 0 ), set.get( expected.size() ) );
+    }
+
+    public void testPathsAndFilesAreNotCopied()
+    {
+        String path = new File( "src/A.java" ).getAbsolutePath();
+        CompactPathSet set = new CompactPathSet( Arrays.asList( path ) );
+
+        assertSame( path, set.get( 0 ) );
+        assertSame( path, set.iterator().next() );
+        assertSame( set.asFileSet().iterator().next(), set.asFileSet().iterator().next() );
+    }
+
+    public void testFileView()
+    {
+        CompactPathSet set = new CompactPathSet();
+        File file = new File( "src/A.java" );
+
+        assertTrue( set.asFileSet().add( file ) );
+        assertFalse( set.asFileSet().add( file.getAbsoluteFile() ) );
+        assertTrue( set.contains( file.getAbsolutePath() ) );
+        assertTrue( set.asFileSet().contains( file ) );
+        assertEquals( file.getAbsoluteFile(), set.asFileSet().iterator().next() );
+    }
+}
@@ -0,0 +1,106 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+public class DeterministicJarWriterTest
+    extends TestCase
+{
+    public void testJarOnlyDependsOnEntries()
+        throws Exception
+    {
+        byte[] big = new byte[512 * 1024];
+        new Random( 42 ).nextBytes( big );
+
+        DeterministicJarWriter first = new DeterministicJarWriter();
+        first.add( "b/B.class", "bee".getBytes( "UTF-8" ) );
+        first.add( "a/A.class", "ay ay ay ay ay ay ay ay ay".getBytes( "UTF-8" ) );
+        first.add( "a/big.bin", big );
+
+        DeterministicJarWriter second = new DeterministicJarWriter();
+        second.add( "a\\big.bin", big );
+        second.add( "a/A.class", "ay ay ay ay ay ay ay ay ay".getBytes( "UTF-8" ) );
+        second.add( "b/B.class", "bee".getBytes( "UTF-8" ) );
+
+        File firstJar = new File( "target/deterministic-jar/first.jar" );
+        File secondJar = new File( "target/deterministic-jar/second.jar" );
+        first.write( firstJar );
+        Thread.sleep( 1100 );
+        second.write( secondJar );
+
+        assertTrue( Arrays.equals( read( firstJar ), read( secondJar ) ) );
+    }
+
+    public void testEntriesRoundTrip()
+        throws Exception
+    {
+        DeterministicJarWriter writer = new DeterministicJarWriter();
+        writer.add( "p/q/R.class", "r".getBytes( "UTF-8" ) );
+        writer.add( "p/S.txt", "s".getBytes( "UTF-8" ) );
+        File jar = new File( "target/deterministic-jar/round-trip.jar" );
+        writer.write( jar );
+
+        JarInputStream in = new JarInputStream( new ByteArrayInputStream( read( jar ) ) );
+        try
+        {
+            assertNotNull( in.getManifest() );
+            List<String> names = new ArrayList<String>();
+            JarEntry entry;
+            while ( ( entry = in.getNextJarEntry() ) != null )
+            {
+                names.add( entry.getName() );
+                if ( entry.getName().equals( "p/q/R.class" ) )
+                {
+                    assertEquals( "r", new String( IOUtil.toByteArray( in ), "UTF-8" ) );
+                }
+            }
+            assertEquals( "[p/, p/S.txt, p/q/, p/q/R.class]", names.toString() );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static byte[] read( File file )
+        throws Exception
+    {
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            return IOUtil.toByteArray( in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.codehaus.plexus.compiler.util;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileFingerprintServiceTest
+    extends TestCase
+{
+    private File basedir = new File( "target/fingerprints" ).getAbsoluteFile();
+
+    protected void setUp()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( basedir );
+        basedir.mkdirs();
+    }
+
+    public void testHashesContentWithXxHash64()
+        throws Exception
+    {
+        File file = write( "abc", "abc".getBytes( "UTF-8" ) );
+        FileFingerprintService service = new FileFingerprintService();
+
+        assertEquals( 0x44BC2CF5AD770999L, service.fingerprint( file ) );
+        assertEquals( 0xEF46DB3751D8E999L, service.fingerprint( write( "empty", new byte[0] ) ) );
+        assertEquals( 0, service.fingerprint( new File( basedir, "missing" ) ) );
+    }
+
+    public void testMemoizesBySizeAndModificationTime()
+        throws Exception
+    {
+        File file = write( "a", "abc".getBytes( "UTF-8" ) );
+        long lastModified = file.lastModified();
+        FileFingerprintService service = new FileFingerprintService();
+        long hash = service.fingerprint( file );
+
+        FileUtils.fileWrite( file.getPath(), "xyz" );
+        file.setLastModified( lastModified );
+        assertEquals( hash, service.fingerprint( file ) );
+
+        file.setLastModified( lastModified - 10000 );
+        assertFalse( hash == service.fingerprint( file ) );
+    }
+
+    public void testFilesLargerThanTheBufferAreHashedWhole()
+        throws Exception
+    {
+        byte[] content = new byte[FileFingerprintService.BUFFER_SIZE * 16 + 12345];
+        for ( int i = 0; i < content.length; i++ )
+        {
+            content[i] = (byte) ( i * 31 );
+        }
+        File file = write( "large.jar", content );
+
+        XxHash64 expected = new XxHash64( 0 );
+        expected.update( content, 0, content.length );
+        assertEquals( expected.digest(), new FileFingerprintService().fingerprint( file ) );
+    }
+
+    public void testParallelHashingAndPersistence()
+        throws Exception
+    {
+        List<File> files = new ArrayList<File>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            files.add( write( "f" + i, ( "content " + i ).getBytes( "UTF-8" ) ) );
+        }
+        File table = new File( basedir, "table" );
+        FileFingerprintService service = new FileFingerprintService( table );
+        long[] hashes = service.fingerprint( files );
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            assertEquals( service.fingerprint( files.get( i ) ), hashes[i] );
+        }
+        service.save();
+
+        // a stale entry proves the second service read the table instead of the file
+        long lastModified = files.get( 0 ).lastModified();
+        FileUtils.fileWrite( files.get( 0 ).getPath(), "content X" );
+        files.get( 0 ).setLastModified( lastModified );
+        assertEquals( hashes[0], new FileFingerprintService( table ).fingerprint( files.get( 0 ) ) );
+    }
+
+    private File write( String name, byte[] content )
+        throws Exception
+    {
+        File file = new File( basedir, name );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        return file;
+    }
+}
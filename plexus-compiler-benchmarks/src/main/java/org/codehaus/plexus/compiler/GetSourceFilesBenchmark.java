@@ -0,0 +1,91 @@
+package org.codehaus.plexus.compiler;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.benchmarks.SyntheticSources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting the files to compile, either scanned from a source location or given as source files.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class GetSourceFilesBenchmark
+{
+    @Param( { "1000", "10000" } )
+    public int files;
+
+    @Param( { "scanned", "given" } )
+    public String sources;
+
+    private File sourceDirectory;
+
+    private CompilerConfiguration config;
+
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        sourceDirectory = SyntheticSources.createSourceTree( files );
+        config = new CompilerConfiguration();
+        if ( "given".equals( sources ) )
+        {
+            for ( String path : SyntheticSources.paths( files, ".java" ) )
+            {
+                config.getSourceFiles().add( new File( sourceDirectory, path ) );
+            }
+        }
+        else
+        {
+            config.addSourceLocation( sourceDirectory.getPath() );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        SyntheticSources.delete( sourceDirectory );
+    }
+
+    @Benchmark
+    public String[] getSourceFiles()
+    {
+        return AbstractCompiler.getSourceFiles( config );
+    }
+}
@@ -0,0 +1,112 @@
+package org.codehaus.plexus.compiler.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic source trees and compiler outputs, sized by the benchmark parameters.
+ */
+public final class SyntheticSources
+{
+    /**
+     * number of classes per package
+     */
+    public static final int PACKAGE_SIZE = 50;
+
+    private SyntheticSources()
+    {
+    }
+
+    /**
+     * @return the relative paths of the given number of sources, spread over packages of {@link #PACKAGE_SIZE}
+     */
+    public static List<String> paths( int count, String suffix )
+    {
+        List<String> paths = new ArrayList<String>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            paths.add( "org/example/p" + ( i / PACKAGE_SIZE ) + "/C" + i + suffix );
+        }
+        return paths;
+    }
+
+    /**
+     * Writes the given number of compilable classes under a new temporary directory.
+     *
+     * @return the directory
+     */
+    public static File createSourceTree( int count )
+        throws IOException
+    {
+        File directory = createTempDirectory( "sources" );
+        for ( String path : paths( count, ".java" ) )
+        {
+            File file = new File( directory, path );
+            file.getParentFile().mkdirs();
+            String name = file.getName().substring( 0, file.getName().length() - ".java".length() );
+            String pkg = path.substring( 0, path.lastIndexOf( '/' ) ).replace( '/', '.' );
+            FileUtils.fileWrite( file.getPath(), "package " + pkg + ";\npublic class " + name
+                + " {\n    public int value() {\n        return " + name.length() + ";\n    }\n}\n" );
+        }
+        return directory;
+    }
+
+    /**
+     * Writes an empty file for every other source of the tree, with the given suffix, under a new temporary directory.
+     *
+     * @return the directory
+     */
+    public static File createOutputTree( int count, String suffix )
+        throws IOException
+    {
+        File directory = createTempDirectory( "classes" );
+        List<String> paths = paths( count, suffix );
+        for ( int i = 0; i < paths.size(); i += 2 )
+        {
+            File file = new File( directory, paths.get( i ) );
+            file.getParentFile().mkdirs();
+            FileUtils.fileWrite( file.getPath(), "" );
+        }
+        return directory;
+    }
+
+    public static File createTempDirectory( String prefix )
+        throws IOException
+    {
+        File directory = File.createTempFile( "plexus-compiler-" + prefix, "" );
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    public static void delete( File directory )
+        throws IOException
+    {
+        if ( directory != null )
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.codehaus.plexus.compiler.csharp;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.CompilerMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the output of the C# compiler, one message in ten being an error and the others warnings.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class ParseCompilerOutputBenchmark
+{
+    @Param( { "100", "10000", "100000" } )
+    public int messages;
+
+    private String output;
+
+    @Setup
+    public void setUp()
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < messages; i++ )
+        {
+            sb.append( "/project/src/main/csharp/Example/P" ).append( i / 50 ).append( "/C" ).append( i );
+            sb.append( ".cs(" ).append( i % 500 + 1 ).append( ',' ).append( i % 80 + 1 ).append( ')' );
+            if ( i % 10 == 0 )
+            {
+                sb.append( " error CS0246: The type or namespace name `Missing" ).append( i );
+                sb.append( "' could not be found\n" );
+            }
+            else
+            {
+                sb.append( " warning CS0618: `Example.Old.Run()' is obsolete\n" );
+            }
+        }
+        sb.append( "Compilation failed: " ).append( messages / 10 ).append( " error(s), " );
+        sb.append( messages - messages / 10 ).append( " warnings\n" );
+        output = sb.toString();
+    }
+
+    @Benchmark
+    public List<CompilerMessage> parse()
+        throws IOException
+    {
+        return CSharpCompiler.parseCompilerOutput( new BufferedReader( new StringReader( output ) ) );
+    }
+}
@@ -0,0 +1,86 @@
+package org.codehaus.plexus.compiler.util.scan;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.benchmarks.SyntheticSources;
+import org.codehaus.plexus.compiler.util.scan.mapping.SuffixMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping source paths to their target files, with a single target suffix and with several.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+public class SuffixMappingBenchmark
+{
+    @Param( { "1000", "100000" } )
+    public int files;
+
+    @Param( { "1", "3" } )
+    public int targetSuffixes;
+
+    private List<String> sources;
+
+    private SuffixMapping mapping;
+
+    private File targetDirectory = new File( "/project/target/classes" );
+
+    @Setup
+    public void setUp()
+    {
+        sources = SyntheticSources.paths( files, ".java" );
+        Set<String> suffixes = new HashSet<String>();
+        for ( int i = 0; i < targetSuffixes; i++ )
+        {
+            suffixes.add( i == 0 ? ".class" : ".class" + i );
+        }
+        mapping = new SuffixMapping( ".java", suffixes );
+    }
+
+    @Benchmark
+    public void map( Blackhole blackhole )
+        throws InclusionScanException
+    {
+        for ( String source : sources )
+        {
+            blackhole.consume( mapping.getTargetFiles( targetDirectory, source ) );
+        }
+    }
+}
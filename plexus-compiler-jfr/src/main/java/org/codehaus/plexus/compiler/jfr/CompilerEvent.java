@@ -0,0 +1,42 @@
+package org.codehaus.plexus.compiler.jfr;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * The fields shared by the compiler flight recorder events.
+ *
+ * @since 2.5
+ */
+@Category( "Plexus Compiler" )
+public abstract class CompilerEvent
+    extends Event
+{
+    @Label( "Compiler" )
+    String compilerId;
+
+    @Label( "Output Location" )
+    String outputLocation;
+
+    @Label( "Files" )
+    int fileCount;
+}
@@ -0,0 +1,85 @@
+package org.codehaus.plexus.compiler.jfr;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.FlightRecorder;
+import org.codehaus.plexus.compiler.CompilerEventRecorder;
+import org.codehaus.plexus.compiler.CompilerMetrics;
+
+/**
+ * Creates the flight recorder event matching a {@link CompilerMetrics.Timer}. Found by
+ * {@link org.codehaus.plexus.compiler.CompilerSpan} when this module is on the class path, and only loaded on JVMs
+ * with the flight recorder API.
+ *
+ * @since 2.5
+ */
+public final class CompilerEvents
+    implements CompilerEventRecorder
+{
+    /**
+     * @return the begun event, or <code>null</code> if the timer has no event or no recording enables it
+     */
+    public Object begin( CompilerMetrics.Timer timer )
+    {
+        if ( !FlightRecorder.isInitialized() )
+        {
+            // nothing has ever been recorded
+            return null;
+        }
+        CompilerEvent event;
+        switch ( timer )
+        {
+            case SCANNING:
+                event = new ScanEvent();
+                break;
+            case COMPILE:
+                event = new CompileEvent();
+                break;
+            case FORK_WAIT:
+                event = new ForkWaitEvent();
+                break;
+            case OUTPUT_PARSING:
+                event = new OutputParseEvent();
+                break;
+            case CACHE_LOOKUP:
+                event = new CacheLookupEvent();
+                break;
+            case CLASS_WRITING:
+                event = new ClassWriteEvent();
+                break;
+            default:
+                return null;
+        }
+        if ( !event.isEnabled() )
+        {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public void commit( Object begun, String compilerId, String outputLocation, int fileCount )
+    {
+        CompilerEvent event = (CompilerEvent) begun;
+        event.compilerId = compilerId;
+        event.outputLocation = outputLocation;
+        event.fileCount = fileCount;
+        event.commit();
+    }
+}
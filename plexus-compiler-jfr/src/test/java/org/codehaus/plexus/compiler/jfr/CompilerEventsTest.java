@@ -0,0 +1,77 @@
+package org.codehaus.plexus.compiler.jfr;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerMetrics;
+import org.codehaus.plexus.compiler.CompilerSpan;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompilerEventsTest
+    extends TestCase
+{
+    public void testEmitsFlightRecorderEvents()
+        throws Exception
+    {
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setOutputLocation( "target/classes" );
+        File dump = File.createTempFile( "compiler", ".jfr" );
+        dump.deleteOnExit();
+
+        Recording recording = new Recording();
+        recording.enable( "org.codehaus.plexus.compiler.Compile" ).withoutThreshold();
+        recording.disable( "org.codehaus.plexus.compiler.Scan" );
+        recording.start();
+        try
+        {
+            CompilerSpan.start( config, "javac", CompilerMetrics.Timer.COMPILE ).end( 42 );
+            // disabled in the recording
+            CompilerSpan.start( config, "javac", CompilerMetrics.Timer.SCANNING ).end( 1 );
+            recording.stop();
+            recording.dump( dump.toPath() );
+        }
+        finally
+        {
+            recording.close();
+        }
+
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for ( RecordedEvent event : RecordingFile.readAllEvents( dump.toPath() ) )
+        {
+            // skip the events of the JVM itself
+            if ( event.getEventType().getName().startsWith( "org.codehaus.plexus.compiler." ) )
+            {
+                events.add( event );
+            }
+        }
+        assertEquals( 1, events.size() );
+        RecordedEvent event = events.get( 0 );
+        assertEquals( "org.codehaus.plexus.compiler.Compile", event.getEventType().getName() );
+        assertEquals( "javac", event.getString( "compilerId" ) );
+        assertEquals( "target/classes", event.getString( "outputLocation" ) );
+        assertEquals( 42, event.getInt( "fileCount" ) );
+    }
+}
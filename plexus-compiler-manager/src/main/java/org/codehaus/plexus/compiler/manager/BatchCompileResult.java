@@ -0,0 +1,79 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The per node results of a {@link BatchCompiler} run, in the order the nodes were submitted.
+ *
+ * @since 2.5
+ */
+public class BatchCompileResult
+{
+    private final Map<CompileNode, CompileNodeResult> results;
+
+    private final long elapsedNanos;
+
+    BatchCompileResult( Map<CompileNode, CompileNodeResult> results, long elapsedNanos )
+    {
+        this.results = Collections.unmodifiableMap( new LinkedHashMap<CompileNode, CompileNodeResult>( results ) );
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isSuccess()
+    {
+        for ( CompileNodeResult result : results.values() )
+        {
+            if ( !result.isSuccess() )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public CompileNodeResult getResult( CompileNode node )
+    {
+        return results.get( node );
+    }
+
+    public List<CompileNodeResult> getResults()
+    {
+        return new ArrayList<CompileNodeResult>( results.values() );
+    }
+
+    /**
+     * @return the wall clock time of the whole batch
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,57 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.List;
+
+/**
+ * Compiles a graph of {@link CompileNode}s, running independent nodes in parallel.
+ *
+ * @since 2.5
+ */
+public interface BatchCompiler
+{
+    String ROLE = BatchCompiler.class.getName();
+
+    /**
+     * Compiles the given nodes with one worker thread per available processor.
+     *
+     * @see #compile(List, int)
+     */
+    BatchCompileResult compile( List<CompileNode> nodes )
+        throws NoSuchCompilerException, InterruptedException;
+
+    /**
+     * Compiles the given nodes on at most <code>maxThreads</code> worker threads. A node is started as soon as
+     * all its dependencies have compiled successfully; when more nodes are ready than there are free workers,
+     * the one heading the longest remaining chain of work goes first. Nodes downstream of a failure are
+     * skipped. Dependencies must be part of <code>nodes</code> and must not form a cycle.
+     *
+     * @throws NoSuchCompilerException if a node refers to an unknown compiler; nothing is compiled in that case
+     * @throws InterruptedException if the calling thread is interrupted, running compilations are cancelled
+     */
+    BatchCompileResult compile( List<CompileNode> nodes, int maxThreads )
+        throws NoSuchCompilerException, InterruptedException;
+}
@@ -0,0 +1,135 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single compilation in a batch submitted to the {@link BatchCompiler}. A node only starts once all the
+ * nodes it {@link #dependsOn(CompileNode...) depends on} have compiled successfully.
+ *
+ * @since 2.5
+ */
+public class CompileNode
+{
+    private final String id;
+
+    private final String compilerId;
+
+    private final CompilerConfiguration configuration;
+
+    private final List<CompileNode> dependencies = new ArrayList<CompileNode>();
+
+    private long weight;
+
+    public CompileNode( String id, String compilerId, CompilerConfiguration configuration )
+    {
+        if ( id == null )
+        {
+            throw new IllegalArgumentException( "id is null" );
+        }
+        if ( compilerId == null )
+        {
+            throw new IllegalArgumentException( "compilerId is null" );
+        }
+        if ( configuration == null )
+        {
+            throw new IllegalArgumentException( "configuration is null" );
+        }
+
+        this.id = id;
+        this.compilerId = compilerId;
+        this.configuration = configuration;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getCompilerId()
+    {
+        return compilerId;
+    }
+
+    public CompilerConfiguration getConfiguration()
+    {
+        return configuration;
+    }
+
+    /**
+     * Declares that this node needs the output of the given nodes, typically because their output directories
+     * are on its classpath.
+     *
+     * @return this node
+     */
+    public CompileNode dependsOn( CompileNode... upstream )
+    {
+        for ( CompileNode node : upstream )
+        {
+            if ( node == this )
+            {
+                throw new IllegalArgumentException( "Node '" + id + "' cannot depend on itself." );
+            }
+            if ( !dependencies.contains( node ) )
+            {
+                dependencies.add( node );
+            }
+        }
+        return this;
+    }
+
+    public List<CompileNode> getDependencies()
+    {
+        return Collections.unmodifiableList( dependencies );
+    }
+
+    /**
+     * The relative cost of compiling this node, used to prioritize the critical path. Unless set explicitly
+     * this is the number of source files in the configuration, or 1 when the sources are not known up front.
+     */
+    public long getWeight()
+    {
+        if ( weight > 0 )
+        {
+            return weight;
+        }
+        return Math.max( 1, configuration.getSourceFiles().size() );
+    }
+
+    public void setWeight( long weight )
+    {
+        this.weight = weight;
+    }
+
+    public String toString()
+    {
+        return id;
+    }
+}
@@ -0,0 +1,142 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.compiler.CompilerResult;
+
+/**
+ * The outcome of one {@link CompileNode} in a batch, with the timing of its compilation.
+ *
+ * @since 2.5
+ */
+public class CompileNodeResult
+{
+    public enum Status
+    {
+        /**
+         * The compiler ran and reported success.
+         */
+        SUCCESS,
+
+        /**
+         * The compiler ran and reported errors, or threw an exception.
+         */
+        FAILED,
+
+        /**
+         * The node was not compiled because an upstream node failed or the batch was interrupted.
+         */
+        SKIPPED
+    }
+
+    private final CompileNode node;
+
+    private final Status status;
+
+    private final CompilerResult compilerResult;
+
+    private final Throwable failure;
+
+    private final long queuedNanos;
+
+    private final long compileNanos;
+
+    private final String threadName;
+
+    CompileNodeResult( CompileNode node, Status status, CompilerResult compilerResult, Throwable failure,
+                       long queuedNanos, long compileNanos, String threadName )
+    {
+        this.node = node;
+        this.status = status;
+        this.compilerResult = compilerResult;
+        this.failure = failure;
+        this.queuedNanos = queuedNanos;
+        this.compileNanos = compileNanos;
+        this.threadName = threadName;
+    }
+
+    static CompileNodeResult skipped( CompileNode node )
+    {
+        return new CompileNodeResult( node, Status.SKIPPED, null, null, 0, 0, null );
+    }
+
+    public CompileNode getNode()
+    {
+        return node;
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    public boolean isSuccess()
+    {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * @return the result reported by the compiler, or <code>null</code> if the node was skipped or the compiler
+     *         threw an exception
+     */
+    public CompilerResult getCompilerResult()
+    {
+        return compilerResult;
+    }
+
+    /**
+     * @return the exception thrown by the compiler, if any
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * @return the time between all upstream nodes being done and this node starting to compile
+     */
+    public long getQueuedNanos()
+    {
+        return queuedNanos;
+    }
+
+    public long getCompileNanos()
+    {
+        return compileNanos;
+    }
+
+    /**
+     * @return the worker thread that compiled this node, or <code>null</code> if it was skipped
+     */
+    public String getThreadName()
+    {
+        return threadName;
+    }
+
+    public String toString()
+    {
+        return node + " " + status;
+    }
+}
@@ -0,0 +1,60 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+
+import java.util.concurrent.Future;
+
+/**
+ * Prepares compilers ahead of their first use. Implemented by the {@link DefaultCompilerManager}, so that a build
+ * knowing early which compiler it will use can check for this interface on its {@link CompilerManager}.
+ *
+ * @since 2.5
+ */
+public interface CompilerWarmer
+{
+    /**
+     * Creates the given compiler on a background thread and primes it with a small compilation, so that the first
+     * real compilation does not pay for loading its classes. Meant to be called as early as the compiler to use is
+     * known; failures while priming are only logged.
+     *
+     * @return the compiler, once primed
+     * @throws NoSuchCompilerException if no compiler has the given id
+     */
+    Future<Compiler> warmUp( String compilerId )
+        throws NoSuchCompilerException;
+
+    /**
+     * Like {@link #warmUp(String)}, but keeps compiling a bundled workload with the settings of the given
+     * configuration, such as its reuse strategy, until the compilation time has converged. The result is logged at
+     * debug level.
+     *
+     * @see org.codehaus.plexus.compiler.CompilerWarmUp
+     */
+    Future<Compiler> warmUp( String compilerId, CompilerConfiguration configuration )
+        throws NoSuchCompilerException;
+}
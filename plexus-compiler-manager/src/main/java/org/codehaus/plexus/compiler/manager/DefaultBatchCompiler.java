@@ -0,0 +1,402 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.TraceEventSink;
+import org.codehaus.plexus.compiler.UpToDateCheck;
+import org.codehaus.plexus.logging.AbstractLogEnabled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the nodes of a batch on a fixed pool of worker threads. Each compiler is looked up once per batch
+ * and shared by all nodes using it, so in-process compilers stay warm across the whole batch. Nodes without
+ * {@link CompilerConfiguration#setDirectoryStamps directory stamps} of their own share new ones for the batch.
+ *
+ * @plexus.component
+ * @since 2.5
+ */
+public class DefaultBatchCompiler
+    extends AbstractLogEnabled
+    implements BatchCompiler
+{
+    /**
+     * @plexus.requirement
+     */
+    private CompilerManager compilerManager;
+
+    // ----------------------------------------------------------------------
+    // BatchCompiler Implementation
+    // ----------------------------------------------------------------------
+
+    public BatchCompileResult compile( List<CompileNode> nodes )
+        throws NoSuchCompilerException, InterruptedException
+    {
+        return compile( nodes, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public BatchCompileResult compile( List<CompileNode> nodes, int maxThreads )
+        throws NoSuchCompilerException, InterruptedException
+    {
+        if ( maxThreads < 1 )
+        {
+            throw new IllegalArgumentException( "maxThreads must be at least 1, was " + maxThreads );
+        }
+
+        // the nodes of a batch are one build, walking each upstream output directory once
+        UpToDateCheck.DirectoryStamps directoryStamps = new UpToDateCheck.DirectoryStamps();
+        List<CompilerConfiguration> stamped = new ArrayList<CompilerConfiguration>();
+        for ( CompileNode node : nodes )
+        {
+            if ( node.getConfiguration().getDirectoryStamps() == null )
+            {
+                node.getConfiguration().setDirectoryStamps( directoryStamps );
+                stamped.add( node.getConfiguration() );
+            }
+        }
+        try
+        {
+            return compileNodes( nodes, maxThreads );
+        }
+        finally
+        {
+            for ( CompilerConfiguration configuration : stamped )
+            {
+                configuration.setDirectoryStamps( null );
+            }
+        }
+    }
+
+    private BatchCompileResult compileNodes( List<CompileNode> nodes, int maxThreads )
+        throws NoSuchCompilerException, InterruptedException
+    {
+        long start = System.nanoTime();
+
+        Map<String, Compiler> compilers = new HashMap<String, Compiler>();
+        for ( CompileNode node : nodes )
+        {
+            if ( !compilers.containsKey( node.getCompilerId() ) )
+            {
+                compilers.put( node.getCompilerId(), compilerManager.getCompiler( node.getCompilerId() ) );
+            }
+        }
+
+        Map<CompileNode, List<CompileNode>> dependents = new IdentityHashMap<CompileNode, List<CompileNode>>();
+        Map<CompileNode, Integer> pending = new IdentityHashMap<CompileNode, Integer>();
+        final Map<CompileNode, Long> priorities = computePriorities( nodes, dependents );
+        final Map<CompileNode, Integer> positions = new IdentityHashMap<CompileNode, Integer>();
+
+        Comparator<CompileNode> criticalPathFirst = new Comparator<CompileNode>()
+        {
+            public int compare( CompileNode a, CompileNode b )
+            {
+                long pa = priorities.get( a );
+                long pb = priorities.get( b );
+                if ( pa != pb )
+                {
+                    return pa > pb ? -1 : 1;
+                }
+                return positions.get( a ) - positions.get( b );
+            }
+        };
+        PriorityQueue<CompileNode> ready = new PriorityQueue<CompileNode>( nodes.size() + 1, criticalPathFirst );
+        Map<CompileNode, Long> readySince = new IdentityHashMap<CompileNode, Long>();
+
+        for ( CompileNode node : nodes )
+        {
+            positions.put( node, positions.size() );
+            pending.put( node, node.getDependencies().size() );
+            if ( node.getDependencies().isEmpty() )
+            {
+                ready.add( node );
+                readySince.put( node, start );
+            }
+        }
+
+        Map<CompileNode, CompileNodeResult> results = new IdentityHashMap<CompileNode, CompileNodeResult>();
+
+        if ( !nodes.isEmpty() )
+        {
+            ExecutorService executor =
+                Executors.newFixedThreadPool( Math.min( maxThreads, nodes.size() ), new WorkerThreadFactory() );
+            CompletionService<CompileNodeResult> completion =
+                new ExecutorCompletionService<CompileNodeResult>( executor );
+            int running = 0;
+
+            try
+            {
+                while ( running > 0 || !ready.isEmpty() )
+                {
+                    while ( running < maxThreads && !ready.isEmpty() )
+                    {
+                        CompileNode node = ready.poll();
+                        completion.submit( new NodeTask( node, compilers.get( node.getCompilerId() ),
+                                                         readySince.get( node ) ) );
+                        running++;
+                    }
+
+                    CompileNodeResult result = get( completion );
+                    running--;
+                    results.put( result.getNode(), result );
+
+                    if ( !result.isSuccess() )
+                    {
+                        // downstream nodes never become ready and are reported as skipped
+                        continue;
+                    }
+
+                    long now = System.nanoTime();
+                    for ( CompileNode dependent : dependents.get( result.getNode() ) )
+                    {
+                        int remaining = pending.get( dependent ) - 1;
+                        pending.put( dependent, remaining );
+                        if ( remaining == 0 )
+                        {
+                            ready.add( dependent );
+                            readySince.put( dependent, now );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                // interrupts running compilations if we are leaving early
+                executor.shutdownNow();
+            }
+        }
+
+        Map<CompileNode, CompileNodeResult> ordered = new LinkedHashMap<CompileNode, CompileNodeResult>();
+        for ( CompileNode node : nodes )
+        {
+            CompileNodeResult result = results.get( node );
+            if ( result == null )
+            {
+                if ( getLogger() != null )
+                {
+                    getLogger().debug( "Skipping '" + node + "' as an upstream node did not compile" );
+                }
+                result = CompileNodeResult.skipped( node );
+            }
+            ordered.put( node, result );
+        }
+
+        return new BatchCompileResult( ordered, System.nanoTime() - start );
+    }
+
+    private static CompileNodeResult get( CompletionService<CompileNodeResult> completion )
+        throws InterruptedException
+    {
+        try
+        {
+            return completion.take().get();
+        }
+        catch ( ExecutionException e )
+        {
+            // NodeTask only lets Errors escape
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException( e.getCause().toString() );
+        }
+    }
+
+    /**
+     * Validates the graph and computes the priority of each node: its own weight plus the heaviest chain of
+     * nodes depending on it, so the nodes on the critical path are started first.
+     */
+    private static Map<CompileNode, Long> computePriorities( List<CompileNode> nodes,
+                                                              Map<CompileNode, List<CompileNode>> dependents )
+    {
+        Map<CompileNode, Integer> inDegree = new IdentityHashMap<CompileNode, Integer>();
+        for ( CompileNode node : nodes )
+        {
+            if ( dependents.put( node, new ArrayList<CompileNode>() ) != null )
+            {
+                throw new IllegalArgumentException( "Node '" + node + "' is submitted more than once." );
+            }
+            inDegree.put( node, node.getDependencies().size() );
+        }
+        for ( CompileNode node : nodes )
+        {
+            for ( CompileNode dependency : node.getDependencies() )
+            {
+                List<CompileNode> list = dependents.get( dependency );
+                if ( list == null )
+                {
+                    throw new IllegalArgumentException( "Node '" + node + "' depends on '" + dependency
+                        + "' which is not part of the batch." );
+                }
+                list.add( node );
+            }
+        }
+
+        List<CompileNode> sorted = new ArrayList<CompileNode>( nodes.size() );
+        LinkedList<CompileNode> queue = new LinkedList<CompileNode>();
+        for ( CompileNode node : nodes )
+        {
+            if ( inDegree.get( node ) == 0 )
+            {
+                queue.add( node );
+            }
+        }
+        while ( !queue.isEmpty() )
+        {
+            CompileNode node = queue.removeFirst();
+            sorted.add( node );
+            for ( CompileNode dependent : dependents.get( node ) )
+            {
+                int remaining = inDegree.get( dependent ) - 1;
+                inDegree.put( dependent, remaining );
+                if ( remaining == 0 )
+                {
+                    queue.add( dependent );
+                }
+            }
+        }
+
+        if ( sorted.size() != nodes.size() )
+        {
+            List<CompileNode> cycle = new ArrayList<CompileNode>();
+            for ( CompileNode node : nodes )
+            {
+                if ( inDegree.get( node ) > 0 )
+                {
+                    cycle.add( node );
+                }
+            }
+            throw new IllegalArgumentException( "The dependencies between " + cycle + " form a cycle." );
+        }
+
+        Map<CompileNode, Long> priorities = new IdentityHashMap<CompileNode, Long>();
+        for ( int i = sorted.size() - 1; i >= 0; i-- )
+        {
+            CompileNode node = sorted.get( i );
+            long downstream = 0;
+            for ( CompileNode dependent : dependents.get( node ) )
+            {
+                downstream = Math.max( downstream, priorities.get( dependent ) );
+            }
+            priorities.put( node, node.getWeight() + downstream );
+        }
+        return priorities;
+    }
+
+    private static class NodeTask
+        implements Callable<CompileNodeResult>
+    {
+        private final CompileNode node;
+
+        private final Compiler compiler;
+
+        private final long readySince;
+
+        NodeTask( CompileNode node, Compiler compiler, long readySince )
+        {
+            this.node = node;
+            this.compiler = compiler;
+            this.readySince = readySince;
+        }
+
+        public CompileNodeResult call()
+        {
+            long begin = System.nanoTime();
+            String threadName = Thread.currentThread().getName();
+            CompileNodeResult.Status status = CompileNodeResult.Status.FAILED;
+            try
+            {
+                CompilerResult result = compiler.performCompile( node.getConfiguration() );
+                if ( result.isSuccess() )
+                {
+                    status = CompileNodeResult.Status.SUCCESS;
+                }
+
+                return new CompileNodeResult( node, status, result, null, begin - readySince,
+                                              System.nanoTime() - begin, threadName );
+            }
+            catch ( Exception e )
+            {
+                return new CompileNodeResult( node, status, null, e, begin - readySince, System.nanoTime() - begin,
+                                              threadName );
+            }
+            finally
+            {
+                trace( begin, status );
+            }
+        }
+
+        /**
+         * Records the node as a span enclosing the phases recorded by the compiler, along with how long it waited
+         * for a free worker.
+         */
+        private void trace( long begin, CompileNodeResult.Status status )
+        {
+            TraceEventSink trace = node.getConfiguration().getTraceEventSink();
+            if ( trace != null )
+            {
+                trace.complete( node.getId(), "module", begin, trace.now(), "compilerId", node.getCompilerId(),
+                                "status", status.name(), "queuedMillis",
+                                String.valueOf( ( begin - readySince ) / 1000000 ) );
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory
+        implements ThreadFactory
+    {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread =
+                new Thread( runnable, "batch-compiler-" + poolNumber + "-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
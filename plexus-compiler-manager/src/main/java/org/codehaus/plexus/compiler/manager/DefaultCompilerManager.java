@@ -24,23 +24,56 @@ package org.codehaus.plexus.compiler.manager;
  * SOFTWARE.
  */
 
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerWarmUp;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.context.Context;
+import org.codehaus.plexus.context.ContextException;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
+import org.codehaus.plexus.util.FileUtils;
 
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
+ * Looks compilers up in the container the first time they are asked for, so a build only loads the classes of the
+ * compilers it uses. Warm-ups run one at a time on a low priority daemon thread shared by the managers of the JVM.
+ *
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
  * @plexus.component
  */
 public class DefaultCompilerManager
     extends AbstractLogEnabled
-    implements CompilerManager
+    implements CompilerManager, CompilerWarmer, Contextualizable
 {
-    /**
-     * @plexus.requirement role="org.codehaus.plexus.compiler.Compiler"
-     */
-    private Map<String, Compiler> compilers;
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private static ExecutorService warmUpExecutor;
+
+    private PlexusContainer container;
+
+    private final ConcurrentMap<String, Compiler> compilers = new ConcurrentHashMap<String, Compiler>();
+
+    // ----------------------------------------------------------------------
+    // Contextualizable Implementation
+    // ----------------------------------------------------------------------
+
+    public void contextualize( Context context )
+        throws ContextException
+    {
+        container = (PlexusContainer) context.get( PlexusConstants.PLEXUS_KEY );
+    }
 
     // ----------------------------------------------------------------------
     // CompilerManager Implementation
@@ -53,9 +86,178 @@ public class DefaultCompilerManager
 
         if ( compiler == null )
         {
-            throw new NoSuchCompilerException( compilerId );
+            if ( compilerId == null || !container.hasComponent( Compiler.ROLE, compilerId ) )
+            {
+                throw new NoSuchCompilerException( compilerId );
+            }
+
+            try
+            {
+                compiler = (Compiler) container.lookup( Compiler.ROLE, compilerId );
+            }
+            catch ( ComponentLookupException e )
+            {
+                if ( getLogger() != null )
+                {
+                    getLogger().warn( "Cannot create the compiler '" + compilerId + "': " + e.getMessage() );
+                }
+                throw new NoSuchCompilerException( compilerId );
+            }
+
+            Compiler existing = compilers.putIfAbsent( compilerId, compiler );
+            if ( existing != null )
+            {
+                compiler = existing;
+            }
         }
 
         return compiler;
     }
+
+    public Future<Compiler> warmUp( String compilerId )
+        throws NoSuchCompilerException
+    {
+        return startWarmUp( compilerId, null );
+    }
+
+    public Future<Compiler> warmUp( String compilerId, CompilerConfiguration configuration )
+        throws NoSuchCompilerException
+    {
+        return startWarmUp( compilerId, configuration );
+    }
+
+    /**
+     * @param configuration the configuration to warm up with until the time converges, <code>null</code> to compile
+     * a single class
+     */
+    private Future<Compiler> startWarmUp( final String compilerId, final CompilerConfiguration configuration )
+        throws NoSuchCompilerException
+    {
+        if ( compilerId == null || !container.hasComponent( Compiler.ROLE, compilerId ) )
+        {
+            throw new NoSuchCompilerException( compilerId );
+        }
+
+        return getWarmUpExecutor().submit( new Callable<Compiler>()
+        {
+            public Compiler call()
+                throws Exception
+            {
+                Compiler compiler = getCompiler( compilerId );
+                if ( configuration == null )
+                {
+                    prime( compilerId, compiler );
+                }
+                else
+                {
+                    converge( compilerId, compiler, configuration );
+                }
+                return compiler;
+            }
+        } );
+    }
+
+    private static synchronized ExecutorService getWarmUpExecutor()
+    {
+        if ( warmUpExecutor == null )
+        {
+            warmUpExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+            {
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "plexus-compiler-warm-up" );
+                    thread.setDaemon( true );
+                    thread.setPriority( Thread.MIN_PRIORITY );
+                    return thread;
+                }
+            } );
+        }
+        return warmUpExecutor;
+    }
+
+    /**
+     * Compiles a single class in a scratch directory, if the compiler takes Java sources.
+     */
+    private void prime( String compilerId, Compiler compiler )
+    {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        File directory = null;
+        try
+        {
+            if ( !".java".equals( compiler.getInputFileEnding( configuration ) ) )
+            {
+                return;
+            }
+
+            directory = File.createTempFile( "compiler-warm-up", "" );
+            FileUtils.forceDelete( directory );
+            File src = new File( directory, "src" );
+            File warmUp = new File( src, "warmup/WarmUp.java" );
+            warmUp.getParentFile().mkdirs();
+            FileUtils.fileWrite( warmUp.getAbsolutePath(), "UTF-8", "package warmup;" + EOL
+                + "public class WarmUp implements Comparable<WarmUp>" + EOL
+                + "{" + EOL
+                + "    public int compareTo( WarmUp other )" + EOL
+                + "    {" + EOL
+                + "        return java.util.Collections.<String>emptyList().size();" + EOL
+                + "    }" + EOL
+                + "}" + EOL );
+
+            configuration.addSourceLocation( src.getAbsolutePath() );
+            configuration.setOutputLocation( new File( directory, "classes" ).getAbsolutePath() );
+            long start = System.nanoTime();
+            compiler.performCompile( configuration );
+            if ( getLogger() != null && getLogger().isDebugEnabled() )
+            {
+                getLogger().debug( "Warmed up the compiler '" + compilerId + "' in "
+                                       + ( System.nanoTime() - start ) / 1000000 + "ms" );
+            }
+        }
+        catch ( Exception e )
+        {
+            if ( getLogger() != null )
+            {
+                getLogger().debug( "Cannot warm up the compiler '" + compilerId + "': " + e.getMessage(), e );
+            }
+        }
+        finally
+        {
+            if ( directory != null )
+            {
+                try
+                {
+                    FileUtils.deleteDirectory( directory );
+                }
+                catch ( IOException e )
+                {
+                    // left for the system to clean up
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the {@link CompilerWarmUp} workload until the time converges, if the compiler takes Java sources.
+     */
+    private void converge( String compilerId, Compiler compiler, CompilerConfiguration configuration )
+    {
+        try
+        {
+            if ( ".java".equals( compiler.getInputFileEnding( configuration ) ) )
+            {
+                CompilerWarmUp.Result result = new CompilerWarmUp( compiler, configuration ).run();
+                if ( getLogger() != null && getLogger().isDebugEnabled() )
+                {
+                    getLogger().debug( "Warmed up the compiler '" + compilerId + "': " + result );
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            if ( getLogger() != null )
+            {
+                getLogger().debug( "Cannot warm up the compiler '" + compilerId + "': " + e.getMessage(), e );
+            }
+        }
+    }
 }
@@ -0,0 +1,255 @@
+package org.codehaus.plexus.compiler.manager;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.compiler.AbstractCompiler;
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerException;
+import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMetrics;
+import org.codehaus.plexus.compiler.CompilerOutputStyle;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.TraceEventSink;
+import org.codehaus.plexus.compiler.UpToDateCheck;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchCompilerTest
+    extends PlexusTestCase
+{
+    private RecordingCompiler compiler;
+
+    private BatchCompiler batchCompiler;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        compiler = (RecordingCompiler) lookup( Compiler.ROLE, "recording" );
+        batchCompiler = (BatchCompiler) lookup( BatchCompiler.ROLE );
+    }
+
+    public void testDependenciesCompileFirst()
+        throws Exception
+    {
+        CompileNode a = node( "a" );
+        CompileNode b = node( "b" ).dependsOn( a );
+        CompileNode c = node( "c" ).dependsOn( a );
+        CompileNode d = node( "d" ).dependsOn( b, c );
+
+        BatchCompileResult result = batchCompiler.compile( Arrays.asList( d, c, b, a ), 4 );
+
+        assertTrue( result.isSuccess() );
+        assertEquals( Arrays.asList( d, c, b, a ), nodesOf( result ) );
+        for ( CompileNodeResult nodeResult : result.getResults() )
+        {
+            assertNotNull( nodeResult.getCompilerResult() );
+            assertNotNull( nodeResult.getThreadName() );
+            for ( CompileNode dependency : nodeResult.getNode().getDependencies() )
+            {
+                assertTrue( nodeResult.getNode() + " started before " + dependency + " ended",
+                            compiler.events.indexOf( "end:" + dependency ) < compiler.events.indexOf(
+                                "start:" + nodeResult.getNode() ) );
+            }
+        }
+    }
+
+    public void testNodesShareDirectoryStampsForTheBatch()
+        throws Exception
+    {
+        CompileNode a = node( "a" );
+        CompileNode b = node( "b" ).dependsOn( a );
+
+        batchCompiler.compile( Arrays.asList( a, b ), 2 );
+        batchCompiler.compile( Arrays.asList( a ), 1 );
+
+        assertEquals( 3, compiler.directoryStamps.size() );
+        assertNotNull( compiler.directoryStamps.get( 0 ) );
+        assertSame( compiler.directoryStamps.get( 0 ), compiler.directoryStamps.get( 1 ) );
+        assertNotSame( compiler.directoryStamps.get( 0 ), compiler.directoryStamps.get( 2 ) );
+        assertNull( a.getConfiguration().getDirectoryStamps() );
+    }
+
+    public void testFailureSkipsDownstreamNodes()
+        throws Exception
+    {
+        CompileNode failing = node( "fail-a" );
+        CompileNode downstream = node( "b" ).dependsOn( failing );
+        CompileNode transitive = node( "c" ).dependsOn( downstream );
+        CompileNode independent = node( "d" );
+
+        BatchCompileResult result =
+            batchCompiler.compile( Arrays.asList( failing, downstream, transitive, independent ), 2 );
+
+        assertFalse( result.isSuccess() );
+        assertEquals( CompileNodeResult.Status.FAILED, result.getResult( failing ).getStatus() );
+        assertFalse( result.getResult( failing ).getCompilerResult().isSuccess() );
+        assertEquals( CompileNodeResult.Status.SKIPPED, result.getResult( downstream ).getStatus() );
+        assertEquals( CompileNodeResult.Status.SKIPPED, result.getResult( transitive ).getStatus() );
+        assertEquals( CompileNodeResult.Status.SUCCESS, result.getResult( independent ).getStatus() );
+        assertFalse( compiler.events.contains( "start:b" ) );
+    }
+
+    public void testCriticalPathStartsFirst()
+        throws Exception
+    {
+        CompileNode leaf = node( "leaf" );
+        CompileNode head = node( "head" );
+        CompileNode tail = node( "tail" ).dependsOn( head );
+        tail.setWeight( 10 );
+
+        batchCompiler.compile( Arrays.asList( leaf, head, tail ), 1 );
+
+        assertEquals( Arrays.asList( "start:head", "end:head", "start:tail", "end:tail", "start:leaf", "end:leaf" ),
+                      compiler.events );
+    }
+
+    public void testCycleIsRejected()
+        throws Exception
+    {
+        CompileNode a = node( "a" );
+        CompileNode b = node( "b" ).dependsOn( a );
+        a.dependsOn( b );
+
+        try
+        {
+            batchCompiler.compile( Arrays.asList( a, b ) );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( compiler.events.isEmpty() );
+        }
+    }
+
+    public void testUnknownCompiler()
+        throws Exception
+    {
+        try
+        {
+            CompileNode node = new CompileNode( "a", "foo", new CompilerConfiguration() );
+            batchCompiler.compile( Collections.singletonList( node ) );
+            fail( "Expected NoSuchCompilerException" );
+        }
+        catch ( NoSuchCompilerException e )
+        {
+            assertEquals( "foo", e.getCompilerId() );
+        }
+    }
+
+    public void testRecordsTraceEvents()
+        throws Exception
+    {
+        TraceEventSink trace = new TraceEventSink( getTestFile( "target/trace/batch.json" ) );
+        CompileNode a = node( "a" );
+        CompileNode b = node( "fail-b" ).dependsOn( a );
+        a.getConfiguration().setTraceEventSink( trace );
+        b.getConfiguration().setTraceEventSink( trace );
+
+        batchCompiler.compile( Arrays.asList( a, b ), 2 );
+        trace.close();
+
+        String json = FileUtils.fileRead( trace.getFile(), "UTF-8" );
+        assertTrue( json, json.startsWith( "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" ) );
+        assertTrue( json, json.endsWith( "]}" ) );
+        assertTrue( json, json.contains( "\"name\":\"thread_name\",\"ph\":\"M\"" ) );
+        assertTrue( json, json.contains( "\"name\":\"a\",\"cat\":\"module\",\"ph\":\"X\"" ) );
+        assertTrue( json, json.contains( "\"compilerId\":\"recording\",\"status\":\"FAILED\"" ) );
+        assertTrue( json, json.contains( "\"name\":\"compile\",\"cat\":\"phase\"" ) );
+    }
+
+    private static CompileNode node( String id )
+    {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setOutputLocation( id );
+        return new CompileNode( id, "recording", configuration );
+    }
+
+    private static List<CompileNode> nodesOf( BatchCompileResult result )
+    {
+        List<CompileNode> nodes = new ArrayList<CompileNode>();
+        for ( CompileNodeResult nodeResult : result.getResults() )
+        {
+            nodes.add( nodeResult.getNode() );
+        }
+        return nodes;
+    }
+
+    /**
+     * Records when each output location starts and ends compiling, failing those starting with "fail".
+     */
+    public static class RecordingCompiler
+        extends AbstractCompiler
+    {
+        final List<String> events = Collections.synchronizedList( new ArrayList<String>() );
+
+        final List<UpToDateCheck.DirectoryStamps> directoryStamps =
+            Collections.synchronizedList( new ArrayList<UpToDateCheck.DirectoryStamps>() );
+
+        public RecordingCompiler()
+        {
+            super( CompilerOutputStyle.ONE_OUTPUT_FILE_PER_INPUT_FILE, ".java", ".class", null );
+        }
+
+        public CompilerResult performCompile( CompilerConfiguration configuration )
+            throws CompilerException
+        {
+            String id = configuration.getOutputLocation();
+            events.add( "start:" + id );
+            directoryStamps.add( configuration.getDirectoryStamps() );
+            CompilerSpan span = startTimer( configuration, CompilerMetrics.Timer.COMPILE );
+            try
+            {
+                Thread.sleep( 20 );
+            }
+            catch ( InterruptedException e )
+            {
+                throw new CompilerException( "interrupted", e );
+            }
+            span.end();
+            events.add( "end:" + id );
+
+            if ( id.startsWith( "fail" ) )
+            {
+                return new CompilerResult( false, Collections.singletonList(
+                    new CompilerMessage( "broken", CompilerMessage.Kind.ERROR ) ) );
+            }
+            return new CompilerResult();
+        }
+
+        public String[] createCommandLine( CompilerConfiguration config )
+        {
+            return null;
+        }
+    }
+}
@@ -25,6 +25,14 @@ package org.codehaus.plexus.compiler.manager;
  */
 
 import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.compiler.AbstractCompiler;
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerOutputStyle;
+import org.codehaus.plexus.compiler.CompilerResult;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -48,4 +56,63 @@ public class CompilerManagerTest
             // ignored
         }
     }
+
+    public void testCreatesCompilersOnFirstUse()
+        throws Exception
+    {
+        CountingCompiler.INSTANCES.set( 0 );
+        CompilerManager compilerManager = (CompilerManager) lookup( CompilerManager.ROLE );
+        assertEquals( 0, CountingCompiler.INSTANCES.get() );
+
+        Compiler compiler = compilerManager.getCompiler( "counting" );
+        assertSame( compiler, compilerManager.getCompiler( "counting" ) );
+        assertEquals( 1, CountingCompiler.INSTANCES.get() );
+    }
+
+    public void testWarmUp()
+        throws Exception
+    {
+        CompilerManager compilerManager = (CompilerManager) lookup( CompilerManager.ROLE );
+        CompilerWarmer warmer = (CompilerWarmer) compilerManager;
+
+        CountingCompiler compiler = (CountingCompiler) warmer.warmUp( "counting" ).get( 30, TimeUnit.SECONDS );
+        assertSame( compiler, compilerManager.getCompiler( "counting" ) );
+        assertEquals( 1, compiler.compilations.get() );
+
+        try
+        {
+            warmer.warmUp( "foo" );
+            fail( "Expected NoSuchCompilerException" );
+        }
+        catch ( NoSuchCompilerException e )
+        {
+            assertEquals( "foo", e.getCompilerId() );
+        }
+    }
+
+    public static class CountingCompiler
+        extends AbstractCompiler
+    {
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        final AtomicInteger compilations = new AtomicInteger();
+
+        public CountingCompiler()
+        {
+            super( CompilerOutputStyle.ONE_OUTPUT_FILE_PER_INPUT_FILE, ".java", ".class", null );
+            INSTANCES.incrementAndGet();
+        }
+
+        public CompilerResult performCompile( CompilerConfiguration configuration )
+        {
+            assertEquals( 1, getSourceFiles( configuration ).length );
+            compilations.incrementAndGet();
+            return new CompilerResult();
+        }
+
+        public String[] createCommandLine( CompilerConfiguration config )
+        {
+            return null;
+        }
+    }
 }
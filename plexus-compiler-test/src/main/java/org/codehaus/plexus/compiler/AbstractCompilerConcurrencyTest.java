@@ -0,0 +1,234 @@
+package org.codehaus.plexus.compiler;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many compilations of the same sources concurrently through one compiler instance and checks that every
+ * one of them succeeds and writes exactly the same class files as a compilation running alone. The reuse
+ * strategy rotates between the compilations, so shared and pooled compilers are exercised as well.
+ */
+public abstract class AbstractCompilerConcurrencyTest
+    extends PlexusTestCase
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private static final int CLASS_COUNT = 12;
+
+    private String roleHint;
+
+    protected AbstractCompilerConcurrencyTest( String roleHint )
+    {
+        this.roleHint = roleHint;
+    }
+
+    public void testConcurrentCompilationsAreIsolated()
+        throws Exception
+    {
+        File src = getTestFile( "target/compiler-concurrency/" + roleHint + "/src" );
+        writeSources( src );
+
+        final Compiler compiler = (Compiler) lookup( Compiler.ROLE, roleHint );
+
+        Map<String, String> reference = compile( compiler, src, -1 );
+        assertEquals( "class files of the reference compilation", CLASS_COUNT * 3, reference.size() );
+
+        ExecutorService executor = Executors.newFixedThreadPool( getThreadCount() );
+        try
+        {
+            List<Future<Map<String, String>>> futures = new ArrayList<Future<Map<String, String>>>();
+            for ( int i = 0; i < getCompilationCount(); i++ )
+            {
+                final File source = src;
+                final int run = i;
+                futures.add( executor.submit( new Callable<Map<String, String>>()
+                {
+                    public Map<String, String> call()
+                        throws Exception
+                    {
+                        return compile( compiler, source, run );
+                    }
+                } ) );
+            }
+
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                assertEquals( "class files of compilation " + i, reference, futures.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    protected int getThreadCount()
+    {
+        return Math.max( 4, Runtime.getRuntime().availableProcessors() );
+    }
+
+    protected int getCompilationCount()
+    {
+        return 200;
+    }
+
+    /**
+     * Adjusts the configuration of one compilation, the reference compilation running alone gets -1.
+     */
+    protected void configure( CompilerConfiguration configuration, int run )
+    {
+        CompilerConfiguration.CompilerReuseStrategy[] strategies = CompilerConfiguration.CompilerReuseStrategy.values();
+        configuration.setCompilerReuseStrategy( strategies[Math.max( 0, run ) % strategies.length] );
+    }
+
+    /**
+     * @return the MD5 digest of every class file written, keyed by its path relative to the output directory
+     */
+    private Map<String, String> compile( Compiler compiler, File src, int run )
+        throws Exception
+    {
+        File output = getTestFile( "target/compiler-concurrency/" + roleHint + "/run-" + run );
+        FileUtils.deleteDirectory( output );
+
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.addSourceLocation( src.getAbsolutePath() );
+        configuration.setOutputLocation( output.getAbsolutePath() );
+        configuration.setSourceVersion( "1.5" );
+        configuration.setTargetVersion( "1.5" );
+        configuration.setDebug( true );
+        configure( configuration, run );
+
+        CompilerResult result = compiler.performCompile( configuration );
+
+        for ( CompilerMessage message : result.getCompilerMessages() )
+        {
+            assertFalse( "compilation " + run + " failed: " + message, message.isError() );
+        }
+        assertTrue( "compilation " + run + " failed", result.isSuccess() );
+
+        Map<String, String> digests = new TreeMap<String, String>();
+        for ( Object name : FileUtils.getFileNames( output, "**/*.class", null, false ) )
+        {
+            String path = (String) name;
+            digests.put( path.replace( File.separatorChar, '/' ), md5( new File( output, path ) ) );
+        }
+        return digests;
+    }
+
+    private static String md5( File file )
+        throws Exception
+    {
+        byte[] hash;
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            hash = MessageDigest.getInstance( "MD5" ).digest( IOUtil.toByteArray( in ) );
+        }
+        finally
+        {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : hash )
+        {
+            hex.append( Integer.toHexString( ( b & 0xff ) | 0x100 ).substring( 1 ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Writes a chain of classes each using the previous one, with nested, anonymous and generic code so every
+     * compilation builds a non trivial symbol table.
+     */
+    private void writeSources( File src )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( src );
+        File dir = new File( src, "stress" );
+        assertTrue( dir.mkdirs() );
+
+        for ( int i = 0; i < CLASS_COUNT; i++ )
+        {
+            String previous = i == 0 ? "Object" : "Node" + ( i - 1 );
+            String source = "package stress;" + EOL +
+                "" + EOL +
+                "import java.util.ArrayList;" + EOL +
+                "import java.util.List;" + EOL +
+                "" + EOL +
+                "public class Node" + i + "<T extends Comparable<T>>" + EOL +
+                "{" + EOL +
+                "    private final List<T> values = new ArrayList<T>();" + EOL +
+                "" + EOL +
+                "    private " + previous + " previous;" + EOL +
+                "" + EOL +
+                "    public T max()" + EOL +
+                "    {" + EOL +
+                "        T max = null;" + EOL +
+                "        for ( T value : values )" + EOL +
+                "        {" + EOL +
+                "            max = max == null || value.compareTo( max ) > 0 ? value : max;" + EOL +
+                "        }" + EOL +
+                "        return max;" + EOL +
+                "    }" + EOL +
+                "" + EOL +
+                "    public Runnable task()" + EOL +
+                "    {" + EOL +
+                "        return new Runnable()" + EOL +
+                "        {" + EOL +
+                "            public void run()" + EOL +
+                "            {" + EOL +
+                "                values.clear();" + EOL +
+                "                previous = null;" + EOL +
+                "            }" + EOL +
+                "        };" + EOL +
+                "    }" + EOL +
+                "" + EOL +
+                "    public enum State" + EOL +
+                "    {" + EOL +
+                "        NEW, USED" + EOL +
+                "    }" + EOL +
+                "}";
+
+            FileUtils.fileWrite( new File( dir, "Node" + i + ".java" ).getAbsolutePath(), source );
+        }
+    }
+}
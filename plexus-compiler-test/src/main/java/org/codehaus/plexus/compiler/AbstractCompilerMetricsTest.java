@@ -0,0 +1,129 @@
+package org.codehaus.plexus.compiler;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a few sources through a {@link CompilerMetrics} which records what it is told, and checks that the
+ * compiler reports under its role hint, times the compilation and counts the files and messages it handled.
+ */
+public abstract class AbstractCompilerMetricsTest
+    extends PlexusTestCase
+{
+    private static final int CLASS_COUNT = 3;
+
+    private String roleHint;
+
+    protected AbstractCompilerMetricsTest( String roleHint )
+    {
+        this.roleHint = roleHint;
+    }
+
+    public void testReportsCompilation()
+        throws Exception
+    {
+        File src = getTestFile( "target/compiler-metrics/" + roleHint + "/src" );
+        FileUtils.deleteDirectory( src );
+        for ( int i = 0; i < CLASS_COUNT; i++ )
+        {
+            File source = new File( src, "metrics/Measured" + i + ".java" );
+            source.getParentFile().mkdirs();
+            FileUtils.fileWrite( source.getAbsolutePath(), "package metrics; public class Measured" + i
+                + " { java.util.List<String> names = new java.util.ArrayList<String>(); }" );
+        }
+        File output = getTestFile( "target/compiler-metrics/" + roleHint + "/classes" );
+        FileUtils.deleteDirectory( output );
+
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.addSourceLocation( src.getAbsolutePath() );
+        configuration.setOutputLocation( output.getAbsolutePath() );
+        configuration.setSourceVersion( "1.5" );
+        configuration.setTargetVersion( "1.5" );
+        configure( configuration );
+        RecordingMetrics metrics = new RecordingMetrics();
+        configuration.setCompilerMetrics( metrics );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, roleHint );
+        CompilerResult result = compiler.performCompile( configuration );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        assertEquals( Collections.singleton( roleHint ), metrics.compilerIds );
+        assertTrue( metrics.timers.toString(), metrics.timers.contains( CompilerMetrics.Timer.COMPILE ) );
+        assertEquals( CLASS_COUNT, metrics.get( CompilerMetrics.Counter.FILES_SCANNED ) );
+        assertTrue( metrics.get( CompilerMetrics.Counter.BYTES_READ ) > 0 );
+        assertEquals( result.getCompilerMessages().size(), metrics.get( CompilerMetrics.Counter.MESSAGES_PARSED ) );
+    }
+
+    /**
+     * Adjusts the configuration, eg to select an alternative code path of the compiler.
+     */
+    protected void configure( CompilerConfiguration configuration )
+    {
+    }
+
+    private static class RecordingMetrics
+        implements CompilerMetrics
+    {
+        private final Set<String> compilerIds = new HashSet<String>();
+
+        private final Set<Timer> timers = EnumSet.noneOf( Timer.class );
+
+        private final Map<Counter, Long> counters = new EnumMap<Counter, Long>( Counter.class );
+
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        public synchronized void time( String compilerId, Timer timer, long nanos )
+        {
+            assertTrue( nanos >= 0 );
+            compilerIds.add( compilerId );
+            timers.add( timer );
+        }
+
+        public synchronized void count( String compilerId, Counter counter, long amount )
+        {
+            compilerIds.add( compilerId );
+            counters.put( counter, get( counter ) + amount );
+        }
+
+        synchronized long get( Counter counter )
+        {
+            Long value = counters.get( counter );
+            return value == null ? 0 : value;
+        }
+    }
+}
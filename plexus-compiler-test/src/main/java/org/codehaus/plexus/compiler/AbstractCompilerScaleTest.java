@@ -0,0 +1,184 @@
+package org.codehaus.plexus.compiler;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compiles a large generated project and checks the throughput and the peak heap of the compilation against a
+ * budget. This is slow, so the build leaves the <code>*ScaleTest</code> classes out unless the <code>scale</code>
+ * profile is active; the <code>plexus.compiler.scale</code> system property gives the number of packages to generate,
+ * of {@link #DEFAULT_CLASSES_PER_PACKAGE 20} classes each. The figures measured are written to
+ * <code>target/compiler-scale</code> so they can be compared between builds.
+ * <p/>
+ * The default budgets are about a third of the throughput and twice the heap measured on a slow build machine, so they
+ * catch a compilation becoming much slower or keeping its classes alive, without failing on a loaded machine.
+ */
+public abstract class AbstractCompilerScaleTest
+    extends PlexusTestCase
+{
+    public static final String SCALE_PROPERTY = "plexus.compiler.scale";
+
+    public static final int DEFAULT_PACKAGES = 50;
+
+    public static final int DEFAULT_CLASSES_PER_PACKAGE = 20;
+
+    /**
+     * default minimum throughput, once the compiler is loaded
+     */
+    public static final double DEFAULT_MIN_CLASSES_PER_SECOND = 40;
+
+    /**
+     * default heap budget of the compilation, plus {@link #DEFAULT_HEAP_BYTES_PER_CLASS} per generated class
+     */
+    public static final long DEFAULT_BASE_HEAP_BYTES = 32L * 1024 * 1024;
+
+    public static final long DEFAULT_HEAP_BYTES_PER_CLASS = 128L * 1024;
+
+    private String roleHint;
+
+    protected AbstractCompilerScaleTest( String roleHint )
+    {
+        this.roleHint = roleHint;
+    }
+
+    public void testCompilesLargeProject()
+        throws Exception
+    {
+        int packages = Integer.getInteger( SCALE_PROPERTY, DEFAULT_PACKAGES ).intValue();
+        SyntheticProjectGenerator generator =
+            new SyntheticProjectGenerator().packages( packages ).classesPerPackage( DEFAULT_CLASSES_PER_PACKAGE );
+        configure( generator );
+
+        File src = getTestFile( "target/compiler-scale/" + roleHint + "/src" );
+        File output = getTestFile( "target/compiler-scale/" + roleHint + "/classes" );
+        generator.generate( src );
+        FileUtils.deleteDirectory( output );
+
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.addSourceLocation( src.getAbsolutePath() );
+        configuration.setOutputLocation( output.getAbsolutePath() );
+        configuration.setSourceVersion( "1.5" );
+        configuration.setTargetVersion( "1.5" );
+        configure( configuration );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, roleHint );
+
+        System.gc();
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for ( MemoryPoolMXBean pool : pools )
+        {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        CompilerResult result = compiler.performCompile( configuration );
+        long elapsed = Math.max( 1, System.nanoTime() - start );
+
+        long peakHeap = 0;
+        for ( MemoryPoolMXBean pool : pools )
+        {
+            MemoryUsage peak = pool.getPeakUsage();
+            if ( pool.getType() == MemoryType.HEAP && peak != null )
+            {
+                peakHeap += peak.getUsed();
+            }
+        }
+
+        for ( CompilerMessage message : result.getCompilerMessages() )
+        {
+            assertFalse( "compilation failed: " + message, message.isError() );
+        }
+        assertTrue( "compilation failed", result.isSuccess() );
+
+        int classCount = generator.getClassCount();
+        assertEquals( "top level class files", classCount,
+                      FileUtils.getFileNames( output, "**/C*.class", "**/*$*.class", false ).size() );
+
+        double classesPerSecond = classCount * 1000000000.0 / elapsed;
+
+        Properties baseline = new Properties();
+        baseline.setProperty( "classes", String.valueOf( classCount ) );
+        baseline.setProperty( "millis", String.valueOf( elapsed / 1000000 ) );
+        baseline.setProperty( "classesPerSecond", String.valueOf( (long) classesPerSecond ) );
+        baseline.setProperty( "peakHeapBytes", String.valueOf( peakHeap ) );
+        OutputStream out = new FileOutputStream( getTestFile( "target/compiler-scale/" + roleHint + ".properties" ) );
+        try
+        {
+            baseline.store( out, "Scale test of the " + roleHint + " compiler" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        assertTrue( "compiled " + (long) classesPerSecond + " classes per second, expected at least "
+                        + getMinClassesPerSecond(), classesPerSecond >= getMinClassesPerSecond() );
+        long maxHeapBytes = getMaxHeapBytes( classCount );
+        assertTrue( "peak heap of " + peakHeap + " bytes, expected at most " + maxHeapBytes,
+                    peakHeap <= maxHeapBytes );
+    }
+
+    /**
+     * Adjusts the shape of the generated project beyond its number of packages.
+     */
+    protected void configure( SyntheticProjectGenerator generator )
+    {
+    }
+
+    protected void configure( CompilerConfiguration configuration )
+    {
+    }
+
+    protected double getMinClassesPerSecond()
+    {
+        String budget = System.getProperty( SCALE_PROPERTY + ".minClassesPerSecond" );
+        return budget == null ? DEFAULT_MIN_CLASSES_PER_SECOND : Double.parseDouble( budget );
+    }
+
+    /**
+     * The peak heap is measured in this JVM, so it only accounts for compilers running in process.
+     *
+     * @param classCount the number of classes generated
+     */
+    protected long getMaxHeapBytes( int classCount )
+    {
+        String budget = System.getProperty( SCALE_PROPERTY + ".maxHeapBytes" );
+        return budget == null ? DEFAULT_BASE_HEAP_BYTES + DEFAULT_HEAP_BYTES_PER_CLASS * classCount
+            : Long.parseLong( budget );
+    }
+}
@@ -69,6 +69,11 @@ public abstract class AbstractCompilerTest
         this.forceJavacCompilerUse = forceJavacCompilerUse;
     }
 
+    protected boolean isForceJavacCompilerUse()
+    {
+        return forceJavacCompilerUse;
+    }
+
     protected List<String> getClasspath()
         throws Exception
     {
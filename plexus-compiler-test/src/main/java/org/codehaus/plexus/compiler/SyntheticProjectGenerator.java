@@ -0,0 +1,206 @@
+package org.codehaus.plexus.compiler;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2005, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the sources of a project of the given size: packages of classes, each class depending on a number of the
+ * classes generated before it and using generic types nested to the given depth. The same settings always generate
+ * the same sources, so that compilations of them can be compared over time.
+ */
+public class SyntheticProjectGenerator
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private int packages = 10;
+
+    private int classesPerPackage = 20;
+
+    private int fanOut = 3;
+
+    private int genericsDepth = 3;
+
+    private long seed;
+
+    public SyntheticProjectGenerator packages( int packages )
+    {
+        this.packages = packages;
+        return this;
+    }
+
+    public SyntheticProjectGenerator classesPerPackage( int classesPerPackage )
+    {
+        this.classesPerPackage = classesPerPackage;
+        return this;
+    }
+
+    /**
+     * Sets the number of classes each class depends on.
+     */
+    public SyntheticProjectGenerator fanOut( int fanOut )
+    {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Sets how deep generic types are nested, both in field types and in the bounds of the type parameters of a method.
+     */
+    public SyntheticProjectGenerator genericsDepth( int genericsDepth )
+    {
+        this.genericsDepth = genericsDepth;
+        return this;
+    }
+
+    public SyntheticProjectGenerator seed( long seed )
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getClassCount()
+    {
+        return packages * classesPerPackage;
+    }
+
+    /**
+     * Writes the sources under the given directory, deleting what it contained.
+     *
+     * @return the source files written
+     */
+    public List<File> generate( File directory )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( directory );
+        Random random = new Random( seed );
+        List<File> files = new ArrayList<File>( getClassCount() );
+        for ( int p = 0; p < packages; p++ )
+        {
+            File packageDirectory = new File( directory, "generated/p" + p );
+            packageDirectory.mkdirs();
+            for ( int c = 0; c < classesPerPackage; c++ )
+            {
+                File file = new File( packageDirectory, "C" + c + ".java" );
+                FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", generateClass( p, c, random ) );
+                files.add( file );
+            }
+        }
+        return files;
+    }
+
+    private String generateClass( int p, int c, Random random )
+    {
+        int index = p * classesPerPackage + c;
+        String nested = nestedType( genericsDepth );
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( "package generated.p" ).append( p ).append( ';' ).append( EOL ).append( EOL );
+        sb.append( "import java.util.ArrayList;" ).append( EOL );
+        sb.append( "import java.util.HashMap;" ).append( EOL );
+        sb.append( "import java.util.List;" ).append( EOL );
+        sb.append( "import java.util.Map;" ).append( EOL ).append( EOL );
+        sb.append( "public class C" ).append( c ).append( "<T extends Comparable<T>>" ).append( EOL );
+        sb.append( '{' ).append( EOL );
+        sb.append( "    private final List<T> values = new ArrayList<T>();" ).append( EOL ).append( EOL );
+        sb.append( "    private final Map<String, " ).append( nested ).append( "> nested = new HashMap<String, " );
+        sb.append( nested ).append( ">();" ).append( EOL );
+
+        List<String> dependencies = new ArrayList<String>();
+        for ( int i = 0; i < fanOut && index > 0; i++ )
+        {
+            int dependency = random.nextInt( index );
+            String type = "generated.p" + ( dependency / classesPerPackage ) + ".C" + ( dependency % classesPerPackage );
+            sb.append( EOL ).append( "    private " ).append( type ).append( "<String> dependency" ).append( i );
+            sb.append( " = new " ).append( type ).append( "<String>();" ).append( EOL );
+            dependencies.add( "dependency" + i );
+        }
+
+        sb.append( EOL ).append( "    public " ).append( typeParameters( genericsDepth ) ).append( " A" );
+        sb.append( genericsDepth ).append( " deep( A" ).append( genericsDepth ).append( " value )" ).append( EOL );
+        sb.append( "    {" ).append( EOL );
+        sb.append( "        return value;" ).append( EOL );
+        sb.append( "    }" ).append( EOL ).append( EOL );
+
+        sb.append( "    public int work( int seed )" ).append( EOL );
+        sb.append( "    {" ).append( EOL );
+        sb.append( "        int result = seed + nested.size();" ).append( EOL );
+        for ( String dependency : dependencies )
+        {
+            sb.append( "        result += " ).append( dependency ).append( ".work( result );" ).append( EOL );
+        }
+        sb.append( "        for ( T value : values )" ).append( EOL );
+        sb.append( "        {" ).append( EOL );
+        sb.append( "            result = 31 * result + value.hashCode();" ).append( EOL );
+        sb.append( "        }" ).append( EOL );
+        sb.append( "        return result;" ).append( EOL );
+        sb.append( "    }" ).append( EOL ).append( EOL );
+
+        sb.append( "    public Runnable task()" ).append( EOL );
+        sb.append( "    {" ).append( EOL );
+        sb.append( "        return new Runnable()" ).append( EOL );
+        sb.append( "        {" ).append( EOL );
+        sb.append( "            public void run()" ).append( EOL );
+        sb.append( "            {" ).append( EOL );
+        sb.append( "                values.clear();" ).append( EOL );
+        sb.append( "            }" ).append( EOL );
+        sb.append( "        };" ).append( EOL );
+        sb.append( "    }" ).append( EOL );
+        sb.append( '}' ).append( EOL );
+        return sb.toString();
+    }
+
+    /**
+     * @return <code>List&lt;Map&lt;String, List&lt;T&gt;&gt;&gt;</code> for a depth of 2
+     */
+    private static String nestedType( int depth )
+    {
+        String type = "T";
+        for ( int i = 0; i < depth; i++ )
+        {
+            type = i % 2 == 0 ? "List<" + type + ">" : "Map<String, " + type + ">";
+        }
+        return type;
+    }
+
+    /**
+     * @return <code>&lt;A0 extends Comparable&lt;A0&gt;, A1 extends List&lt;A0&gt;&gt;</code> for a depth of 1
+     */
+    private static String typeParameters( int depth )
+    {
+        StringBuilder sb = new StringBuilder( "<A0 extends Comparable<A0>" );
+        for ( int i = 1; i <= depth; i++ )
+        {
+            sb.append( ", A" ).append( i ).append( " extends List<A" ).append( i - 1 ).append( '>' );
+        }
+        return sb.append( '>' ).toString();
+    }
+}
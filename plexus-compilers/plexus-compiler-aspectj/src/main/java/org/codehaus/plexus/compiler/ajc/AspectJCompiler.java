@@ -4,6 +4,7 @@ import org.aspectj.ajdt.internal.core.builder.AjBuildConfig;
 import org.aspectj.ajdt.internal.core.builder.AjBuildManager;
 import org.aspectj.bridge.AbortException;
 import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.IProgressListener;
 import org.aspectj.bridge.ISourceLocation;
 import org.aspectj.bridge.MessageHandler;
 import org.aspectj.org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
@@ -11,8 +12,11 @@ import org.codehaus.plexus.compiler.AbstractCompiler;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.HeapAdmissionController;
 
 import java.io.File;
 import java.io.IOException;
@@ -234,9 +238,16 @@ public class AspectJCompiler
         super( CompilerOutputStyle.ONE_OUTPUT_FILE_PER_INPUT_FILE, ".java", ".class", null );
     }
 
+    protected String getCompilerId()
+    {
+        return "aspectj";
+    }
+
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
     {
+        rejectInMemorySources( config, getCompilerId() );
+
         File destinationDir = new File( config.getOutputLocation() );
 
         if ( !destinationDir.exists() )
@@ -244,7 +255,7 @@ public class AspectJCompiler
             destinationDir.mkdirs();
         }
 
-        String[] sourceFiles = getSourceFiles( config );
+        String[] sourceFiles = scanSourceFiles( config );
 
         if ( sourceFiles.length == 0 )
         {
@@ -255,18 +266,30 @@ public class AspectJCompiler
             "Compiling " + sourceFiles.length + " " + "source file" + ( sourceFiles.length == 1 ? "" : "s" ) + " to "
                 + destinationDir.getAbsolutePath() );
 
+        countSourceBytes( config, sourceFiles );
+
         //        String[] args = buildCompilerArguments( config, sourceFiles );
-        AjBuildConfig buildConfig = buildCompilerConfig( config );
-        return new CompilerResult().compilerMessages( compileInProcess( buildConfig ) );
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
+        AjBuildConfig buildConfig = buildCompilerConfig( config, sourceFiles );
+        span.end();
+
+        HeapAdmissionController.Permit permit = admit( config, sourceFiles );
+        try
+        {
+            return compileInProcess( config, buildConfig );
+        }
+        finally
+        {
+            release( permit );
+        }
     }
 
-    private AjBuildConfig buildCompilerConfig( CompilerConfiguration config )
+    private AjBuildConfig buildCompilerConfig( CompilerConfiguration config, String[] files )
         throws CompilerException
     {
         AjBuildConfig buildConfig = new AjBuildConfig();
         buildConfig.setIncrementalMode( false );
 
-        String[] files = getSourceFiles( config );
         if ( files != null )
         {
             buildConfig.setFiles( buildFileList( Arrays.asList( files ) ) );
@@ -382,17 +405,26 @@ public class AspectJCompiler
         return buildConfig;
     }
 
-    private List<CompilerMessage> compileInProcess( AjBuildConfig buildConfig )
+    private CompilerResult compileInProcess( CompilerConfiguration config, AjBuildConfig buildConfig )
         throws CompilerException
     {
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.STARTUP );
 
-        MessageHandler messageHandler = new MessageHandler();
+        ErrorCountingMessageHandler messageHandler = new ErrorCountingMessageHandler( config );
 
         AjBuildManager manager = new AjBuildManager( messageHandler );
 
+        manager.setProgressListener( new CancellationProgressListener( messageHandler ) );
+
+        span.end();
+
+        checkCancelled();
+
         try
         {
+            span = startTimer( config, CompilerMetrics.Timer.COMPILE );
             manager.batchBuild( buildConfig, messageHandler );
+            span.end();
         }
         catch ( AbortException e )
         {
@@ -403,6 +435,8 @@ public class AspectJCompiler
             throw new CompilerException( "Unknown error while compiling", e );
         }
 
+        checkCancelled();
+
         // We need the location of the maven so we have a couple of options
         // here.
         //
@@ -412,6 +446,8 @@ public class AspectJCompiler
         // property or we
         // could pass in a set of parameters in a Map.
 
+        span = startTimer( config, CompilerMetrics.Timer.OUTPUT_PARSING );
+
         boolean errors = messageHandler.hasAnyMessage( IMessage.ERROR, true );
 
         List<CompilerMessage> messages = new ArrayList<CompilerMessage>();
@@ -439,7 +475,73 @@ public class AspectJCompiler
             }
         }
 
-        return messages;
+        span.end();
+        count( config, CompilerMetrics.Counter.MESSAGES_PARSED, messages.size() );
+
+        return new CompilerResult().compilerMessages( messages ).stoppedEarly( messageHandler.isMaxErrorsReached() );
+    }
+
+    /**
+     * Counts the errors reported by ajc, to stop once the {@link CompilerConfiguration#getMaxErrors() maximum} has
+     * been reached.
+     */
+    private static class ErrorCountingMessageHandler
+        extends MessageHandler
+    {
+        private final CompilerConfiguration config;
+
+        private int errors;
+
+        ErrorCountingMessageHandler( CompilerConfiguration config )
+        {
+            this.config = config;
+        }
+
+        public boolean handleMessage( IMessage message )
+        {
+            if ( message.isError() )
+            {
+                errors++;
+            }
+            return super.handleMessage( message );
+        }
+
+        boolean isMaxErrorsReached()
+        {
+            return config.isMaxErrorsReached( errors );
+        }
+    }
+
+    /**
+     * Makes ajc abort the compilation once the compiling thread has been interrupted or the maximum number of errors
+     * has been reached.
+     */
+    private static class CancellationProgressListener
+        implements IProgressListener
+    {
+        private final ErrorCountingMessageHandler messageHandler;
+
+        CancellationProgressListener( ErrorCountingMessageHandler messageHandler )
+        {
+            this.messageHandler = messageHandler;
+        }
+
+        public void setText( String text )
+        {
+        }
+
+        public void setProgress( double percentDone )
+        {
+        }
+
+        public void setCancelledRequested( boolean cancelRequested )
+        {
+        }
+
+        public boolean isCancelledRequested()
+        {
+            return Thread.currentThread().isInterrupted() || messageHandler.isMaxErrorsReached();
+        }
     }
 
     private void checkForAspectJRT( List<String> cp )
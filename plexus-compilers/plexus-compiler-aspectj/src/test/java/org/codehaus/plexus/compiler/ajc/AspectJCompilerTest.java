@@ -3,9 +3,18 @@ package org.codehaus.plexus.compiler.ajc;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.codehaus.plexus.compiler.AbstractCompilerTest;
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerException;
+import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * @author <a href="mailto:jason@plexus.org">Jason van Zyl</a>
@@ -45,4 +54,54 @@ public class AspectJCompilerTest
         return cp;
     }
 
+    public void testRejectsInMemorySources()
+        throws Exception
+    {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/in-memory-classes" );
+        configuration.addInMemorySource( new InMemorySource( "gen/Generated.java", "package gen; class Generated { }" ) );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, getRoleHint() );
+        try
+        {
+            compiler.performCompile( configuration );
+            fail( "in-memory sources should have been rejected" );
+        }
+        catch ( CompilerException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "gen/Generated.java" ) );
+        }
+    }
+
+    public void testMaxErrors()
+        throws Exception
+    {
+        File src = new File( getBasedir(), "target/" + getRoleHint() + "/max-errors-src" );
+        FileUtils.deleteDirectory( src );
+        new File( src, "broken" ).mkdirs();
+        for ( String name : new String[]{ "First", "Second", "Third" } )
+        {
+            FileUtils.fileWrite( new File( src, "broken/" + name + ".java" ).getAbsolutePath(),
+                                 "package broken; class " + name + " { int i = \"\"; }" );
+        }
+
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-max-errors" );
+        configuration.setClasspathEntries( getClasspath() );
+        configuration.addSourceLocation( src.getAbsolutePath() );
+        configuration.setSourceVersion( "1.5" );
+        configuration.setMaxErrors( 1 );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( configuration );
+
+        assertTrue( result.isStoppedEarly() );
+        // ajc reports all the errors of a unit, but compiles no more units once the maximum has been reached
+        Set<String> files = new HashSet<String>();
+        for ( CompilerMessage message : result.getCompilerMessages() )
+        {
+            files.add( new File( message.getFile() ).getName() );
+        }
+        assertEquals( result.getCompilerMessages().toString(), 1, files.size() );
+    }
+
 }
@@ -17,16 +17,20 @@ package org.codehaus.plexus.compiler.csharp;
  */
 
 import org.codehaus.plexus.compiler.AbstractCompiler;
+import org.codehaus.plexus.compiler.CompilerCancelledException;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
@@ -75,6 +79,11 @@ public class CSharpCompiler
     // Compiler Implementation
     // ----------------------------------------------------------------------
 
+    protected String getCompilerId()
+    {
+        return "csharp";
+    }
+
     public boolean canUpdateTarget( CompilerConfiguration configuration )
         throws CompilerException
     {
@@ -90,6 +99,8 @@ public class CSharpCompiler
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
     {
+        rejectInMemorySources( config, getCompilerId() );
+
         File destinationDir = new File( config.getOutputLocation() );
 
         if ( !destinationDir.exists() )
@@ -99,25 +110,35 @@ public class CSharpCompiler
 
         config.setSourceFiles( null );
 
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.SCANNING );
+
         String[] sourceFiles = CSharpCompiler.getSourceFiles( config );
 
+        span.end();
+        count( config, CompilerMetrics.Counter.FILES_SCANNED, sourceFiles.length );
+
         if ( sourceFiles.length == 0 )
         {
             return new CompilerResult().success( true );
         }
 
+        countSourceBytes( config, sourceFiles );
+
         System.out.println( "Compiling " + sourceFiles.length + " " + "source file" +
                                 ( sourceFiles.length == 1 ? "" : "s" ) + " to " + destinationDir.getAbsolutePath() );
 
+        span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
+
         String[] args = buildCompilerArguments( config, sourceFiles );
 
+        span.end();
+
         List<CompilerMessage> messages;
 
         if ( config.isFork() )
         {
-            messages =
-                compileOutOfProcess( config.getWorkingDirectory(), config.getBuildDirectory(), findExecutable( config ),
-                                     args );
+            messages = compileOutOfProcess( config, config.getWorkingDirectory(), config.getBuildDirectory(),
+                                            findExecutable( config ), args );
         }
         else
         {
@@ -395,8 +416,8 @@ Options can be of the form -option or /option
     }
 
     @SuppressWarnings( "deprecation" )
-    private List<CompilerMessage> compileOutOfProcess( File workingDirectory, File target, String executable,
-                                                       String[] args )
+    private List<CompilerMessage> compileOutOfProcess( CompilerConfiguration config, File workingDirectory,
+                                                       File target, String executable, String[] args )
         throws CompilerException
     {
         // ----------------------------------------------------------------------
@@ -451,9 +472,22 @@ Options can be of the form -option or /option
 
         try
         {
+            CompilerSpan span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+            CompilerSpan forkWait = startTimer( config, CompilerMetrics.Timer.FORK_WAIT );
             returnCode = CommandLineUtils.executeCommandLine( cli, out, err );
+            forkWait.end();
+            span.end();
 
+            span = startTimer( config, CompilerMetrics.Timer.OUTPUT_PARSING );
             messages = parseCompilerOutput( new BufferedReader( new StringReader( stringWriter.toString() ) ) );
+            span.end();
+            count( config, CompilerMetrics.Counter.MESSAGES_PARSED, messages.size() );
+        }
+        catch ( CommandLineTimeOutException e )
+        {
+            // the forked compiler has been destroyed because the compiling thread got interrupted
+            Thread.currentThread().interrupt();
+            throw new CompilerCancelledException( "The compilation has been cancelled.", e );
         }
         catch ( CommandLineException e )
         {
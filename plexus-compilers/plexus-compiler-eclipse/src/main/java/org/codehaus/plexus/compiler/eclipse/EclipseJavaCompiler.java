@@ -28,11 +28,18 @@ import org.codehaus.plexus.compiler.AbstractCompiler;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMessageStore;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.HeapAdmissionController;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.compiler.UpToDateCheck;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.eclipse.jdt.core.compiler.CompilationProgress;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.internal.compiler.ClassFile;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
@@ -62,7 +69,6 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.LinkedHashMap;
@@ -86,10 +92,22 @@ public class EclipseJavaCompiler
     // Compiler Implementation
     // ----------------------------------------------------------------------
 
+    protected String getCompilerId()
+    {
+        return "eclipse";
+    }
+
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
     {
-        List<CompilerMessage> errors = new LinkedList<CompilerMessage>();
+        UpToDateCheck upToDate = UpToDateCheck.open( config, getCompilerId() );
+
+        if ( upToDate != null && upToDate.isUpToDate() )
+        {
+            return upToDate.getResult();
+        }
+
+        CompilerMessageStore errors = new CompilerMessageStore( config.getMaxWarningsPerCode() );
 
         List<String> classpathEntries = config.getClasspathEntries();
 
@@ -123,6 +141,8 @@ public class EclipseJavaCompiler
         // Build settings from configuration
         // ----------------------------------------------------------------------
 
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
+
         Map<String, String> settings = new HashMap<String, String>();
 
         if ( config.isDebug() )
@@ -189,12 +209,18 @@ public class EclipseJavaCompiler
             settings.remove( "-properties" );
         }
 
+        span.end();
+
         IProblemFactory problemFactory = new DefaultProblemFactory( Locale.getDefault() );
 
-        ICompilerRequestor requestor = new EclipseCompilerICompilerRequestor( config.getOutputLocation(), errors );
+        EclipseCompilerICompilerRequestor requestor = new EclipseCompilerICompilerRequestor( config, errors );
 
         List<CompilationUnit> compilationUnits = new ArrayList<CompilationUnit>();
 
+        List<String> sourceFiles = new ArrayList<String>();
+
+        span = startTimer( config, CompilerMetrics.Timer.SCANNING );
+
         for ( String sourceRoot : config.getSourceLocations() )
         {
             // annotations directory does not always exist and the below scanner fails on non existing directories
@@ -209,22 +235,60 @@ public class EclipseJavaCompiler
                                                                 config.getSourceEncoding() );
 
                     compilationUnits.add( unit );
+                    sourceFiles.add( source );
                 }
             }
         }
 
+        span.end( sourceFiles.size() );
+        count( config, CompilerMetrics.Counter.FILES_SCANNED, sourceFiles.size() );
+        countSourceBytes( config, sourceFiles.toArray( new String[sourceFiles.size()] ) );
+
+        if ( upToDate != null )
+        {
+            upToDate.stampSources( sourceFiles.toArray( new String[sourceFiles.size()] ) );
+        }
+
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            compilationUnits.add( new CompilationUnit( source, errors ) );
+            sourceFiles.add( source.getPath() );
+        }
+
         // ----------------------------------------------------------------------
         // Compile!
         // ----------------------------------------------------------------------
 
+        checkCancelled();
+
+        span = startTimer( config, CompilerMetrics.Timer.STARTUP );
         CompilerOptions options = new CompilerOptions( settings );
-        Compiler compiler = new Compiler( env, policy, options, requestor, problemFactory );
+        Compiler compiler = new Compiler( env, policy, options, requestor, problemFactory, null,
+                                          new CancellationProgress( requestor ) );
+        span.end();
 
         ICompilationUnit[] units = compilationUnits.toArray( new ICompilationUnit[compilationUnits.size()] );
 
-        compiler.compile( units );
+        HeapAdmissionController.Permit permit =
+            admit( config, sourceFiles.toArray( new String[sourceFiles.size()] ) );
+        try
+        {
+            span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+            compiler.compile( units );
+            // includes the problem conversion and class writing of the requestor, also reported on their own
+            span.end( units.length );
+        }
+        finally
+        {
+            release( permit );
+        }
+
+        checkCancelled();
+
+        count( config, CompilerMetrics.Counter.MESSAGES_PARSED, errors.size() + errors.getDroppedCount() );
 
-        CompilerResult compilerResult = new CompilerResult().compilerMessages( errors );
+        CompilerResult compilerResult =
+            new CompilerResult().compilerMessages( errors ).stoppedEarly( requestor.isMaxErrorsReached() );
 
         for ( CompilerMessage compilerMessage : errors )
         {
@@ -235,6 +299,11 @@ public class EclipseJavaCompiler
             }
         }
 
+        if ( upToDate != null )
+        {
+            upToDate.store( compilerResult );
+        }
+
         return compilerResult;
     }
 
@@ -359,24 +428,38 @@ public class EclipseJavaCompiler
 
         private final List<CompilerMessage> errors;
 
+        private final InMemorySource inMemorySource;
+
         CompilationUnit( String sourceFile, String className, List<CompilerMessage> errors )
         {
             this( sourceFile, className, errors, null );
         }
 
         CompilationUnit( String sourceFile, String className, List<CompilerMessage> errors, String sourceEncoding )
+        {
+            this( sourceFile, className, errors, sourceEncoding, null );
+        }
+
+        CompilationUnit( InMemorySource inMemorySource, List<CompilerMessage> errors )
+        {
+            this( inMemorySource.getPath(), inMemorySource.getClassName(), errors, null, inMemorySource );
+        }
+
+        private CompilationUnit( String sourceFile, String className, List<CompilerMessage> errors,
+                                 String sourceEncoding, InMemorySource inMemorySource )
         {
             this.className = className;
             this.sourceFile = sourceFile;
             this.errors = errors;
             this.sourceEncoding = sourceEncoding;
+            this.inMemorySource = inMemorySource;
         }
 
         public char[] getFileName()
         {
             String fileName = sourceFile;
 
-            int lastSeparator = fileName.lastIndexOf( File.separatorChar );
+            int lastSeparator = Math.max( fileName.lastIndexOf( File.separatorChar ), fileName.lastIndexOf( '/' ) );
 
             if ( lastSeparator > 0 )
             {
@@ -395,6 +478,10 @@ public class EclipseJavaCompiler
         {
             try
             {
+                if ( inMemorySource != null )
+                {
+                    return inMemorySource.getCharContent().toCharArray();
+                }
                 return FileUtils.fileRead( sourceFile, sourceEncoding ).toCharArray();
             }
             catch ( FileNotFoundException e )
@@ -445,6 +532,42 @@ public class EclipseJavaCompiler
         }
     }
 
+    /**
+     * Makes ECJ abort the compilation once the compiling thread has been interrupted or the
+     * {@link CompilerConfiguration#getMaxErrors() maximum number of errors} has been reported.
+     */
+    private static class CancellationProgress
+        extends CompilationProgress
+    {
+        private final EclipseCompilerICompilerRequestor requestor;
+
+        CancellationProgress( EclipseCompilerICompilerRequestor requestor )
+        {
+            this.requestor = requestor;
+        }
+
+        public void begin( int remainingWork )
+        {
+        }
+
+        public void done()
+        {
+        }
+
+        public boolean isCanceled()
+        {
+            return Thread.currentThread().isInterrupted() || requestor.isMaxErrorsReached();
+        }
+
+        public void setTaskName( String name )
+        {
+        }
+
+        public void worked( int workIncrement, int remainingWork )
+        {
+        }
+    }
+
     private class EclipseCompilerINameEnvironment
         implements INameEnvironment
     {
@@ -593,20 +716,36 @@ public class EclipseJavaCompiler
     private class EclipseCompilerICompilerRequestor
         implements ICompilerRequestor
     {
+        private CompilerConfiguration config;
+
         private String destinationDirectory;
 
-        private List<CompilerMessage> errors;
+        private CompilerMessageStore errors;
 
-        public EclipseCompilerICompilerRequestor( String destinationDirectory, List<CompilerMessage> errors )
+        private int errorCount;
+
+        public EclipseCompilerICompilerRequestor( CompilerConfiguration config, CompilerMessageStore errors )
         {
-            this.destinationDirectory = destinationDirectory;
+            this.config = config;
+            this.destinationDirectory = config.getOutputLocation();
             this.errors = errors;
         }
 
+        /**
+         * @return whether the compiled units reported the {@link CompilerConfiguration#getMaxErrors() maximum number
+         *         of errors}
+         */
+        boolean isMaxErrorsReached()
+        {
+            return config.isMaxErrorsReached( errorCount );
+        }
+
         public void acceptResult( CompilationResult result )
         {
             boolean hasErrors = false;
 
+            CompilerSpan span = startTimer( config, CompilerMetrics.Timer.OUTPUT_PARSING );
+
             if ( result.hasProblems() )
             {
                 IProblem[] problems = result.getProblems();
@@ -617,18 +756,23 @@ public class EclipseJavaCompiler
 
                     if ( problem.isWarning() )
                     {
-                        errors.add( handleWarning( name, problem ) );
+                        errors.add( handleWarning( name, problem ), String.valueOf( problem.getID() ) );
                     }
                     else
                     {
                         hasErrors = true;
+                        errorCount++;
                         errors.add( handleError( name, problem.getSourceLineNumber(), -1, problem.getMessage() ) );
                     }
                 }
             }
 
+            span.end();
+
             if ( !hasErrors )
             {
+                span = startTimer( config, CompilerMetrics.Timer.CLASS_WRITING );
+
                 ClassFile[] classFiles = result.getClassFiles();
 
                 for ( ClassFile classFile : classFiles )
@@ -674,6 +818,9 @@ public class EclipseJavaCompiler
                         IOUtil.close( fout );
                     }
                 }
+
+                span.end();
+                count( config, CompilerMetrics.Counter.CLASSES_WRITTEN, classFiles.length );
             }
         }
 
@@ -24,6 +24,7 @@ package org.codehaus.plexus.compiler.eclipse;
  * SOFTWARE.
  */
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
@@ -31,6 +32,9 @@ import java.util.Map;
 import org.codehaus.plexus.compiler.AbstractCompilerTest;
 import org.codehaus.plexus.compiler.Compiler;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * @author <a href="mailto:jason@plexus.org">Jason van Zyl</a>
@@ -101,6 +105,55 @@ public class EclipseCompilerTest
 
     }
 
+    public void testInMemorySources()
+        throws Exception
+    {
+        File src = getTestFile( "target/" + getRoleHint() + "/in-memory-src" );
+        FileUtils.deleteDirectory( src );
+        assertTrue( new File( src, "disk" ).mkdirs() );
+        FileUtils.fileWrite( new File( src, "disk/User.java" ).getAbsolutePath(),
+                             "package disk; public class User { gen.Generated g = new gen.Generated(); }" );
+
+        CompilerConfiguration compilerConfig = createMinimalCompilerConfig();
+        compilerConfig.addSourceLocation( src.getAbsolutePath() );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.addInMemorySource(
+            new InMemorySource( "gen/Generated.java", "package gen; public class Generated { Helper h; }" ) );
+        compilerConfig.addInMemorySource( new InMemorySource( "gen/Helper.java", "package gen; class Helper {}" ) );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, getRoleHint() );
+        CompilerResult result = compiler.performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        for ( String name : new String[]{ "disk/User.class", "gen/Generated.class", "gen/Helper.class" } )
+        {
+            assertTrue( name, new File( compilerConfig.getOutputLocation(), name ).isFile() );
+        }
+        assertFalse( new File( src, "gen" ).exists() );
+    }
+
+    public void testMaxErrors()
+        throws Exception
+    {
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-max-errors" );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        for ( String name : new String[]{ "First", "Second", "Third" } )
+        {
+            compilerConfig.addInMemorySource(
+                new InMemorySource( "broken/" + name + ".java", "package broken; class " + name + " { int i = \"\"; }" ) );
+        }
+        compilerConfig.setMaxErrors( 1 );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+
+        assertFalse( result.isSuccess() );
+        assertTrue( result.isStoppedEarly() );
+        assertEquals( result.getCompilerMessages().toString(), 1, result.getCompilerMessages().size() );
+    }
+
     private CompilerConfiguration createMinimalCompilerConfig()
     {
         CompilerConfiguration compilerConfig = new CompilerConfiguration();
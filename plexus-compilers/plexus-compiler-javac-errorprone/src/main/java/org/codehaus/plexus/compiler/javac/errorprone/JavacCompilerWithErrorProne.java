@@ -21,14 +21,19 @@ import org.codehaus.plexus.compiler.AbstractCompiler;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.HeapAdmissionController;
 import org.codehaus.plexus.compiler.javac.JavacCompiler;
+import org.codehaus.plexus.util.FileUtils;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -58,6 +63,11 @@ public class JavacCompilerWithErrorProne
         return new String[0];
     }
 
+    protected String getCompilerId()
+    {
+        return "javac-with-errorprone";
+    }
+
     @Override
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
@@ -69,31 +79,103 @@ public class JavacCompilerWithErrorProne
             destinationDir.mkdirs();
         }
 
-        String[] sourceFiles = getSourceFiles( config );
+        String[] sourceFiles = scanSourceFiles( config );
 
-        if ( ( sourceFiles == null ) || ( sourceFiles.length == 0 ) )
+        int inMemorySources = config.getInMemorySources().size();
+
+        if ( ( ( sourceFiles == null ) || ( sourceFiles.length == 0 ) ) && inMemorySources == 0 )
         {
             return new CompilerResult();
         }
 
+        if ( sourceFiles == null )
+        {
+            sourceFiles = new String[0];
+        }
+
         if ( ( getLogger() != null ) && getLogger().isInfoEnabled() )
         {
-            getLogger().info( "Compiling " + sourceFiles.length + " " //
+            int count = sourceFiles.length + inMemorySources;
+            getLogger().info( "Compiling " + count + " " //
                                   + "source file" //
-                                  + ( sourceFiles.length == 1 ? "" : "s" ) //
+                                  + ( count == 1 ? "" : "s" ) //
                                   + " to " + destinationDir.getAbsolutePath() );
         }
 
+        countSourceBytes( config, sourceFiles );
+
+        File inMemorySourceDirectory = null;
+
+        if ( inMemorySources > 0 )
+        {
+            // error-prone reads its sources from disk
+            inMemorySourceDirectory = JavacCompiler.createTempDirectory();
+            String[] written = writeInMemorySources( config, inMemorySourceDirectory );
+            String[] all = new String[sourceFiles.length + written.length];
+            System.arraycopy( sourceFiles, 0, all, 0, sourceFiles.length );
+            System.arraycopy( written, 0, all, sourceFiles.length, written.length );
+            sourceFiles = all;
+        }
+
+        try
+        {
+            return compile( config, sourceFiles );
+        }
+        finally
+        {
+            if ( inMemorySourceDirectory != null )
+            {
+                try
+                {
+                    FileUtils.deleteDirectory( inMemorySourceDirectory );
+                }
+                catch ( IOException e )
+                {
+                    if ( getLogger() != null )
+                    {
+                        getLogger().warn( "Unable to delete " + inMemorySourceDirectory, e );
+                    }
+                }
+            }
+        }
+    }
+
+    private CompilerResult compile( CompilerConfiguration config, String[] sourceFiles )
+        throws CompilerException
+    {
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
         String[] args = JavacCompiler.buildCompilerArguments( config, sourceFiles );
+        span.end();
+
+        checkCancelled();
 
+        CompilerResult result;
+        HeapAdmissionController.Permit permit = admit( config, sourceFiles );
         try
         {
-            return (CompilerResult) getInvoker().invoke( null, new Object[]{ args } );
+            span = startTimer( config, CompilerMetrics.Timer.STARTUP );
+            Method invoker = getInvoker();
+            span.end();
+
+            span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+            result = (CompilerResult) invoker.invoke( null, new Object[]{ args } );
+            // the diagnostics are converted as part of the compilation
+            span.end();
+            count( config, CompilerMetrics.Counter.MESSAGES_PARSED, result.getCompilerMessages().size() );
         }
         catch ( Exception e )
         {
             throw new CompilerException( e.getMessage(), e );
         }
+        finally
+        {
+            release( permit );
+        }
+
+        // error-prone runs javac through its own entry point which cannot be stopped
+        checkCancelled();
+
+        return result;
     }
 
     private static class NonDelegatingClassLoader
@@ -138,7 +220,10 @@ public class JavacCompilerWithErrorProne
 
     private Method invokerMethod;
 
-    private Method getInvoker()
+    /**
+     * Synchronized so concurrent compilations share a single error-prone classloader.
+     */
+    private synchronized Method getInvoker()
         throws CompilerException
     {
         if ( invokerMethod == null )
@@ -0,0 +1,543 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerException;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps the files generated by the annotation processors of a compilation, to replay them instead of running the
+ * processors again when their inputs did not change.
+ * <p/>
+ * The key hashes the javac version, the processor path, the processors and their <code>-A</code> options, the
+ * content of the sources and the size and modification time of the classpath entries. The output location and the
+ * generated sources directory are left out of it, as they hold the output of the compilation itself. Sources are
+ * keyed by content rather than by API as their API is only known once they are compiled.
+ * <p/>
+ * The cache directory holds the key and the generated files, under <code>sources</code> for the generated sources
+ * directory and under <code>classes</code> for the output location. The key is written last, after a successful
+ * compilation.
+ *
+ * @since 2.5
+ */
+final class AnnotationProcessorCache
+{
+    private static final String KEY = "key";
+
+    private static final String SOURCES = "sources/";
+
+    private static final String CLASSES = "classes/";
+
+    private final File directory;
+
+    private final File generatedSourcesDirectory;
+
+    private final Charset charset;
+
+    private final String key;
+
+    private final boolean hit;
+
+    /**
+     * The files created by the processors, by path in the cache directory.
+     */
+    private final Map<String, byte[]> generated = new TreeMap<String, byte[]>();
+
+    private AnnotationProcessorCache( File directory, File generatedSourcesDirectory, Charset charset, String key )
+        throws IOException
+    {
+        this.directory = directory;
+        this.generatedSourcesDirectory = generatedSourcesDirectory;
+        this.charset = charset;
+        this.key = key;
+        File keyFile = new File( directory, KEY );
+        this.hit = keyFile.isFile() && key.equals( FileUtils.fileRead( keyFile, "UTF-8" ) );
+    }
+
+    /**
+     * @return the cache, or <code>null</code> if the configuration does not enable it
+     */
+    static AnnotationProcessorCache open( CompilerConfiguration config, String[] sourceFiles, Charset charset )
+        throws CompilerException
+    {
+        if ( config.getAnnotationProcessorCacheDirectory() == null || config.getGeneratedSourcesDirectory() == null
+            || "none".equals( config.getProc() ) )
+        {
+            return null;
+        }
+        try
+        {
+            return new AnnotationProcessorCache( config.getAnnotationProcessorCacheDirectory(),
+                                                 config.getGeneratedSourcesDirectory(), charset,
+                                                 computeKey( config, sourceFiles ) );
+        }
+        catch ( IOException e )
+        {
+            throw new CompilerException( "Unable to read the annotation processor cache", e );
+        }
+    }
+
+    /**
+     * @return whether the processors can be skipped and their output {@link #replay replayed}
+     */
+    boolean isHit()
+    {
+        return hit;
+    }
+
+    /**
+     * Writes the cached files which differ from the ones in place and adds the generated sources to compile.
+     */
+    void replay( JavaFileManager fileManager, StandardJavaFileManager standardFileManager, String[] sourceFiles,
+                 List<JavaFileObject> fileObjects )
+        throws IOException
+    {
+        Set<File> sources = new HashSet<File>();
+        for ( String sourceFile : sourceFiles )
+        {
+            sources.add( new File( sourceFile ).getAbsoluteFile() );
+        }
+        for ( String path : list( new File( directory, SOURCES ), "" ) )
+        {
+            File target = new File( generatedSourcesDirectory, path ).getAbsoluteFile();
+            writeIfChanged( target, read( new File( directory, SOURCES + path ) ) );
+            // the generated sources directory is usually a source root as well
+            if ( path.endsWith( JavaFileObject.Kind.SOURCE.extension ) && !sources.contains( target ) )
+            {
+                for ( JavaFileObject fileObject : standardFileManager.getJavaFileObjects( target ) )
+                {
+                    fileObjects.add( fileObject );
+                }
+            }
+        }
+        for ( String path : list( new File( directory, CLASSES ), "" ) )
+        {
+            FileObject target;
+            if ( path.endsWith( JavaFileObject.Kind.CLASS.extension ) )
+            {
+                String className = path.substring( 0, path.length() - JavaFileObject.Kind.CLASS.extension.length() );
+                target = fileManager.getJavaFileForOutput( StandardLocation.CLASS_OUTPUT, className.replace( '/', '.' ),
+                                                           JavaFileObject.Kind.CLASS, null );
+            }
+            else
+            {
+                target = fileManager.getFileForOutput( StandardLocation.CLASS_OUTPUT, "", path, null );
+            }
+            writeIfChanged( target, read( new File( directory, CLASSES + path ) ) );
+        }
+    }
+
+    /**
+     * Wraps the file manager of the compilation to keep the files created by the processors, and to only rewrite the
+     * ones which changed.
+     */
+    JavaFileManager record( JavaFileManager fileManager, AnnotationProcessors processors )
+    {
+        return new RecordingFileManager( fileManager, processors );
+    }
+
+    /**
+     * Replaces the cached files by the ones generated by the compilation, to be called once it succeeded.
+     */
+    void store()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( directory );
+        for ( Map.Entry<String, byte[]> entry : generated.entrySet() )
+        {
+            writeIfChanged( new File( directory, entry.getKey() ), entry.getValue() );
+        }
+        FileUtils.fileWrite( new File( directory, KEY ), "UTF-8", key );
+    }
+
+    private static String computeKey( CompilerConfiguration config, String[] sourceFiles )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        File outputLocation = new File( config.getOutputLocation() ).getAbsoluteFile();
+        File generatedSources = config.getGeneratedSourcesDirectory().getAbsoluteFile();
+
+        update( digest, System.getProperty( "java.version" ) );
+        update( digest, config.getProc() );
+        update( digest, config.getSourceVersion() );
+        update( digest, config.getTargetVersion() );
+        update( digest, config.getSourceEncoding() );
+        if ( config.getAnnotationProcessors() != null )
+        {
+            for ( String processor : config.getAnnotationProcessors() )
+            {
+                update( digest, processor );
+            }
+        }
+        for ( Map.Entry<String, String> entry : config.getCustomCompilerArgumentsAsMap().entrySet() )
+        {
+            if ( entry.getKey().startsWith( "-A" ) )
+            {
+                update( digest, entry.getKey() );
+                update( digest, entry.getValue() );
+            }
+        }
+        update( digest, "processorpath" );
+        for ( String entry : config.getProcessorPathEntries() )
+        {
+            updateStamps( digest, new File( entry ) );
+        }
+        update( digest, "classpath" );
+        for ( String entry : config.getClasspathEntries() )
+        {
+            File file = new File( entry ).getAbsoluteFile();
+            if ( !file.equals( outputLocation ) && !file.equals( generatedSources ) )
+            {
+                updateStamps( digest, file );
+            }
+        }
+        update( digest, "sources" );
+        String[] sorted = sourceFiles.clone();
+        Arrays.sort( sorted );
+        String generatedPrefix = generatedSources.getPath() + File.separator;
+        for ( String sourceFile : sorted )
+        {
+            File file = new File( sourceFile ).getAbsoluteFile();
+            if ( !file.getPath().startsWith( generatedPrefix ) )
+            {
+                update( digest, file.getPath() );
+                updateContent( digest, file );
+            }
+        }
+        for ( InMemorySource source : config.getInMemorySources() )
+        {
+            update( digest, source.getPath() );
+            update( digest, source.getCharContent() );
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private static void update( MessageDigest digest, String value )
+        throws UnsupportedEncodingException
+    {
+        digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+        digest.update( (byte) 0 );
+    }
+
+    private static void updateStamps( MessageDigest digest, File file )
+        throws IOException
+    {
+        update( digest, file.getPath() );
+        if ( file.isDirectory() )
+        {
+            String[] names = file.list();
+            if ( names != null )
+            {
+                Arrays.sort( names );
+                for ( String name : names )
+                {
+                    updateStamps( digest, new File( file, name ) );
+                }
+            }
+        }
+        else
+        {
+            update( digest, file.length() + ":" + file.lastModified() );
+        }
+    }
+
+    private static void updateContent( MessageDigest digest, File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for ( int read = in.read( buffer ); read != -1; read = in.read( buffer ) )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        digest.update( (byte) 0 );
+    }
+
+    /**
+     * @return the paths of the files below the given directory, relative to it with <code>/</code> separators
+     */
+    private static Set<String> list( File directory, String prefix )
+    {
+        Set<String> paths = new TreeSet<String>();
+        String[] names = directory.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                File file = new File( directory, name );
+                if ( file.isDirectory() )
+                {
+                    paths.addAll( list( file, prefix + name + '/' ) );
+                }
+                else
+                {
+                    paths.add( prefix + name );
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            return IOUtil.toByteArray( in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeIfChanged( File file, byte[] content )
+        throws IOException
+    {
+        if ( file.isFile() && file.length() == content.length && Arrays.equals( read( file ), content ) )
+        {
+            return;
+        }
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void writeIfChanged( FileObject fileObject, byte[] content )
+        throws IOException
+    {
+        byte[] existing;
+        try
+        {
+            InputStream in = fileObject.openInputStream();
+            try
+            {
+                existing = IOUtil.toByteArray( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // not written yet
+            existing = null;
+        }
+        if ( Arrays.equals( existing, content ) )
+        {
+            return;
+        }
+        OutputStream out = fileObject.openOutputStream();
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private class RecordingFileManager
+        extends ForwardingJavaFileManager<JavaFileManager>
+    {
+        private final AnnotationProcessors processors;
+
+        RecordingFileManager( JavaFileManager fileManager, AnnotationProcessors processors )
+        {
+            super( fileManager );
+            this.processors = processors;
+        }
+
+        public JavaFileObject getJavaFileForOutput( Location location, String className, JavaFileObject.Kind kind,
+                                                    FileObject sibling )
+            throws IOException
+        {
+            JavaFileObject target = super.getJavaFileForOutput( location, className, kind, sibling );
+            String prefix = getPrefix( location );
+            if ( prefix == null )
+            {
+                return target;
+            }
+            return new RecordedFileObject( target, prefix + className.replace( '.', '/' ) + kind.extension, kind );
+        }
+
+        public FileObject getFileForOutput( Location location, String packageName, String relativeName,
+                                            FileObject sibling )
+            throws IOException
+        {
+            FileObject target = super.getFileForOutput( location, packageName, relativeName, sibling );
+            String prefix = getPrefix( location );
+            if ( prefix == null )
+            {
+                return target;
+            }
+            String path =
+                packageName.length() == 0 ? relativeName : packageName.replace( '.', '/' ) + '/' + relativeName;
+            return new RecordedFileObject( target, prefix + path, JavaFileObject.Kind.OTHER );
+        }
+
+        public boolean isSameFile( FileObject a, FileObject b )
+        {
+            return super.isSameFile( unwrap( a ), unwrap( b ) );
+        }
+
+        private FileObject unwrap( FileObject fileObject )
+        {
+            return fileObject instanceof RecordedFileObject ? ( (RecordedFileObject) fileObject ).target : fileObject;
+        }
+
+        /**
+         * @return where to keep the file in the cache directory, <code>null</code> if it is not generated by a
+         *         processor
+         */
+        private String getPrefix( Location location )
+        {
+            if ( location == StandardLocation.SOURCE_OUTPUT )
+            {
+                return SOURCES;
+            }
+            if ( location == StandardLocation.CLASS_OUTPUT && processors.isProcessing() )
+            {
+                return CLASSES;
+            }
+            return null;
+        }
+    }
+
+    private class RecordedFileObject
+        extends SimpleJavaFileObject
+    {
+        private final FileObject target;
+
+        private final String path;
+
+        private byte[] content;
+
+        RecordedFileObject( FileObject target, String path, Kind kind )
+        {
+            super( target.toUri(), kind );
+            this.target = target;
+            this.path = path;
+        }
+
+        public OutputStream openOutputStream()
+        {
+            return new ByteArrayOutputStream()
+            {
+                public void close()
+                    throws IOException
+                {
+                    content = toByteArray();
+                    generated.put( path, content );
+                    writeIfChanged( target, content );
+                }
+            };
+        }
+
+        public Writer openWriter()
+        {
+            return new OutputStreamWriter( openOutputStream(), charset );
+        }
+
+        public InputStream openInputStream()
+            throws IOException
+        {
+            return content == null ? target.openInputStream() : new ByteArrayInputStream( content );
+        }
+
+        public CharSequence getCharContent( boolean ignoreEncodingErrors )
+            throws IOException
+        {
+            return content == null ? target.getCharContent( ignoreEncodingErrors ) : new String( content, charset );
+        }
+
+        public long getLastModified()
+        {
+            return target.getLastModified();
+        }
+
+        public boolean delete()
+        {
+            return target.delete();
+        }
+    }
+}
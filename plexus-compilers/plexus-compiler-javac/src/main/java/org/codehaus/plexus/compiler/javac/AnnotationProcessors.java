@@ -0,0 +1,515 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.AnnotationProcessorProfile;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerException;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Loads the annotation processors of an in-process javax.tools compilation, instead of letting javac load them
+ * again for each compilation, and wraps them to profile them and to tell when they run.
+ * <p/>
+ * The classloaders of the processor paths are cached, keyed by their entries and the size and modification time of
+ * these entries or, for directories, of the files below them, so that a rebuilt processor is loaded again. Processors
+ * found on the classpath are not cached, as the classpath usually holds the output of other modules of the build.
+ * Classloaders are closed once evicted from the cache and no longer used, or after the compilation if not cached.
+ *
+ * @since 2.5
+ */
+final class AnnotationProcessors
+{
+    /**
+     * The number of processor paths to keep the classloaders of.
+     */
+    static final int MAX_CACHED_CLASSLOADERS = 16;
+
+    private static final Map<List<Object>, CachedClassLoader> CLASSLOADERS =
+        new LinkedHashMap<List<Object>, CachedClassLoader>( MAX_CACHED_CLASSLOADERS, 0.75f, true )
+        {
+            protected boolean removeEldestEntry( Map.Entry<List<Object>, CachedClassLoader> eldest )
+            {
+                if ( size() > MAX_CACHED_CLASSLOADERS )
+                {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    private final List<Processor> processors = new ArrayList<Processor>();
+
+    private final List<AnnotationProcessorProfile> profiles;
+
+    /**
+     * The processor running, javac calls the processors one after the other from the compiling thread.
+     */
+    private TrackedProcessor running;
+
+    /**
+     * The classloader of the processors when it is not cached.
+     */
+    private ClassLoader loader;
+
+    private CachedClassLoader cached;
+
+    private AnnotationProcessors( boolean profiled )
+    {
+        this.profiles = profiled ? new ArrayList<AnnotationProcessorProfile>() : null;
+    }
+
+    /**
+     * @param parent the classloader of javac, which processors may depend on
+     * @return the processors, to {@link #close()} after the compilation, or <code>null</code> if javac should load
+     *         them itself as nothing is to be cached, profiled or tracked
+     */
+    static AnnotationProcessors load( CompilerConfiguration config, ClassLoader parent )
+        throws CompilerException
+    {
+        if ( "none".equals( config.getProc() ) )
+        {
+            return null;
+        }
+        boolean cached = !config.getProcessorPathEntries().isEmpty();
+        if ( !cached && !config.isProfileAnnotationProcessors()
+            && config.getAnnotationProcessorCacheDirectory() == null )
+        {
+            return null;
+        }
+        AnnotationProcessors processors = new AnnotationProcessors( config.isProfileAnnotationProcessors() );
+        ClassLoader loader;
+        if ( cached )
+        {
+            processors.cached = acquireClassLoader( config.getProcessorPathEntries(), parent );
+            loader = processors.cached.loader;
+        }
+        else
+        {
+            loader = processors.loader = createClassLoader( config.getClasspathEntries(), parent );
+        }
+
+        try
+        {
+            processors.addProcessors( config, loader );
+        }
+        catch ( CompilerException e )
+        {
+            processors.close();
+            throw e;
+        }
+        return processors;
+    }
+
+    private void addProcessors( CompilerConfiguration config, ClassLoader loader )
+        throws CompilerException
+    {
+        if ( config.getAnnotationProcessors() == null )
+        {
+            Iterator<Processor> discovered = ServiceLoader.load( Processor.class, loader ).iterator();
+            try
+            {
+                while ( discovered.hasNext() )
+                {
+                    add( discovered.next() );
+                }
+            }
+            catch ( ServiceConfigurationError e )
+            {
+                throw new CompilerException( "Unable to load the annotation processors: " + e.getMessage(), e );
+            }
+        }
+        else
+        {
+            for ( String name : config.getAnnotationProcessors() )
+            {
+                add( instantiate( name.trim(), loader ) );
+            }
+        }
+    }
+
+    /**
+     * Releases the classloader of the processors once the compilation is done: closes it if it is not cached, or if
+     * it has been evicted from the cache and no other compilation uses it.
+     */
+    void close()
+    {
+        if ( cached != null )
+        {
+            synchronized ( CLASSLOADERS )
+            {
+                cached.users--;
+                if ( cached.evicted && cached.users == 0 )
+                {
+                    close( cached.loader );
+                }
+            }
+            cached = null;
+        }
+        else if ( loader != null )
+        {
+            close( loader );
+            loader = null;
+        }
+    }
+
+    private void add( Processor processor )
+    {
+        AnnotationProcessorProfile profile = null;
+        if ( profiles != null )
+        {
+            profile = new AnnotationProcessorProfile( processor.getClass().getName() );
+            profiles.add( profile );
+        }
+        processors.add( new TrackedProcessor( processor, profile ) );
+    }
+
+    List<Processor> getProcessors()
+    {
+        return processors;
+    }
+
+    ClassLoader getClassLoader()
+    {
+        return cached != null ? cached.loader : loader;
+    }
+
+    /**
+     * @return the profiles of the processors, or <code>null</code> if they are not profiled
+     */
+    List<AnnotationProcessorProfile> getProfiles()
+    {
+        return profiles;
+    }
+
+    /**
+     * @return whether one of the processors is running, so that the files being created are its output
+     */
+    boolean isProcessing()
+    {
+        return running != null;
+    }
+
+    /**
+     * Wraps the file manager of the compilation to attribute the files created by the processors to them.
+     */
+    JavaFileManager countGeneratedFiles( JavaFileManager fileManager )
+    {
+        return profiles == null ? fileManager : new GeneratedFileCounter( fileManager );
+    }
+
+    /**
+     * @return the cached classloader of the processor path, counted as used until it is released by
+     *         {@link #close()}
+     */
+    static CachedClassLoader acquireClassLoader( List<String> processorPath, ClassLoader parent )
+        throws CompilerException
+    {
+        List<Object> key = new ArrayList<Object>();
+        key.add( parent );
+        for ( String entry : processorPath )
+        {
+            File file = new File( entry );
+            key.add( file.getAbsolutePath() );
+            if ( file.isDirectory() )
+            {
+                // a rebuilt processor class changes neither the size nor the time of its directory
+                long[] stamps = new long[3];
+                addStamps( file, stamps );
+                key.add( stamps[0] );
+                key.add( stamps[1] );
+                key.add( stamps[2] );
+            }
+            else
+            {
+                key.add( file.length() );
+                key.add( file.lastModified() );
+            }
+        }
+        synchronized ( CLASSLOADERS )
+        {
+            CachedClassLoader cached = CLASSLOADERS.get( key );
+            if ( cached == null )
+            {
+                cached = new CachedClassLoader( createClassLoader( processorPath, parent ) );
+                CLASSLOADERS.put( key, cached );
+            }
+            cached.users++;
+            return cached;
+        }
+    }
+
+    /**
+     * Adds the number, the total size and the sum of the modification times of the files below a directory.
+     */
+    private static void addStamps( File directory, long[] stamps )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addStamps( file, stamps );
+            }
+            else
+            {
+                stamps[0]++;
+                stamps[1] += file.length();
+                stamps[2] += file.lastModified();
+            }
+        }
+    }
+
+    private static void close( ClassLoader loader )
+    {
+        if ( loader instanceof Closeable )
+        {
+            try
+            {
+                ( (Closeable) loader ).close();
+            }
+            catch ( IOException e )
+            {
+                // the jar files are released once the classloader is collected
+            }
+        }
+    }
+
+    static int getCachedClassLoaderCount()
+    {
+        synchronized ( CLASSLOADERS )
+        {
+            return CLASSLOADERS.size();
+        }
+    }
+
+    private static ClassLoader createClassLoader( List<String> path, ClassLoader parent )
+        throws CompilerException
+    {
+        URL[] urls = new URL[path.size()];
+        for ( int i = 0; i < urls.length; i++ )
+        {
+            try
+            {
+                urls[i] = new File( path.get( i ) ).toURI().toURL();
+            }
+            catch ( MalformedURLException e )
+            {
+                throw new CompilerException( "Invalid annotation processor path entry " + path.get( i ), e );
+            }
+        }
+        return new URLClassLoader( urls, parent );
+    }
+
+    private static Processor instantiate( String name, ClassLoader loader )
+        throws CompilerException
+    {
+        try
+        {
+            return (Processor) Class.forName( name, true, loader ).newInstance();
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new CompilerException( "Annotation processor '" + name + "' not found", e );
+        }
+        catch ( InstantiationException e )
+        {
+            throw new CompilerException( "Unable to instantiate the annotation processor '" + name + "'", e );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new CompilerException( "Unable to instantiate the annotation processor '" + name + "'", e );
+        }
+        catch ( ClassCastException e )
+        {
+            throw new CompilerException( "'" + name + "' is not an annotation processor", e );
+        }
+    }
+
+    /**
+     * A classloader in the cache, closed once evicted and no longer used. Guarded by {@link #CLASSLOADERS}.
+     */
+    static final class CachedClassLoader
+    {
+        final ClassLoader loader;
+
+        private int users;
+
+        private boolean evicted;
+
+        CachedClassLoader( ClassLoader loader )
+        {
+            this.loader = loader;
+        }
+
+        private void evict()
+        {
+            evicted = true;
+            if ( users == 0 )
+            {
+                close( loader );
+            }
+        }
+    }
+
+    private class TrackedProcessor
+        implements Processor
+    {
+        private final Processor processor;
+
+        /**
+         * <code>null</code> if not profiled
+         */
+        private final AnnotationProcessorProfile profile;
+
+        TrackedProcessor( Processor processor, AnnotationProcessorProfile profile )
+        {
+            this.processor = processor;
+            this.profile = profile;
+        }
+
+        public Set<String> getSupportedOptions()
+        {
+            return processor.getSupportedOptions();
+        }
+
+        public Set<String> getSupportedAnnotationTypes()
+        {
+            return processor.getSupportedAnnotationTypes();
+        }
+
+        public SourceVersion getSupportedSourceVersion()
+        {
+            return processor.getSupportedSourceVersion();
+        }
+
+        public void init( ProcessingEnvironment processingEnv )
+        {
+            long start = System.nanoTime();
+            running = this;
+            try
+            {
+                processor.init( processingEnv );
+            }
+            finally
+            {
+                running = null;
+                if ( profile != null )
+                {
+                    profile.addInitNanos( System.nanoTime() - start );
+                }
+            }
+        }
+
+        public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv )
+        {
+            long start = System.nanoTime();
+            running = this;
+            try
+            {
+                return processor.process( annotations, roundEnv );
+            }
+            finally
+            {
+                running = null;
+                if ( profile != null )
+                {
+                    profile.addRound( System.nanoTime() - start );
+                }
+            }
+        }
+
+        public Iterable<? extends Completion> getCompletions( Element element, AnnotationMirror annotation,
+                                                             ExecutableElement member, String userText )
+        {
+            return processor.getCompletions( element, annotation, member, userText );
+        }
+
+        public String toString()
+        {
+            return processor.toString();
+        }
+    }
+
+    private class GeneratedFileCounter
+        extends ForwardingJavaFileManager<JavaFileManager>
+    {
+        GeneratedFileCounter( JavaFileManager fileManager )
+        {
+            super( fileManager );
+        }
+
+        public JavaFileObject getJavaFileForOutput( Location location, String className, JavaFileObject.Kind kind,
+                                                    FileObject sibling )
+            throws IOException
+        {
+            countGeneratedFile();
+            return super.getJavaFileForOutput( location, className, kind, sibling );
+        }
+
+        public FileObject getFileForOutput( Location location, String packageName, String relativeName,
+                                            FileObject sibling )
+            throws IOException
+        {
+            countGeneratedFile();
+            return super.getFileForOutput( location, packageName, relativeName, sibling );
+        }
+
+        private void countGeneratedFile()
+        {
+            TrackedProcessor processor = running;
+            if ( processor != null )
+            {
+                processor.profile.addGeneratedFile();
+            }
+        }
+    }
+}
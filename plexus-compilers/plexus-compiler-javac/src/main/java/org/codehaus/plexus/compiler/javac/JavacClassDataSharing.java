@@ -0,0 +1,180 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a Class Data Sharing archive of the classes a forked javac loads, one per JDK, so that later forks map them
+ * instead of loading and verifying them again. The first fork of a JDK writes the archive when it exits, through
+ * <code>-XX:ArchiveClassesAtExit</code>; later forks pass it with <code>-XX:SharedArchiveFile</code>.
+ * <p/>
+ * Dynamic archives need Java 13 or later, forks of older JDKs get no extra arguments. A JVM which cannot map an
+ * archive, because it is stale or was written with other settings, silently runs without it; its warnings are turned
+ * off so that they are not taken for compiler messages.
+ * <p/>
+ * Archives are named after the Java version of the {@link JdkToolchain}, the path of the executable and the time
+ * its <code>lib/modules</code> image was last modified, so that a JDK updated in place gets a new archive rather than
+ * one it cannot map. They are kept in the directory given by the <code>plexus.compiler.cds.dir</code> system
+ * property. Without it nothing is archived.
+ *
+ * @since 2.5
+ */
+final class JavacClassDataSharing
+{
+    static final String DIRECTORY_PROPERTY = "plexus.compiler.cds.dir";
+
+    private static final String[] NONE = new String[0];
+
+    private static final String LOG_OFF = "-J-Xlog:cds*=off";
+
+    private static volatile JavacClassDataSharing shared;
+
+    private final File directory;
+
+    /**
+     * The archives being written by a running fork, or which could not be written.
+     */
+    private final ConcurrentMap<File, Boolean> claimed = new ConcurrentHashMap<File, Boolean>();
+
+    JavacClassDataSharing( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the instance using the directory of the <code>plexus.compiler.cds.dir</code> system property, or
+     * <code>null</code> if it is not set
+     */
+    static JavacClassDataSharing getShared()
+    {
+        String directory = System.getProperty( DIRECTORY_PROPERTY );
+        if ( directory == null || directory.length() == 0 )
+        {
+            return null;
+        }
+        JavacClassDataSharing instance = shared;
+        if ( instance == null || !instance.directory.getPath().equals( directory ) )
+        {
+            instance = new JavacClassDataSharing( new File( directory ) );
+            shared = instance;
+        }
+        return instance;
+    }
+
+    /**
+     * @return the arguments to add to a fork of the given executable, and what to do once it exited
+     */
+    Fork prepare( String executable )
+    {
+        File file = new File( executable );
+        if ( !file.isAbsolute() || !file.isFile() )
+        {
+            return new Fork( NONE, null, null );
+        }
+
+        String path;
+        try
+        {
+            path = file.getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            return new Fork( NONE, null, null );
+        }
+
+        JdkToolchain toolchain = JdkToolchain.forExecutable( new File( path ) );
+        int version = toolchain.getVersion();
+        if ( version < 13 )
+        {
+            return new Fork( NONE, null, null );
+        }
+
+        long modules = new File( toolchain.getHome(), "lib/modules" ).lastModified();
+        File archive = new File( directory, "javac-" + version + "-" + Integer.toHexString( path.hashCode() ) + "-"
+            + Long.toHexString( modules ) + ".jsa" );
+        if ( archive.isFile() )
+        {
+            return new Fork( new String[]{ "-J-XX:SharedArchiveFile=" + archive.getAbsolutePath(), LOG_OFF }, null,
+                             null );
+        }
+        if ( claimed.putIfAbsent( archive, Boolean.TRUE ) != null )
+        {
+            // another fork is writing it
+            return new Fork( NONE, null, null );
+        }
+
+        directory.mkdirs();
+        File temporary = new File( directory, archive.getName() + "." + System.nanoTime() + ".tmp" );
+        return new Fork( new String[]{ "-J-XX:ArchiveClassesAtExit=" + temporary.getAbsolutePath(), LOG_OFF },
+                         archive, temporary );
+    }
+
+    /**
+     * The arguments for one fork and, if it writes the archive, moving it in place once the fork exited.
+     */
+    final class Fork
+    {
+        private final String[] arguments;
+
+        private final File archive;
+
+        private final File temporary;
+
+        Fork( String[] arguments, File archive, File temporary )
+        {
+            this.arguments = arguments;
+            this.archive = archive;
+            this.temporary = temporary;
+        }
+
+        String[] getArguments()
+        {
+            return arguments;
+        }
+
+        /**
+         * @param exited <code>false</code> if the fork was destroyed, which leaves the archive to the next fork
+         */
+        void finished( boolean exited )
+        {
+            if ( archive == null )
+            {
+                return;
+            }
+            if ( temporary.length() > 0 && ( archive.isFile() || temporary.renameTo( archive ) ) )
+            {
+                temporary.delete();
+                claimed.remove( archive );
+            }
+            else
+            {
+                temporary.delete();
+                if ( !exited )
+                {
+                    claimed.remove( archive );
+                }
+                // otherwise the JDK cannot write it, so it stays claimed and is not attempted again
+            }
+        }
+    }
+}
@@ -42,25 +42,41 @@ package org.codehaus.plexus.compiler.javac;
  */
 
 import org.codehaus.plexus.compiler.AbstractCompiler;
+import org.codehaus.plexus.compiler.CompilerCancelledException;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMessageStore;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.HeapAdmissionController;
+import org.codehaus.plexus.compiler.UpToDateCheck;
+import org.codehaus.plexus.compiler.util.ClassAbiStripper;
+import org.codehaus.plexus.compiler.util.DeterministicJarWriter;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.codehaus.plexus.util.cli.StreamPumper;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -71,9 +87,11 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -99,6 +117,17 @@ public class JavacCompiler
 
     private static volatile Class<?> JAVAC_CLASS;
 
+    /**
+     * How many javac classes {@link CompilerConfiguration.CompilerReuseStrategy#ReuseCreated} keeps, the classloaders
+     * of those released beyond are closed.
+     */
+    static final int MAX_POOLED_CLASSES = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+
+    /**
+     * The <code>compile(String[], PrintWriter)</code> method of each javac class in use.
+     */
+    private static final ConcurrentMap<Class<?>, Method> COMPILE_METHODS = new ConcurrentHashMap<Class<?>, Method>();
+
     private List<Class<?>> javaccClasses = new CopyOnWriteArrayList<Class<?>>();
 
     // ----------------------------------------------------------------------
@@ -114,9 +143,25 @@ public class JavacCompiler
     // Compiler Implementation
     // ----------------------------------------------------------------------
 
+    protected String getCompilerId()
+    {
+        return "javac";
+    }
+
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
     {
+        UpToDateCheck upToDate = UpToDateCheck.open( config, getCompilerId() );
+
+        if ( upToDate != null && upToDate.isUpToDate() )
+        {
+            if ( ( getLogger() != null ) && getLogger().isInfoEnabled() )
+            {
+                getLogger().info( "Nothing to compile - all classes are up to date" );
+            }
+            return upToDate.getResult();
+        }
+
         File destinationDir = new File( config.getOutputLocation() );
 
         if ( !destinationDir.exists() )
@@ -124,73 +169,268 @@ public class JavacCompiler
             destinationDir.mkdirs();
         }
 
-        String[] sourceFiles = getSourceFiles( config );
+        String[] sourceFiles = scanSourceFiles( config );
 
-        if ( ( sourceFiles == null ) || ( sourceFiles.length == 0 ) )
+        if ( upToDate != null )
+        {
+            upToDate.stampSources( sourceFiles == null ? new String[0] : sourceFiles );
+        }
+
+        int inMemorySources = config.getInMemorySources().size();
+
+        if ( ( ( sourceFiles == null ) || ( sourceFiles.length == 0 ) ) && inMemorySources == 0 )
         {
             return new CompilerResult();
         }
 
+        if ( sourceFiles == null )
+        {
+            sourceFiles = new String[0];
+        }
+
         if ( ( getLogger() != null ) && getLogger().isInfoEnabled() )
         {
-            getLogger().info( "Compiling " + sourceFiles.length + " " +
-                                  "source file" + ( sourceFiles.length == 1 ? "" : "s" ) +
+            int count = sourceFiles.length + inMemorySources;
+            getLogger().info( "Compiling " + count + " " +
+                                  "source file" + ( count == 1 ? "" : "s" ) +
                                   " to " + destinationDir.getAbsolutePath() );
         }
 
-        String[] args = buildCompilerArguments( config, sourceFiles );
+        countSourceBytes( config, sourceFiles );
+
+        File inMemorySourceDirectory = null;
+
+        if ( inMemorySources > 0 && ( config.isFork() || !isJava16() || config.isForceJavacCompilerUse() ) )
+        {
+            // only javax.tools can read sources from memory
+            inMemorySourceDirectory = createTempDirectory();
+            String[] written = writeInMemorySources( config, inMemorySourceDirectory );
+            String[] all = new String[sourceFiles.length + written.length];
+            System.arraycopy( sourceFiles, 0, all, 0, sourceFiles.length );
+            System.arraycopy( written, 0, all, sourceFiles.length, written.length );
+            sourceFiles = all;
+        }
 
-        CompilerResult result;
+        File packageDirectory = null;
 
-        if ( config.isFork() )
+        try
         {
-            String executable = config.getExecutable();
+            CompilerSpan span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
+            String[] args = buildCompilerArguments( config, sourceFiles );
+            span.end();
+
+            if ( ( config.getOutputJarFile() != null || config.getAbiJar() != null ) && ( config.isFork() || !isJava16()
+                || config.isForceJavacCompilerUse() ) )
+            {
+                // only javax.tools can capture the class output, so compile into an empty directory to jar exactly
+                // the classes of this compilation; the arguments start with -d
+                packageDirectory = createTempDirectory();
+                args[1] = packageDirectory.getAbsolutePath();
+            }
+
+            checkCancelled();
+
+            CompilerResult result;
+
+            if ( config.isFork() )
+            {
+                String executable = config.getExecutable();
+
+                if ( StringUtils.isEmpty( executable ) )
+                {
+                    try
+                    {
+                        executable = getJavacExecutable();
+                    }
+                    catch ( IOException e )
+                    {
+                        getLogger().warn( "Unable to autodetect 'javac' path, using 'javac' from the environment." );
+                        executable = "javac";
+                    }
+                }
 
-            if ( StringUtils.isEmpty( executable ) )
+                result = compileOutOfProcess( config, executable, args );
+                packageOutput( config, packageDirectory, destinationDir, result );
+            }
+            else
             {
+                HeapAdmissionController.Permit permit = admit( config, sourceFiles );
                 try
                 {
-                    executable = getJavacExecutable();
+                    if ( isJava16() && !config.isForceJavacCompilerUse() )
+                    {
+                        // use fqcn to prevent loading of the class on 1.5 environment !
+                        result = org.codehaus.plexus.compiler.javac.JavaxToolsCompiler.compileInProcess( args, config,
+                                                                                                         sourceFiles,
+                                                                                                         getCompilerId() );
+                    }
+                    else
+                    {
+                        result = compileInProcess( args, config );
+                        packageOutput( config, packageDirectory, destinationDir, result );
+                    }
                 }
-                catch ( IOException e )
+                finally
                 {
-                    getLogger().warn( "Unable to autodetect 'javac' path, using 'javac' from the environment." );
-                    executable = "javac";
+                    release( permit );
                 }
             }
 
-            result = compileOutOfProcess( config, executable, args );
+            if ( upToDate != null )
+            {
+                upToDate.store( result );
+            }
+
+            return result;
         }
-        else
+        finally
+        {
+            deleteTempDirectory( inMemorySourceDirectory );
+            deleteTempDirectory( packageDirectory );
+        }
+    }
+
+    private void deleteTempDirectory( File directory )
+    {
+        if ( directory != null )
         {
-            if ( isJava16() && !config.isForceJavacCompilerUse() )
+            try
             {
-                // use fqcn to prevent loading of the class on 1.5 environment !
-                result =
-                    org.codehaus.plexus.compiler.javac.JavaxToolsCompiler.compileInProcess( args, config, sourceFiles );
+                FileUtils.deleteDirectory( directory );
             }
-            else
+            catch ( IOException e )
+            {
+                if ( getLogger() != null )
+                {
+                    getLogger().warn( "Unable to delete " + directory, e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Jars the classes of a compilation which could not write to the
+     * {@link CompilerConfiguration#getOutputJarFile() output jar} and {@link CompilerConfiguration#getAbiJar() ABI jar}
+     * directly, and copies them to the output directory if {@link CompilerConfiguration#isExplodedOutput() exploded
+     * output} is kept.
+     *
+     * @param packageDirectory the directory holding only the classes of this compilation, <code>null</code> when no
+     *                         jar is written
+     */
+    private void packageOutput( CompilerConfiguration config, File packageDirectory, File destinationDir,
+                                CompilerResult result )
+        throws CompilerException
+    {
+        if ( packageDirectory == null )
+        {
+            return;
+        }
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.CLASS_WRITING );
+        try
+        {
+            if ( result.isSuccess() && config.getOutputJarFile() != null )
             {
-                result = compileInProcess( args, config );
+                try
+                {
+                    DeterministicJarWriter jar = new DeterministicJarWriter();
+                    jar.addDirectory( packageDirectory );
+                    jar.write( config.getOutputJarFile() );
+                }
+                catch ( IOException e )
+                {
+                    throw new CompilerException( "Unable to write " + config.getOutputJarFile(), e );
+                }
+            }
+            if ( result.isSuccess() && config.getAbiJar() != null )
+            {
+                try
+                {
+                    DeterministicJarWriter jar = new DeterministicJarWriter();
+                    addAbi( jar, packageDirectory, "" );
+                    jar.write( config.getAbiJar() );
+                }
+                catch ( IOException e )
+                {
+                    throw new CompilerException( "Unable to write " + config.getAbiJar(), e );
+                }
             }
+            if ( config.isExplodedOutput() )
+            {
+                try
+                {
+                    FileUtils.copyDirectoryStructure( packageDirectory, destinationDir );
+                }
+                catch ( IOException e )
+                {
+                    throw new CompilerException( "Unable to copy the compiled classes to " + destinationDir, e );
+                }
+            }
+        }
+        finally
+        {
+            span.end();
         }
+    }
 
-        return result;
+    private static void addAbi( DeterministicJarWriter jar, File directory, String prefix )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addAbi( jar, file, prefix + file.getName() + "/" );
+            }
+            else if ( ClassAbiStripper.isClassFile( file.getName() ) )
+            {
+                InputStream in = new FileInputStream( file );
+                try
+                {
+                    byte[] abi = ClassAbiStripper.strip( IOUtil.toByteArray( in ) );
+                    if ( abi != null )
+                    {
+                        jar.add( prefix + file.getName(), abi );
+                    }
+                }
+                finally
+                {
+                    IOUtil.close( in );
+                }
+            }
+        }
     }
 
-    protected static boolean isJava16()
+    /**
+     * Creates a temporary directory to write in-memory sources to, for compilers which read sources from disk.
+     */
+    public static File createTempDirectory()
+        throws CompilerException
     {
         try
         {
-            Thread.currentThread().getContextClassLoader().loadClass( "javax.tools.ToolProvider" );
-            return true;
+            File directory = File.createTempFile( "plexus-compiler", "" );
+            if ( !directory.delete() || !directory.mkdir() )
+            {
+                throw new IOException( "Unable to create the directory " + directory );
+            }
+            return directory;
         }
-        catch ( Exception e )
+        catch ( IOException e )
         {
-            return false;
+            throw new CompilerException( "Unable to create a directory for the in-memory sources", e );
         }
     }
 
+    protected static boolean isJava16()
+    {
+        return JdkToolchain.isJavaxToolsAvailable();
+    }
+
     public String[] createCommandLine( CompilerConfiguration config )
         throws CompilerException
     {
@@ -248,6 +488,11 @@ public class JavacCompiler
                 args.add( "-s" );
                 args.add( config.getGeneratedSourcesDirectory().getAbsolutePath() );
             }
+            if ( !config.getProcessorPathEntries().isEmpty() )
+            {
+                args.add( "-processorpath" );
+                args.add( getPathString( config.getProcessorPathEntries() ) );
+            }
             if ( config.getProc() != null )
             {
                 args.add( "-proc:" + config.getProc() );
@@ -469,10 +714,13 @@ public class JavacCompiler
 
         CommandLineUtils.StringStreamConsumer out = new CommandLineUtils.StringStreamConsumer();
 
-        CommandLineUtils.StringStreamConsumer err = new CommandLineUtils.StringStreamConsumer();
+        MessageConsumer err =
+            new MessageConsumer( config, new CompilerMessageStore( config.getMaxWarningsPerCode() ) );
 
         int returnCode;
 
+        boolean stoppedEarly;
+
         List<CompilerMessage> messages;
 
         if ( ( getLogger() != null ) && getLogger().isDebugEnabled() )
@@ -499,21 +747,213 @@ public class JavacCompiler
 
         try
         {
-            returnCode = CommandLineUtils.executeCommandLine( cli, out, err );
+            CompilerSpan span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+            CompilerSpan forkWait = startTimer( config, CompilerMetrics.Timer.FORK_WAIT );
+            // claimed right before the fork, so that whatever fails from here on releases the archive
+            JavacClassDataSharing sharing = JavacClassDataSharing.getShared();
+            JavacClassDataSharing.Fork fork = sharing == null ? null : sharing.prepare( executable );
+            boolean exited = false;
+            try
+            {
+                if ( fork != null )
+                {
+                    cli.addArguments( fork.getArguments() );
+                }
+                returnCode = execute( executable, cli, out, err );
+                exited = true;
+            }
+            finally
+            {
+                if ( fork != null )
+                {
+                    // a fork destroyed once it reported enough errors did not write the archive either
+                    fork.finished( exited && !err.isStopped() );
+                }
+                forkWait.end();
+                span.end();
+            }
+            stoppedEarly = err.isStopped();
+            if ( stoppedEarly )
+            {
+                // the forked javac has been destroyed once it reported enough errors
+                returnCode = 1;
+            }
 
-            messages = parseModernStream( returnCode, new BufferedReader( new StringReader( err.getOutput() ) ) );
+            CompilerMessageStore store = err.finish( returnCode );
+            messages = store;
+            count( config, CompilerMetrics.Counter.MESSAGES_PARSED, store.size() + store.getDroppedCount() );
         }
         catch ( CommandLineException e )
         {
             throw new CompilerException( "Error while executing the external compiler.", e );
         }
+
+        boolean success = returnCode == 0;
+        return new CompilerResult( success, messages ).stoppedEarly( stoppedEarly );
+    }
+
+    /**
+     * Runs the forked javac, destroying it if the compiling thread gets interrupted. javac is started directly rather
+     * than through the shell of {@link Commandline#execute()}, so that destroying the process stops javac itself.
+     *
+     * @return the exit code of javac
+     */
+    private static int execute( String executable, Commandline cli, StreamConsumer out, MessageConsumer err )
+        throws CommandLineException, CompilerCancelledException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add( executable );
+        command.addAll( Arrays.asList( cli.getArguments() ) );
+        Process process;
+        try
+        {
+            process = new ProcessBuilder( command ).directory( cli.getWorkingDirectory() ).start();
+        }
         catch ( IOException e )
         {
-            throw new CompilerException( "Error while executing the external compiler.", e );
+            throw new CommandLineException( "Error while executing the external compiler.", e );
         }
+        err.setProcess( process );
 
-        boolean success = returnCode == 0;
-        return new CompilerResult( success, messages );
+        StreamPumper outPumper = new StreamPumper( process.getInputStream(), out );
+        StreamPumper errPumper = new StreamPumper( process.getErrorStream(), err );
+        outPumper.start();
+        errPumper.start();
+        try
+        {
+            process.getOutputStream().close();
+
+            int returnCode = process.waitFor();
+            outPumper.waitUntilDone();
+            errPumper.waitUntilDone();
+            return returnCode;
+        }
+        catch ( IOException e )
+        {
+            process.destroy();
+            throw new CommandLineException( "Error while executing the external compiler.", e );
+        }
+        catch ( InterruptedException e )
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new CompilerCancelledException( "The compilation has been cancelled.", e );
+        }
+        finally
+        {
+            outPumper.close();
+            errPumper.close();
+        }
+    }
+
+    /**
+     * Parses the error output of a forked javac into a message store as it is printed, and destroys the process once
+     * javac reported the {@link CompilerConfiguration#getMaxErrors() maximum number of errors}. Errors are counted on
+     * their <code>file:line: error: message</code> header, as printed by javac 7 and later, and the process is
+     * destroyed once the last error is complete, that is when its caret line or the next message shows up.
+     */
+    private static class MessageConsumer
+        implements StreamConsumer
+    {
+        // the "3 errors" line javac ends its output with
+        private static final Pattern SUMMARY = Pattern.compile( "\\d+ (errors?|warnings?)" );
+
+        private final CompilerConfiguration config;
+
+        private final CompilerMessageStore store;
+
+        // the exit code is not known yet, messages that are not warnings are parsed as errors
+        private final ModernStreamParser parser;
+
+        private Process process;
+
+        private int errors;
+
+        private boolean reached;
+
+        private boolean stopped;
+
+        MessageConsumer( CompilerConfiguration config, CompilerMessageStore store )
+        {
+            this.config = config;
+            this.store = store;
+            this.parser = new ModernStreamParser( 1, store );
+        }
+
+        synchronized void setProcess( Process process )
+        {
+            this.process = process;
+        }
+
+        public void consumeLine( String line )
+        {
+            if ( stopped )
+            {
+                return;
+            }
+            boolean error = line.startsWith( "error: " ) || line.indexOf( ": error: " ) > 0;
+            boolean header = error || line.indexOf( ": warning: " ) > 0 || SUMMARY.matcher( line ).matches();
+            if ( reached && header )
+            {
+                // the next message shows up, drop it
+                stop();
+                return;
+            }
+            parser.parseLine( line );
+            if ( error )
+            {
+                reached = config.isMaxErrorsReached( ++errors );
+            }
+            if ( reached && ( line.startsWith( "error: " ) || line.trim().endsWith( "^" ) ) )
+            {
+                // a message without source position is a single line, the others end with a caret line
+                stop();
+            }
+        }
+
+        private synchronized void stop()
+        {
+            if ( !stopped )
+            {
+                stopped = true;
+                process.destroy();
+            }
+        }
+
+        /**
+         * @return whether the process has been destroyed because of the errors
+         */
+        synchronized boolean isStopped()
+        {
+            return stopped;
+        }
+
+        /**
+         * Called once the output has been consumed.
+         *
+         * @param exitCode the exit code of javac
+         * @return the messages
+         */
+        CompilerMessageStore finish( int exitCode )
+        {
+            parser.finish();
+            if ( exitCode == 0 && store.getCount( CompilerMessage.Kind.ERROR ) > 0 )
+            {
+                // javac succeeded, the messages parsed from a source position are warnings
+                for ( int i = 0; i < store.size(); i++ )
+                {
+                    CompilerMessage message = store.get( i );
+                    if ( message.isError() && message.getFile() != null )
+                    {
+                        store.set( i, new CompilerMessage( message.getFile(), CompilerMessage.Kind.WARNING,
+                                                           message.getStartLine(), message.getStartColumn(),
+                                                           message.getEndLine(), message.getEndColumn(),
+                                                           message.getMessage() ) );
+                    }
+                }
+            }
+            return store;
+        }
     }
 
     /**
@@ -528,19 +968,36 @@ public class JavacCompiler
     CompilerResult compileInProcess( String[] args, CompilerConfiguration config )
         throws CompilerException
     {
+        CompilerSpan span = startTimer( config, CompilerMetrics.Timer.STARTUP );
         final Class<?> javacClass = getJavacClass( config );
+        span.end();
+        long metaspace = config.getCompilerMetrics().isEnabled() ? getMetaspaceUsed() : -1;
         final Thread thread = Thread.currentThread();
         final ClassLoader contextClassLoader = thread.getContextClassLoader();
         thread.setContextClassLoader( javacClass.getClassLoader() );
         getLogger().debug( "ttcl changed run compileInProcessWithProperClassloader" );
         try
         {
-            return compileInProcessWithProperClassloader(javacClass, args);
+            span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+            CompilerResult result = compileInProcessWithProperClassloader( javacClass, args );
+            // the output of com.sun.tools.javac.Main is parsed as part of the compilation
+            span.end();
+            count( config, CompilerMetrics.Counter.MESSAGES_PARSED, result.getCompilerMessages().size() );
+
+            // com.sun.tools.javac.Main cannot be stopped, at least do not report a cancelled compilation as done
+            checkCancelled();
+
+            return result;
         }
         finally
         {
             releaseJavaccClass( javacClass, config );
             thread.setContextClassLoader( contextClassLoader );
+            if ( metaspace >= 0 )
+            {
+                // a JVM-wide delta, which concurrent compilations inflate
+                count( config, CompilerMetrics.Counter.METASPACE_BYTES, Math.max( 0, getMetaspaceUsed() - metaspace ) );
+            }
         }
     }
 
@@ -563,7 +1020,12 @@ public class JavacCompiler
 
         try
         {
-            Method compile = javacClass.getMethod( "compile", new Class[]{ String[].class, PrintWriter.class } );
+            Method compile = COMPILE_METHODS.get( javacClass );
+            if ( compile == null )
+            {
+                compile = javacClass.getMethod( "compile", new Class[]{ String[].class, PrintWriter.class } );
+                COMPILE_METHODS.put( javacClass, compile );
+            }
 
             ok = (Integer) compile.invoke( null, new Object[]{ args, new PrintWriter( out ) } );
 
@@ -601,52 +1063,80 @@ public class JavacCompiler
     static List<CompilerMessage> parseModernStream( int exitCode, BufferedReader input )
         throws IOException
     {
-        List<CompilerMessage> errors = new ArrayList<CompilerMessage>();
+        ModernStreamParser parser = new ModernStreamParser( exitCode, new CompilerMessageStore() );
 
         String line;
 
-        StringBuilder buffer;
+        while ( ( line = input.readLine() ) != null )
+        {
+            parser.parseLine( line );
+        }
+
+        return parser.finish();
+    }
+
+    /**
+     * Parses the output of the compiler line by line, so the messages can be stored as the compiler reports them.
+     */
+    static class ModernStreamParser
+    {
+        private final int exitCode;
+
+        private final CompilerMessageStore errors;
+
+        private StringBuilder buffer = new StringBuilder();
 
-        while ( true )
+        /**
+         * @param exitCode The exit code of javac, which makes the messages that are not warnings errors if not 0.
+         * @param errors   The store to add the messages to
+         */
+        ModernStreamParser( int exitCode, CompilerMessageStore errors )
         {
-            // cleanup the buffer
-            buffer = new StringBuilder(); // this is quicker than clearing it
+            this.exitCode = exitCode;
+            this.errors = errors;
+        }
 
-            // most errors terminate with the '^' char
-            do
+        void parseLine( String line )
+        {
+            // TODO: there should be a better way to parse these
+            if ( ( buffer.length() == 0 ) && line.startsWith( "error: " ) )
+            {
+                errors.add( new CompilerMessage( line, true ) );
+            }
+            else if ( ( buffer.length() == 0 ) && isNote( line ) )
+            {
+                // skip, JDK 1.5 telling us deprecated APIs are used but -Xlint:deprecation isn't set
+            }
+            else
             {
-                line = input.readLine();
+                buffer.append( line );
 
-                if ( line == null )
-                {
-                    // javac output not detected by other parsing
-                    if ( buffer.length() > 0 && buffer.toString().startsWith( "javac:" ) )
-                    {
-                        errors.add( new CompilerMessage( buffer.toString(), CompilerMessage.Kind.ERROR ) );
-                    }
-                    return errors;
-                }
+                buffer.append( EOL );
+            }
 
-                // TODO: there should be a better way to parse these
-                if ( ( buffer.length() == 0 ) && line.startsWith( "error: " ) )
-                {
-                    errors.add( new CompilerMessage( line, true ) );
-                }
-                else if ( ( buffer.length() == 0 ) && isNote( line ) )
-                {
-                    // skip, JDK 1.5 telling us deprecated APIs are used but -Xlint:deprecation isn't set
-                }
-                else
-                {
-                    buffer.append( line );
+            // most errors terminate with the '^' char
+            if ( line.endsWith( "^" ) )
+            {
+                // add the error bean
+                errors.add( parseModernError( exitCode, buffer.toString() ) );
 
-                    buffer.append( EOL );
-                }
+                // cleanup the buffer
+                buffer = new StringBuilder(); // this is quicker than clearing it
             }
-            while ( !line.endsWith( "^" ) );
+        }
 
-            // add the error bean
-            errors.add( parseModernError( exitCode, buffer.toString() ) );
+        /**
+         * @return The store
+         */
+        CompilerMessageStore finish()
+        {
+            // javac output not detected by other parsing
+            if ( buffer.length() > 0 && buffer.toString().startsWith( "javac:" ) )
+            {
+                errors.add( new CompilerMessage( buffer.toString(), CompilerMessage.Kind.ERROR ) );
+            }
+            buffer = new StringBuilder();
+            return errors;
         }
     }
 
@@ -873,66 +1363,81 @@ public class JavacCompiler
      * Get the path of the javac tool executable: try to find it depending the OS or the <code>java.home</code>
      * system property or the <code>JAVA_HOME</code> environment variable.
      *
-     * @return the path of the Javadoc tool
+     * @return the path of the javac tool
      * @throws IOException if not found
+     * @see JdkToolchain#getCurrentJavacExecutable()
      */
     private static String getJavacExecutable()
         throws IOException
     {
-        String javacCommand = "javac" + ( Os.isFamily( Os.FAMILY_WINDOWS ) ? ".exe" : "" );
+        return JdkToolchain.getCurrentJavacExecutable();
+    }
 
-        String javaHome = System.getProperty( "java.home" );
-        File javacExe;
-        if ( Os.isName( "AIX" ) )
-        {
-            javacExe = new File( javaHome + File.separator + ".." + File.separator + "sh", javacCommand );
-        }
-        else if ( Os.isName( "Mac OS X" ) )
+    void releaseJavaccClass( Class<?> javaccClass, CompilerConfiguration compilerConfiguration )
+    {
+        switch ( compilerConfiguration.getCompilerReuseStrategy() )
         {
-            javacExe = new File( javaHome + File.separator + "bin", javacCommand );
+            case ReuseCreated:
+                synchronized ( javaccClasses )
+                {
+                    if ( javaccClasses.size() < MAX_POOLED_CLASSES )
+                    {
+                        javaccClasses.add( javaccClass );
+                        return;
+                    }
+                }
+                dispose( javaccClass, compilerConfiguration );
+                break;
+            case AlwaysNew:
+                dispose( javaccClass, compilerConfiguration );
+                break;
+            case ReuseSame:
+            default:
+                // kept for the life of the JVM
         }
-        else
+    }
+
+    /**
+     * Closes the classloader of a javac class which is no longer used, if it was created for it, so that its jar
+     * files are released and its classes can be unloaded.
+     */
+    private void dispose( Class<?> javacClass, CompilerConfiguration compilerConfiguration )
+    {
+        ClassLoader classLoader = javacClass.getClassLoader();
+        if ( !( classLoader instanceof JavacClassLoader ) )
         {
-            javacExe = new File( javaHome + File.separator + ".." + File.separator + "bin", javacCommand );
+            return;
         }
-
-        // ----------------------------------------------------------------------
-        // Try to find javacExe from JAVA_HOME environment variable
-        // ----------------------------------------------------------------------
-        if ( !javacExe.isFile() )
+        COMPILE_METHODS.remove( javacClass );
+        if ( classLoader instanceof Closeable )
         {
-            Properties env = CommandLineUtils.getSystemEnvVars();
-            javaHome = env.getProperty( "JAVA_HOME" );
-            if ( StringUtils.isEmpty( javaHome ) )
+            try
             {
-                throw new IOException( "The environment variable JAVA_HOME is not correctly set." );
+                ( (Closeable) classLoader ).close();
+                count( compilerConfiguration, CompilerMetrics.Counter.CLASS_LOADERS_CLOSED, 1 );
             }
-            if ( !new File( javaHome ).isDirectory() )
+            catch ( IOException e )
             {
-                throw new IOException(
-                    "The environment variable JAVA_HOME=" + javaHome + " doesn't exist or is not a valid directory." );
+                getLogger().debug( "Unable to close the javac classloader: " + e.getMessage() );
             }
-
-            javacExe = new File( env.getProperty( "JAVA_HOME" ) + File.separator + "bin", javacCommand );
         }
-
-        if ( !javacExe.isFile() )
-        {
-            throw new IOException( "The javadoc executable '" + javacExe
-                                       + "' doesn't exist or is not a file. Verify the JAVA_HOME environment variable." );
-        }
-
-        return javacExe.getAbsolutePath();
     }
 
-    private void releaseJavaccClass( Class<?> javaccClass, CompilerConfiguration compilerConfiguration )
+    /**
+     * @return the bytes used by the class metadata of the JVM, <code>-1</code> if it does not tell
+     */
+    private static long getMetaspaceUsed()
     {
-        if ( compilerConfiguration.getCompilerReuseStrategy()
-            == CompilerConfiguration.CompilerReuseStrategy.ReuseCreated )
+        long used = -1;
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
         {
-            javaccClasses.add( javaccClass );
+            String name = pool.getName();
+            if ( "Metaspace".equals( name ) || name.endsWith( "Perm Gen" ) )
+            {
+                used = Math.max( used, 0 ) + pool.getUsage().getUsed();
+            }
         }
-
+        return used;
     }
 
     /**
@@ -941,38 +1446,45 @@ public class JavacCompiler
      * @return the non-null class.
      * @throws CompilerException if the class has not been found.
      */
-    private Class<?> getJavacClass( CompilerConfiguration compilerConfiguration )
+    Class<?> getJavacClass( CompilerConfiguration compilerConfiguration )
         throws CompilerException
     {
         Class<?> c = null;
         switch ( compilerConfiguration.getCompilerReuseStrategy() )
         {
             case AlwaysNew:
-                return createJavacClass();
+                return createJavacClass( compilerConfiguration );
             case ReuseCreated:
+                CompilerSpan span = startTimer( compilerConfiguration, CompilerMetrics.Timer.CACHE_LOOKUP );
                 synchronized ( javaccClasses )
                 {
                     if ( javaccClasses.size() > 0 )
                     {
                         c = javaccClasses.get( 0 );
                         javaccClasses.remove( c );
+                        span.end();
+                        count( compilerConfiguration, CompilerMetrics.Counter.POOL_HITS, 1 );
                         return c;
                     }
                 }
-                c = createJavacClass();
+                span.end();
+                c = createJavacClass( compilerConfiguration );
                 return c;
             case ReuseSame:
             default:
                 c = JavacCompiler.JAVAC_CLASS;
                 if ( c != null )
                 {
+                    count( compilerConfiguration, CompilerMetrics.Counter.POOL_HITS, 1 );
                     return c;
                 }
                 synchronized ( JavacCompiler.LOCK )
                 {
+                    // another thread may have created it while we were waiting for the lock
+                    c = JavacCompiler.JAVAC_CLASS;
                     if ( c == null )
                     {
-                        JavacCompiler.JAVAC_CLASS = c = createJavacClass();
+                        JavacCompiler.JAVAC_CLASS = c = createJavacClass( compilerConfiguration );
                     }
                     return c;
                 }
@@ -982,6 +1494,20 @@ public class JavacCompiler
     }
 
 
+    /**
+     * {@link #createJavacClass() Creates} a javac class, counting the classloader created for it.
+     */
+    private Class<?> createJavacClass( CompilerConfiguration compilerConfiguration )
+        throws CompilerException
+    {
+        Class<?> javacClass = createJavacClass();
+        if ( javacClass.getClassLoader() instanceof JavacClassLoader )
+        {
+            count( compilerConfiguration, CompilerMetrics.Counter.CLASS_LOADERS_CREATED, 1 );
+        }
+        return javacClass;
+    }
+
     /**
      * Helper method for create Javac class
      */
@@ -999,10 +1525,11 @@ public class JavacCompiler
             // ok
         }
 
-        final File toolsJar = new File( System.getProperty( "java.home" ), "../lib/tools.jar" );
-        if ( !toolsJar.exists() )
+        JdkToolchain toolchain = JdkToolchain.current();
+        final File toolsJar = toolchain.getToolsJar();
+        if ( toolsJar == null )
         {
-            throw new CompilerException( "tools.jar not found: " + toolsJar );
+            throw new CompilerException( "tools.jar not found in " + toolchain.getHome() );
         }
 
         try
@@ -1013,7 +1540,7 @@ public class JavacCompiler
             URL[] urls = new URL[originalUrls.length + 1];
             urls[0] = toolsJar.toURI().toURL();
             System.arraycopy(originalUrls, 0, urls, 1, originalUrls.length);
-            ClassLoader javacClassLoader = new URLClassLoader(urls);
+            ClassLoader javacClassLoader = new JavacClassLoader( urls );
 
             final Thread thread = Thread.currentThread();
             final ClassLoader contextClassLoader = thread.getContextClassLoader();
@@ -1044,4 +1571,15 @@ public class JavacCompiler
         }
     }
 
+    /**
+     * Loads javac from <code>tools.jar</code>; only these classloaders are closed once their class is released.
+     */
+    private static class JavacClassLoader
+        extends URLClassLoader
+    {
+        JavacClassLoader( URL[] urls )
+        {
+            super( urls );
+        }
+    }
 }
@@ -18,22 +18,46 @@ package org.codehaus.plexus.compiler.javac;
  * under the License.
  */
 
+import org.codehaus.plexus.compiler.AnnotationProcessorProfile;
+import org.codehaus.plexus.compiler.CompilationTimings;
+import org.codehaus.plexus.compiler.CompilerCancelledException;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMessageStore;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.compiler.util.ClassAbiStripper;
+import org.codehaus.plexus.compiler.util.DeterministicJarWriter;
 
+import javax.annotation.processing.Processor;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -44,13 +68,22 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class JavaxToolsCompiler
 {
     /**
-     * is that thread safe ???
+     * Shared by concurrent compilations with {@link CompilerConfiguration.CompilerReuseStrategy#ReuseSame}: javac
+     * creates a new context for each task, file managers are per compilation and never shared.
      */
     static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
 
     private static List<JavaCompiler> JAVA_COMPILERS = new CopyOnWriteArrayList<JavaCompiler>();
 
     protected static JavaCompiler getJavaCompiler( CompilerConfiguration compilerConfiguration )
+    {
+        return getJavaCompiler( compilerConfiguration, "javac" );
+    }
+
+    /**
+     * @param compilerId the identifier the cache lookup is reported under to the {@link CompilerMetrics}
+     */
+    static JavaCompiler getJavaCompiler( CompilerConfiguration compilerConfiguration, String compilerId )
     {
         switch ( compilerConfiguration.getCompilerReuseStrategy() )
         {
@@ -58,19 +91,25 @@ public class JavaxToolsCompiler
                 return ToolProvider.getSystemJavaCompiler();
             case ReuseCreated:
                 JavaCompiler javaCompiler;
+                CompilerSpan span =
+                    CompilerSpan.start( compilerConfiguration, compilerId, CompilerMetrics.Timer.CACHE_LOOKUP );
                 synchronized ( JAVA_COMPILERS )
                 {
                     if ( JAVA_COMPILERS.size() > 0 )
                     {
                         javaCompiler = JAVA_COMPILERS.get( 0 );
                         JAVA_COMPILERS.remove( javaCompiler );
+                        span.end();
+                        count( compilerConfiguration.getCompilerMetrics(), compilerId, CompilerMetrics.Counter.POOL_HITS, 1 );
                         return javaCompiler;
                     }
                 }
+                span.end();
                 javaCompiler = ToolProvider.getSystemJavaCompiler();
                 return javaCompiler;
             case ReuseSame:
             default:
+                count( compilerConfiguration.getCompilerMetrics(), compilerId, CompilerMetrics.Counter.POOL_HITS, 1 );
                 return COMPILER;
         }
 
@@ -89,14 +128,23 @@ public class JavaxToolsCompiler
         }
     }
 
-    static CompilerResult compileInProcess( String[] args, final CompilerConfiguration config, String[] sourceFiles )
+    /**
+     * @param compilerId the identifier the compilation is reported under to the {@link CompilerMetrics}
+     */
+    static CompilerResult compileInProcess( String[] args, final CompilerConfiguration config, String[] sourceFiles,
+                                            String compilerId )
         throws CompilerException
     {
-        JavaCompiler compiler = getJavaCompiler( config );
+        CompilerMetrics metrics = config.getCompilerMetrics();
+        CompilerSpan span = CompilerSpan.start( config, compilerId, CompilerMetrics.Timer.STARTUP );
+        JavaCompiler compiler = getJavaCompiler( config, compilerId );
+        StandardJavaFileManager standardFileManager = null;
+        AnnotationProcessors processors = null;
         try
         {
             if ( compiler == null )
             {
+                span.end();
                 CompilerMessage message = new CompilerMessage( "No compiler is provided in this environment. "
                                                                    + "Perhaps you are running on a JRE rather than a JDK?",
                                                                CompilerMessage.Kind.ERROR );
@@ -104,12 +152,20 @@ public class JavaxToolsCompiler
             }
             final String sourceEncoding = config.getSourceEncoding();
             final Charset sourceCharset = sourceEncoding == null ? null : Charset.forName( sourceEncoding );
-            final DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
-            final StandardJavaFileManager standardFileManager =
-                compiler.getStandardFileManager( collector, null, sourceCharset );
+            final CompilerMessageStore compilerMsgs = new CompilerMessageStore( config.getMaxWarningsPerCode() );
+            final MessageStoreListener listener = new MessageStoreListener( compilerMsgs );
+            standardFileManager = compiler.getStandardFileManager( listener, null, sourceCharset );
 
-            final Iterable<? extends JavaFileObject> fileObjects =
-                standardFileManager.getJavaFileObjectsFromStrings( Arrays.asList( sourceFiles ) );
+            final List<JavaFileObject> fileObjects = new ArrayList<JavaFileObject>();
+            for ( JavaFileObject fileObject : standardFileManager.getJavaFileObjectsFromStrings(
+                Arrays.asList( sourceFiles ) ) )
+            {
+                fileObjects.add( fileObject );
+            }
+            for ( InMemorySource source : config.getInMemorySources() )
+            {
+                fileObjects.add( new InMemoryJavaFileObject( source ) );
+            }
 
              /*(Writer out,
              JavaFileManager fileManager,
@@ -120,44 +176,104 @@ public class JavaxToolsCompiler
 
             List<String> arguments = Arrays.asList( args );
 
+            JavaFileManager fileManager = standardFileManager;
+            DeterministicJarWriter jar = config.getOutputJarFile() == null ? null : new DeterministicJarWriter();
+            DeterministicJarWriter abiJar = config.getAbiJar() == null ? null : new DeterministicJarWriter();
+            if ( jar != null || abiJar != null )
+            {
+                fileManager = new JarOutputFileManager( standardFileManager, jar, abiJar,
+                                                        jar == null || config.isExplodedOutput() );
+            }
+
+            AnnotationProcessorCache processorCache = AnnotationProcessorCache.open(
+                config, sourceFiles, sourceCharset == null ? Charset.defaultCharset() : sourceCharset );
+            if ( processorCache != null && processorCache.isHit() )
+            {
+                processorCache.replay( fileManager, standardFileManager, sourceFiles, fileObjects );
+            }
+            else
+            {
+                processors = AnnotationProcessors.load( config, compiler.getClass().getClassLoader() );
+                if ( processors != null )
+                {
+                    fileManager = processors.countGeneratedFiles( fileManager );
+                    if ( processorCache != null )
+                    {
+                        fileManager = processorCache.record( fileManager, processors );
+                    }
+                }
+            }
+
             final JavaCompiler.CompilationTask task =
-                compiler.getTask( null, standardFileManager, collector, arguments, null, fileObjects );
-            final Boolean result = task.call();
-            final ArrayList<CompilerMessage> compilerMsgs = new ArrayList<CompilerMessage>();
-            for ( Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics() )
-            {
-                CompilerMessage.Kind kind = convertKind(diagnostic);
-                String baseMessage = diagnostic.getMessage( null );
-                if ( baseMessage == null )
+                compiler.getTask( null, fileManager, config.getMaxErrors() > 0 ? new ErrorLimit( listener, config )
+                    : listener, arguments, null, fileObjects );
+            if ( processors != null )
+            {
+                task.setProcessors( processors.getProcessors() );
+            }
+            else if ( processorCache != null )
+            {
+                // replayed
+                task.setProcessors( Collections.<Processor>emptyList() );
+            }
+            TaskListenerBridge.Callback callback = new MetricsCallback( config, compilerId, new CancellationCheck() );
+            TimingCallback timings = null;
+            if ( config.isCollectTimings() )
+            {
+                callback = timings = new TimingCallback( callback );
+            }
+            TaskListenerBridge.register( task, callback );
+            span.end();
+
+            Boolean result;
+            boolean stoppedEarly = false;
+            span = CompilerSpan.start( config, compilerId, CompilerMetrics.Timer.COMPILE );
+            try
+            {
+                result = task.call();
+            }
+            catch ( RuntimeException e )
+            {
+                if ( TaskListenerBridge.findCause( e, CompilationCancelled.class ) != null )
                 {
-                    continue;
+                    throw new CompilerCancelledException( "The compilation has been cancelled.", e );
                 }
-                JavaFileObject source = diagnostic.getSource();
-                String longFileName = source == null ? null : source.toUri().getPath();
-                String shortFileName = source == null ? null : source.getName();
-                String formattedMessage = baseMessage;
-                int lineNumber = Math.max( 0, (int) diagnostic.getLineNumber() );
-                int columnNumber = Math.max( 0, (int) diagnostic.getColumnNumber() );
-                if ( source != null && lineNumber > 0 )
+                if ( TaskListenerBridge.findCause( e, ErrorLimitReached.class ) == null )
                 {
-                    // Some compilers like to copy the file name into the message, which makes it appear twice.
-                    String possibleTrimming = longFileName + ":" + lineNumber + ": ";
-                    if ( formattedMessage.startsWith( possibleTrimming ) )
+                    throw e;
+                }
+                result = Boolean.FALSE;
+                stoppedEarly = true;
+            }
+            finally
+            {
+                span.end( fileObjects.size() );
+            }
+            int parsed = compilerMsgs.size() + compilerMsgs.getDroppedCount();
+            count( metrics, compilerId, CompilerMetrics.Counter.MESSAGES_PARSED, parsed );
+
+            if ( ( jar != null || abiJar != null ) && result == Boolean.TRUE )
+            {
+                span = CompilerSpan.start( config, compilerId, CompilerMetrics.Timer.CLASS_WRITING );
+                try
+                {
+                    if ( jar != null )
                     {
-                        formattedMessage = formattedMessage.substring( possibleTrimming.length() );
+                        jar.write( config.getOutputJarFile() );
                     }
-                    else
+                    if ( abiJar != null )
                     {
-                        possibleTrimming = shortFileName + ":" + lineNumber + ": ";
-                        if ( formattedMessage.startsWith( possibleTrimming ) )
-                        {
-                            formattedMessage = formattedMessage.substring( possibleTrimming.length() );
-                        }
+                        abiJar.write( config.getAbiJar() );
                     }
                 }
-                compilerMsgs.add(
-                    new CompilerMessage( longFileName, kind, lineNumber, columnNumber, lineNumber, columnNumber,
-                                         formattedMessage ) );
+                finally
+                {
+                    span.end();
+                }
+            }
+            if ( processors != null && processorCache != null && result == Boolean.TRUE )
+            {
+                processorCache.store();
             }
             if ( result != Boolean.TRUE && compilerMsgs.isEmpty() )
             {
@@ -165,7 +281,22 @@ public class JavaxToolsCompiler
                     new CompilerMessage( "An unknown compilation problem occurred", CompilerMessage.Kind.ERROR ) );
             }
 
-            return new CompilerResult( result, compilerMsgs );
+            List<AnnotationProcessorProfile> profiles = null;
+            if ( processors != null )
+            {
+                profiles = processors.getProfiles();
+            }
+            else if ( processorCache != null && config.isProfileAnnotationProcessors() )
+            {
+                // no processor has run
+                profiles = Collections.emptyList();
+            }
+            return new CompilerResult( result, compilerMsgs ).timings( timings == null ? null : timings.timings )
+                .annotationProcessorProfiles( profiles ).stoppedEarly( stoppedEarly );
+        }
+        catch ( CompilerException e )
+        {
+            throw e;
         }
         catch ( Exception e )
         {
@@ -173,8 +304,40 @@ public class JavaxToolsCompiler
         }
         finally
         {
+            close( standardFileManager );
+            if ( processors != null )
+            {
+                processors.close();
+            }
             releaseJavaCompiler( compiler, config );
+        }
+    }
+
+    private static void count( CompilerMetrics metrics, String compilerId, CompilerMetrics.Counter counter,
+                               long amount )
+    {
+        if ( metrics.isEnabled() )
+        {
+            metrics.count( compilerId, counter, amount );
+        }
+    }
 
+    /**
+     * Releases the jar files opened while compiling, so they can be rewritten by concurrent builds.
+     */
+    private static void close( StandardJavaFileManager fileManager )
+    {
+        if ( fileManager == null )
+        {
+            return;
+        }
+        try
+        {
+            fileManager.close();
+        }
+        catch ( IOException e )
+        {
+            // nothing left to do
         }
     }
 
@@ -200,4 +363,366 @@ public class JavaxToolsCompiler
         }
         return kind;
     }
+
+    /**
+     * Reports the time javac spends generating each class.
+     */
+    private static class MetricsCallback
+        implements TaskListenerBridge.Callback
+    {
+        private final CompilerConfiguration config;
+
+        private final String compilerId;
+
+        private final TaskListenerBridge.Callback delegate;
+
+        private CompilerSpan generateSpan;
+
+        MetricsCallback( CompilerConfiguration config, String compilerId, TaskListenerBridge.Callback delegate )
+        {
+            this.config = config;
+            this.compilerId = compilerId;
+            this.delegate = delegate;
+        }
+
+        public void started( String kind, JavaFileObject source )
+        {
+            delegate.started( kind, source );
+            if ( "GENERATE".equals( kind ) )
+            {
+                generateSpan = CompilerSpan.start( config, compilerId, CompilerMetrics.Timer.CLASS_WRITING );
+            }
+        }
+
+        public void finished( String kind, JavaFileObject source )
+        {
+            if ( "GENERATE".equals( kind ) && generateSpan != null )
+            {
+                generateSpan.end( 1 );
+                generateSpan = null;
+                count( config.getCompilerMetrics(), compilerId, CompilerMetrics.Counter.CLASSES_WRITTEN, 1 );
+            }
+            delegate.finished( kind, source );
+        }
+    }
+
+    /**
+     * Adds up the wall time between the start and the end of each javac task event, per kind and per file.
+     */
+    private static class TimingCallback
+        implements TaskListenerBridge.Callback
+    {
+        private final TaskListenerBridge.Callback delegate;
+
+        private final CompilationTimings timings = new CompilationTimings();
+
+        private final Map<String, Long> starts = new HashMap<String, Long>();
+
+        TimingCallback( TaskListenerBridge.Callback delegate )
+        {
+            this.delegate = delegate;
+        }
+
+        public void started( String kind, JavaFileObject source )
+        {
+            delegate.started( kind, source );
+            starts.put( key( kind, source ), System.nanoTime() );
+        }
+
+        public void finished( String kind, JavaFileObject source )
+        {
+            Long start = starts.remove( key( kind, source ) );
+            if ( start != null )
+            {
+                long nanos = System.nanoTime() - start.longValue();
+                timings.addPhase( kind, nanos );
+                if ( source != null )
+                {
+                    timings.addFile( source.toUri().getPath(), nanos );
+                }
+            }
+            delegate.finished( kind, source );
+        }
+
+        private static String key( String kind, JavaFileObject source )
+        {
+            return source == null ? kind : kind + ' ' + source.toUri();
+        }
+    }
+
+    /**
+     * Adds the diagnostics to the message store as javac reports them, rather than collecting them all first.
+     */
+    private static class MessageStoreListener
+        implements DiagnosticListener<JavaFileObject>
+    {
+        private final CompilerMessageStore store;
+
+        MessageStoreListener( CompilerMessageStore store )
+        {
+            this.store = store;
+        }
+
+        public void report( Diagnostic<? extends JavaFileObject> diagnostic )
+        {
+            CompilerMessage.Kind kind = convertKind( diagnostic );
+            String baseMessage = diagnostic.getMessage( null );
+            if ( baseMessage == null )
+            {
+                return;
+            }
+            JavaFileObject source = diagnostic.getSource();
+            String longFileName = source == null ? null : source.toUri().getPath();
+            String shortFileName = source == null ? null : source.getName();
+            String formattedMessage = baseMessage;
+            int lineNumber = Math.max( 0, (int) diagnostic.getLineNumber() );
+            int columnNumber = Math.max( 0, (int) diagnostic.getColumnNumber() );
+            if ( source != null && lineNumber > 0 )
+            {
+                // Some compilers like to copy the file name into the message, which makes it appear twice.
+                String possibleTrimming = longFileName + ":" + lineNumber + ": ";
+                if ( formattedMessage.startsWith( possibleTrimming ) )
+                {
+                    formattedMessage = formattedMessage.substring( possibleTrimming.length() );
+                }
+                else
+                {
+                    possibleTrimming = shortFileName + ":" + lineNumber + ": ";
+                    if ( formattedMessage.startsWith( possibleTrimming ) )
+                    {
+                        formattedMessage = formattedMessage.substring( possibleTrimming.length() );
+                    }
+                }
+            }
+            CompilerMessage message =
+                new CompilerMessage( longFileName, kind, lineNumber, columnNumber, lineNumber, columnNumber,
+                                     formattedMessage );
+            store.add( message, diagnostic.getCode() );
+        }
+    }
+
+    /**
+     * Aborts javac once it reported the {@link CompilerConfiguration#getMaxErrors() maximum number of errors}.
+     */
+    private static class ErrorLimit
+        implements DiagnosticListener<JavaFileObject>
+    {
+        private final DiagnosticListener<JavaFileObject> delegate;
+
+        private final CompilerConfiguration config;
+
+        private int errors;
+
+        ErrorLimit( DiagnosticListener<JavaFileObject> delegate, CompilerConfiguration config )
+        {
+            this.delegate = delegate;
+            this.config = config;
+        }
+
+        public void report( Diagnostic<? extends JavaFileObject> diagnostic )
+        {
+            delegate.report( diagnostic );
+            if ( diagnostic.getKind() == Diagnostic.Kind.ERROR && config.isMaxErrorsReached( ++errors ) )
+            {
+                // rethrown by the task, wrapped by javac
+                throw new ErrorLimitReached();
+            }
+        }
+    }
+
+    private static class ErrorLimitReached
+        extends RuntimeException
+    {
+    }
+
+    /**
+     * Aborts javac on its next task event once the compiling thread has been interrupted.
+     */
+    private static class CancellationCheck
+        implements TaskListenerBridge.Callback
+    {
+        public void started( String kind, JavaFileObject source )
+        {
+            check();
+        }
+
+        public void finished( String kind, JavaFileObject source )
+        {
+            check();
+        }
+
+        private void check()
+        {
+            if ( Thread.currentThread().isInterrupted() )
+            {
+                throw new CompilationCancelled();
+            }
+        }
+    }
+
+    /**
+     * Captures everything javac writes to the class output in memory for the jars, passing it on to the output
+     * directory only if the exploded output is wanted as well.
+     */
+    private static class JarOutputFileManager
+        extends ForwardingJavaFileManager<JavaFileManager>
+    {
+        private final DeterministicJarWriter jar;
+
+        private final DeterministicJarWriter abiJar;
+
+        private final boolean exploded;
+
+        JarOutputFileManager( JavaFileManager fileManager, DeterministicJarWriter jar, DeterministicJarWriter abiJar,
+                              boolean exploded )
+        {
+            super( fileManager );
+            this.jar = jar;
+            this.abiJar = abiJar;
+            this.exploded = exploded;
+        }
+
+        public JavaFileObject getJavaFileForOutput( Location location, String className, JavaFileObject.Kind kind,
+                                                    FileObject sibling )
+            throws IOException
+        {
+            if ( location != StandardLocation.CLASS_OUTPUT )
+            {
+                return super.getJavaFileForOutput( location, className, kind, sibling );
+            }
+            FileObject target = exploded ? super.getJavaFileForOutput( location, className, kind, sibling ) : null;
+            return new CapturedFileObject( className.replace( '.', '/' ) + kind.extension, kind, jar, abiJar, target );
+        }
+
+        public FileObject getFileForOutput( Location location, String packageName, String relativeName,
+                                            FileObject sibling )
+            throws IOException
+        {
+            if ( location != StandardLocation.CLASS_OUTPUT )
+            {
+                return super.getFileForOutput( location, packageName, relativeName, sibling );
+            }
+            FileObject target =
+                exploded ? super.getFileForOutput( location, packageName, relativeName, sibling ) : null;
+            String name =
+                packageName.length() == 0 ? relativeName : packageName.replace( '.', '/' ) + '/' + relativeName;
+            return new CapturedFileObject( name, JavaFileObject.Kind.OTHER, jar, null, target );
+        }
+
+        public boolean isSameFile( FileObject a, FileObject b )
+        {
+            if ( a instanceof CapturedFileObject || b instanceof CapturedFileObject )
+            {
+                // the standard file manager only compares its own file objects
+                return a.toUri().equals( b.toUri() );
+            }
+            return super.isSameFile( a, b );
+        }
+    }
+
+    private static class CapturedFileObject
+        extends SimpleJavaFileObject
+    {
+        private final String name;
+
+        private final DeterministicJarWriter jar;
+
+        private final DeterministicJarWriter abiJar;
+
+        private final FileObject target;
+
+        private byte[] content;
+
+        CapturedFileObject( String name, Kind kind, DeterministicJarWriter jar, DeterministicJarWriter abiJar,
+                            FileObject target )
+        {
+            super( URI.create( "memory:///" + name ), kind );
+            this.name = name;
+            this.jar = jar;
+            this.abiJar = abiJar;
+            this.target = target;
+        }
+
+        public OutputStream openOutputStream()
+        {
+            return new ByteArrayOutputStream()
+            {
+                public void close()
+                    throws IOException
+                {
+                    content = toByteArray();
+                    if ( jar != null )
+                    {
+                        jar.add( name, content );
+                    }
+                    if ( abiJar != null && getKind() == Kind.CLASS )
+                    {
+                        byte[] abi = ClassAbiStripper.strip( content );
+                        if ( abi != null )
+                        {
+                            abiJar.add( name, abi );
+                        }
+                    }
+                    if ( target != null )
+                    {
+                        OutputStream out = target.openOutputStream();
+                        try
+                        {
+                            out.write( content );
+                        }
+                        finally
+                        {
+                            out.close();
+                        }
+                    }
+                }
+            };
+        }
+
+        public InputStream openInputStream()
+            throws IOException
+        {
+            if ( content == null )
+            {
+                throw new FileNotFoundException( name );
+            }
+            return new ByteArrayInputStream( content );
+        }
+
+        public CharSequence getCharContent( boolean ignoreEncodingErrors )
+            throws IOException
+        {
+            if ( content == null )
+            {
+                throw new FileNotFoundException( name );
+            }
+            return new String( content, "UTF-8" );
+        }
+    }
+
+    /**
+     * Serves an {@link InMemorySource} to javac without writing it to disk.
+     */
+    private static class InMemoryJavaFileObject
+        extends SimpleJavaFileObject
+    {
+        private final InMemorySource source;
+
+        InMemoryJavaFileObject( InMemorySource source )
+        {
+            super( URI.create( "memory:///" + source.getPath() ), Kind.SOURCE );
+            this.source = source;
+        }
+
+        public CharSequence getCharContent( boolean ignoreEncodingErrors )
+            throws IOException
+        {
+            return source.getCharContent();
+        }
+    }
+
+    private static class CompilationCancelled
+        extends RuntimeException
+    {
+    }
 }
@@ -0,0 +1,461 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What a JDK home provides to the compiler: its Java version, its javac executable and its <code>tools.jar</code>.
+ * Each home is probed once per JVM; when the <code>plexus.compiler.toolchains</code> system property names a file,
+ * the probes are also kept there for later JVMs, and probed again once the <code>release</code> file or the home
+ * itself changes.
+ *
+ * @since 2.5
+ */
+final class JdkToolchain
+{
+    static final String CACHE_PROPERTY = "plexus.compiler.toolchains";
+
+    private static final ConcurrentMap<String, JdkToolchain> TOOLCHAINS = new ConcurrentHashMap<String, JdkToolchain>();
+
+    private static final Object CACHE_LOCK = new Object();
+
+    private static volatile JdkToolchain current;
+
+    private static volatile Boolean javaxTools;
+
+    private static volatile Object javacExecutable;
+
+    private final File home;
+
+    private final int version;
+
+    private final File executable;
+
+    private final File toolsJar;
+
+    private JdkToolchain( File home, int version, File executable, File toolsJar )
+    {
+        this.home = home;
+        this.version = version;
+        this.executable = executable;
+        this.toolsJar = toolsJar;
+    }
+
+    /**
+     * @return the toolchain of the running JVM
+     */
+    static JdkToolchain current()
+    {
+        JdkToolchain toolchain = current;
+        if ( toolchain == null )
+        {
+            current = toolchain = forJavaHome( new File( System.getProperty( "java.home" ) ) );
+        }
+        return toolchain;
+    }
+
+    /**
+     * @param home a JDK home, or the <code>jre</code> directory of a JDK up to version 8
+     */
+    static JdkToolchain forJavaHome( File home )
+    {
+        String path;
+        try
+        {
+            path = home.getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            path = home.getAbsolutePath();
+        }
+
+        JdkToolchain toolchain = TOOLCHAINS.get( path );
+        if ( toolchain == null )
+        {
+            toolchain = load( path );
+            if ( toolchain == null )
+            {
+                toolchain = probe( new File( path ) );
+                store( path, toolchain );
+            }
+            JdkToolchain existing = TOOLCHAINS.putIfAbsent( path, toolchain );
+            if ( existing != null )
+            {
+                toolchain = existing;
+            }
+        }
+        return toolchain;
+    }
+
+    /**
+     * @return the toolchain of the JDK the given javac executable is part of
+     */
+    static JdkToolchain forExecutable( File executable )
+    {
+        return forJavaHome( executable.getAbsoluteFile().getParentFile().getParentFile() );
+    }
+
+    /**
+     * @return whether <code>javax.tools</code> is available to this JVM, probed once
+     */
+    static boolean isJavaxToolsAvailable()
+    {
+        Boolean available = javaxTools;
+        if ( available == null )
+        {
+            try
+            {
+                Thread.currentThread().getContextClassLoader().loadClass( "javax.tools.ToolProvider" );
+                available = Boolean.TRUE;
+            }
+            catch ( Exception e )
+            {
+                available = Boolean.FALSE;
+            }
+            javaxTools = available;
+        }
+        return available;
+    }
+
+    /**
+     * Gets the javac executable to fork for this JVM: the one of its own JDK, otherwise the one of the JDK named by
+     * the <code>JAVA_HOME</code> environment variable. The outcome is kept for the life of the JVM.
+     *
+     * @throws IOException if neither exists
+     */
+    static String getCurrentJavacExecutable()
+        throws IOException
+    {
+        Object found = javacExecutable;
+        if ( found == null )
+        {
+            try
+            {
+                found = findCurrentJavacExecutable();
+            }
+            catch ( IOException e )
+            {
+                found = e;
+            }
+            javacExecutable = found;
+        }
+        if ( found instanceof IOException )
+        {
+            throw new IOException( ( (IOException) found ).getMessage() );
+        }
+        return (String) found;
+    }
+
+    private static String findCurrentJavacExecutable()
+        throws IOException
+    {
+        File javacExe = current().getExecutable();
+        if ( javacExe != null )
+        {
+            return javacExe.getAbsolutePath();
+        }
+
+        Properties env = CommandLineUtils.getSystemEnvVars();
+        String javaHome = env.getProperty( "JAVA_HOME" );
+        if ( StringUtils.isEmpty( javaHome ) )
+        {
+            throw new IOException( "The environment variable JAVA_HOME is not correctly set." );
+        }
+        if ( !new File( javaHome ).isDirectory() )
+        {
+            throw new IOException(
+                "The environment variable JAVA_HOME=" + javaHome + " doesn't exist or is not a valid directory." );
+        }
+
+        javacExe = new File( javaHome + File.separator + "bin", getJavacCommand() );
+        if ( !javacExe.isFile() )
+        {
+            throw new IOException( "The javac executable '" + javacExe + "' doesn't exist or is not a file. "
+                                       + "Verify the JAVA_HOME environment variable." );
+        }
+        return javacExe.getAbsolutePath();
+    }
+
+    File getHome()
+    {
+        return home;
+    }
+
+    /**
+     * @return the Java feature version, such as 8 or 17, or 0 if unknown
+     */
+    int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return the javac executable of this JDK, <code>null</code> if it has none
+     */
+    File getExecutable()
+    {
+        return executable;
+    }
+
+    /**
+     * @return the <code>tools.jar</code> of this JDK, <code>null</code> if it has none
+     */
+    File getToolsJar()
+    {
+        return toolsJar;
+    }
+
+    private static JdkToolchain probe( File home )
+    {
+        int version = 0;
+        File release = getRelease( home );
+        if ( release != null )
+        {
+            Properties properties = new Properties();
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( release );
+                properties.load( in );
+                version = parseFeatureVersion( properties.getProperty( "JAVA_VERSION", "" ) );
+            }
+            catch ( IOException e )
+            {
+                // unknown
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        if ( version == 0 && isRunningJvm( home ) )
+        {
+            version = parseFeatureVersion( System.getProperty( "java.specification.version", "" ) );
+        }
+
+        String javacCommand = getJavacCommand();
+        File[] candidates;
+        if ( Os.isName( "AIX" ) )
+        {
+            candidates = new File[]{ new File( home, ".." + File.separator + "sh" + File.separator + javacCommand ) };
+        }
+        else
+        {
+            candidates = new File[]{ new File( home, ".." + File.separator + "bin" + File.separator + javacCommand ),
+                new File( home, "bin" + File.separator + javacCommand ) };
+            if ( Os.isName( "Mac OS X" ) )
+            {
+                candidates = new File[]{ candidates[1], candidates[0] };
+            }
+        }
+        File executable = null;
+        for ( File candidate : candidates )
+        {
+            if ( candidate.isFile() )
+            {
+                executable = candidate;
+                break;
+            }
+        }
+
+        File toolsJar = new File( home, ".." + File.separator + "lib" + File.separator + "tools.jar" );
+        if ( !toolsJar.isFile() )
+        {
+            toolsJar = new File( home, "lib" + File.separator + "tools.jar" );
+        }
+
+        return new JdkToolchain( home, version, executable, toolsJar.isFile() ? toolsJar : null );
+    }
+
+    private static boolean isRunningJvm( File home )
+    {
+        try
+        {
+            return home.getCanonicalFile().equals( new File( System.getProperty( "java.home" ) ).getCanonicalFile() );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private static File getRelease( File home )
+    {
+        File release = new File( home, "release" );
+        if ( !release.isFile() )
+        {
+            // the jre directory of a JDK up to 8
+            release = new File( home.getParentFile(), "release" );
+        }
+        return release.isFile() ? release : null;
+    }
+
+    /**
+     * @return what tells whether a probe of the given home is still valid
+     */
+    private static long getStamp( File home )
+    {
+        File release = getRelease( home );
+        return release == null ? home.lastModified() : release.lastModified();
+    }
+
+    private static String getJavacCommand()
+    {
+        return "javac" + ( Os.isFamily( Os.FAMILY_WINDOWS ) ? ".exe" : "" );
+    }
+
+    /**
+     * @return 8 for <code>"1.8.0_392"</code>, 17 for <code>"17.0.9"</code>, 0 if not a version
+     */
+    static int parseFeatureVersion( String version )
+    {
+        version = version.replace( "\"", "" ).trim();
+        if ( version.startsWith( "1." ) )
+        {
+            version = version.substring( 2 );
+        }
+        int end = 0;
+        while ( end < version.length() && Character.isDigit( version.charAt( end ) ) )
+        {
+            end++;
+        }
+        return end == 0 ? 0 : Integer.parseInt( version.substring( 0, end ) );
+    }
+
+    // ----------------------------------------------------------------------
+    // Disk cache
+    // ----------------------------------------------------------------------
+
+    private static File getCacheFile()
+    {
+        String file = System.getProperty( CACHE_PROPERTY );
+        return StringUtils.isEmpty( file ) ? null : new File( file );
+    }
+
+    private static JdkToolchain load( String path )
+    {
+        File file = getCacheFile();
+        if ( file == null || !file.isFile() )
+        {
+            return null;
+        }
+        Properties cache = readCache( file );
+        File home = new File( path );
+        if ( !String.valueOf( getStamp( home ) ).equals( cache.getProperty( path + ".stamp" ) ) )
+        {
+            return null;
+        }
+        String executable = cache.getProperty( path + ".javac", "" );
+        String toolsJar = cache.getProperty( path + ".toolsJar", "" );
+        try
+        {
+            return new JdkToolchain( home, Integer.parseInt( cache.getProperty( path + ".version", "0" ) ),
+                                     executable.length() == 0 ? null : new File( executable ),
+                                     toolsJar.length() == 0 ? null : new File( toolsJar ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    private static void store( String path, JdkToolchain toolchain )
+    {
+        File file = getCacheFile();
+        if ( file == null )
+        {
+            return;
+        }
+        synchronized ( CACHE_LOCK )
+        {
+            Properties cache = readCache( file );
+            cache.setProperty( path + ".stamp", String.valueOf( getStamp( toolchain.home ) ) );
+            cache.setProperty( path + ".version", String.valueOf( toolchain.version ) );
+            cache.setProperty( path + ".javac",
+                               toolchain.executable == null ? "" : toolchain.executable.getAbsolutePath() );
+            cache.setProperty( path + ".toolsJar",
+                               toolchain.toolsJar == null ? "" : toolchain.toolsJar.getAbsolutePath() );
+
+            OutputStream out = null;
+            try
+            {
+                File parent = file.getAbsoluteFile().getParentFile();
+                parent.mkdirs();
+                File temp = File.createTempFile( file.getName(), ".tmp", parent );
+                out = new FileOutputStream( temp );
+                cache.store( out, "JDK toolchains probed by the plexus javac compiler" );
+                out.close();
+                out = null;
+                if ( !temp.renameTo( file ) )
+                {
+                    file.delete();
+                    if ( !temp.renameTo( file ) )
+                    {
+                        temp.delete();
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                // the file is only a cache
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+    }
+
+    private static Properties readCache( File file )
+    {
+        Properties cache = new Properties();
+        if ( file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( file );
+                cache.load( in );
+            }
+            catch ( IOException e )
+            {
+                // probed again
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        return cache;
+    }
+}
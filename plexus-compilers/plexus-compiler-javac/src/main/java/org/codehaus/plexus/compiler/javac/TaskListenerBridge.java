@@ -0,0 +1,186 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Registers a <code>com.sun.source.util.TaskListener</code> on a javax.tools compilation task.
+ * <p/>
+ * The listener API lives in tools.jar up to JDK 8 and is loaded by the classloader of the system compiler, not by
+ * ours, so it is resolved reflectively from the task and implemented with a dynamic proxy forwarding to a
+ * {@link Callback}.
+ *
+ * @since 2.5
+ */
+final class TaskListenerBridge
+{
+    private static final String JAVAC_TASK = "com.sun.source.util.JavacTask";
+
+    private static final String TASK_LISTENER = "com.sun.source.util.TaskListener";
+
+    private static final String TASK_EVENT = "com.sun.source.util.TaskEvent";
+
+    /**
+     * Receives the javac task events. The kind is the name of the <code>TaskEvent.Kind</code> constant
+     * (<code>PARSE</code>, <code>ENTER</code>, <code>ANALYZE</code>, <code>GENERATE</code>, ...) and the source
+     * is <code>null</code> for events not bound to a compilation unit.
+     * <p/>
+     * Runtime exceptions thrown by a callback abort the compilation: they are rethrown by
+     * {@link JavaCompiler.CompilationTask#call()}, possibly wrapped by javac.
+     */
+    interface Callback
+    {
+        void started( String kind, JavaFileObject source );
+
+        void finished( String kind, JavaFileObject source );
+    }
+
+    private TaskListenerBridge()
+    {
+        // no op
+    }
+
+    /**
+     * @return <code>false</code> if the task does not support listeners, as for non javac implementations
+     */
+    static boolean register( JavaCompiler.CompilationTask task, Callback callback )
+    {
+        try
+        {
+            ClassLoader loader = task.getClass().getClassLoader();
+            Class<?> javacTask = Class.forName( JAVAC_TASK, false, loader );
+            if ( !javacTask.isInstance( task ) )
+            {
+                return false;
+            }
+            Class<?> listenerType = Class.forName( TASK_LISTENER, false, loader );
+            Class<?> eventType = Class.forName( TASK_EVENT, false, loader );
+
+            Object listener = Proxy.newProxyInstance( listenerType.getClassLoader(), new Class[]{ listenerType },
+                                                      new ListenerHandler( eventType, callback ) );
+
+            Method register;
+            try
+            {
+                // javac 8+ supports several listeners
+                register = javacTask.getMethod( "addTaskListener", listenerType );
+            }
+            catch ( NoSuchMethodException e )
+            {
+                register = javacTask.getMethod( "setTaskListener", listenerType );
+            }
+            register.invoke( task, listener );
+            return true;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return false;
+        }
+        catch ( NoSuchMethodException e )
+        {
+            return false;
+        }
+        catch ( IllegalAccessException e )
+        {
+            return false;
+        }
+        catch ( InvocationTargetException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Looks for a throwable of the given type in the cause chain, as javac wraps exceptions thrown by listeners.
+     */
+    static <T extends Throwable> T findCause( Throwable throwable, Class<T> type )
+    {
+        for ( Throwable t = throwable; t != null; t = t.getCause() )
+        {
+            if ( type.isInstance( t ) )
+            {
+                return type.cast( t );
+            }
+            if ( t.getCause() == t )
+            {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static class ListenerHandler
+        implements InvocationHandler
+    {
+        private final Callback callback;
+
+        private final Method getKind;
+
+        private final Method getSourceFile;
+
+        ListenerHandler( Class<?> eventType, Callback callback )
+            throws NoSuchMethodException
+        {
+            this.callback = callback;
+            this.getKind = eventType.getMethod( "getKind" );
+            this.getSourceFile = eventType.getMethod( "getSourceFile" );
+        }
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+            throws Throwable
+        {
+            String name = method.getName();
+            if ( "started".equals( name ) || "finished".equals( name ) )
+            {
+                Object event = args[0];
+                String kind = ( (Enum<?>) getKind.invoke( event ) ).name();
+                JavaFileObject source = (JavaFileObject) getSourceFile.invoke( event );
+                if ( "started".equals( name ) )
+                {
+                    callback.started( kind, source );
+                }
+                else
+                {
+                    callback.finished( kind, source );
+                }
+                return null;
+            }
+            if ( "equals".equals( name ) )
+            {
+                return proxy == args[0];
+            }
+            if ( "hashCode".equals( name ) )
+            {
+                return System.identityHashCode( proxy );
+            }
+            if ( "toString".equals( name ) )
+            {
+                return "TaskListener[" + callback + "]";
+            }
+            // default methods added to the listener in later JDKs
+            return null;
+        }
+    }
+}
@@ -25,16 +25,28 @@ package org.codehaus.plexus.compiler.javac;
  */
 
 import org.codehaus.plexus.compiler.AbstractCompilerTest;
+import org.codehaus.plexus.compiler.AnnotationProcessorProfile;
+import org.codehaus.plexus.compiler.CompilationTimings;
+import org.codehaus.plexus.compiler.Compiler;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.InMemorySource;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.jar.JarFile;
 
 /**
  * @author <a href="mailto:jason@plexus.org">Jason van Zyl</a>
@@ -83,6 +95,343 @@ public abstract class AbstractJavacCompilerTest
             "org/codehaus/foo/Person.class", "org/codehaus/foo/ReservedWord.class" } );
     }
 
+    public void testInMemorySources()
+        throws Exception
+    {
+        String name = getClass().getSimpleName();
+        File src = getTestFile( "target/" + getRoleHint() + "/in-memory-src-" + name );
+        FileUtils.deleteDirectory( src );
+        assertTrue( new File( src, "disk" ).mkdirs() );
+        FileUtils.fileWrite( new File( src, "disk/User.java" ).getAbsolutePath(),
+                             "package disk; public class User { gen.Generated g = new gen.Generated(); }" );
+
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-in-memory-" + name );
+        FileUtils.deleteDirectory( compilerConfig.getOutputLocation() );
+        compilerConfig.addSourceLocation( src.getAbsolutePath() );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        compilerConfig.addInMemorySource(
+            new InMemorySource( "gen/Generated.java", "package gen; public class Generated { Helper h; }" ) );
+        compilerConfig.addInMemorySource( new InMemorySource( "gen/Helper.java", "package gen; class Helper {}" ) );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, getRoleHint() );
+        CompilerResult result = compiler.performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        for ( String className : new String[]{ "disk/User.class", "gen/Generated.class", "gen/Helper.class" } )
+        {
+            assertTrue( className, new File( compilerConfig.getOutputLocation(), className ).isFile() );
+        }
+        assertFalse( new File( src, "gen" ).exists() );
+    }
+
+    public void testOutputJar()
+        throws Exception
+    {
+        String name = getClass().getSimpleName();
+        File jar = getTestFile( "target/" + getRoleHint() + "/output-" + name + ".jar" );
+        jar.delete();
+
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-jar-" + name );
+        FileUtils.deleteDirectory( compilerConfig.getOutputLocation() );
+        File stale = new File( compilerConfig.getOutputLocation(), "jarred/Stale.class" );
+        stale.getParentFile().mkdirs();
+        FileUtils.fileWrite( stale.getAbsolutePath(), "left over from an earlier build" );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        compilerConfig.addInMemorySource(
+            new InMemorySource( "jarred/Outer.java", "package jarred; public class Outer { class Inner {} }" ) );
+        compilerConfig.setOutputJarFile( jar );
+        compilerConfig.setExplodedOutput( false );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, getRoleHint() );
+        CompilerResult result = compiler.performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        JarFile jarFile = new JarFile( jar );
+        try
+        {
+            assertNotNull( jarFile.getManifest() );
+            assertNotNull( jarFile.getEntry( "jarred/Outer.class" ) );
+            assertNotNull( jarFile.getEntry( "jarred/Outer$Inner.class" ) );
+            assertNull( jarFile.getEntry( "jarred/Stale.class" ) );
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        assertFalse( new File( compilerConfig.getOutputLocation(), "jarred/Outer.class" ).exists() );
+    }
+
+    public void testTimings()
+        throws Exception
+    {
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation(
+            getBasedir() + "/target/" + getRoleHint() + "/classes-timings-" + getClass().getSimpleName() );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        compilerConfig.addInMemorySource( new InMemorySource( "timed/Small.java", "package timed; class Small {}" ) );
+        compilerConfig.addInMemorySource( new InMemorySource( "timed/Other.java", "package timed; class Other {}" ) );
+        compilerConfig.setCollectTimings( true );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        CompilationTimings timings = result.getTimings();
+        if ( isForceJavacCompilerUse() )
+        {
+            assertNull( timings );
+            return;
+        }
+        assertNotNull( timings );
+        assertTrue( timings.toString(), timings.getPhaseNanos( "PARSE" ) > 0 );
+        assertTrue( timings.toString(), timings.getPhaseNanos( "GENERATE" ) > 0 );
+        assertEquals( 2, timings.getFileNanos().size() );
+        List<String> slowest = timings.getSlowestFiles( 1 );
+        assertEquals( 1, slowest.size() );
+        assertTrue( slowest.get( 0 ), slowest.get( 0 ).endsWith( ".java" ) );
+    }
+
+    public void testAnnotationProcessorProfiles()
+        throws Exception
+    {
+        String processorPath = compileProcessor();
+
+        CompilerResult first = compileWithProcessor( processorPath, "first", "class User { made.Made made; }", null );
+        int cachedClassLoaders = AnnotationProcessors.getCachedClassLoaderCount();
+        CompilerResult second = compileWithProcessor( processorPath, "second", "class User { made.Made made; }", null );
+
+        if ( isForceJavacCompilerUse() )
+        {
+            assertNull( first.getAnnotationProcessorProfiles() );
+            return;
+        }
+        assertEquals( cachedClassLoaders, AnnotationProcessors.getCachedClassLoaderCount() );
+        for ( CompilerResult compiled : new CompilerResult[]{ first, second } )
+        {
+            List<AnnotationProcessorProfile> profiles = compiled.getAnnotationProcessorProfiles();
+            assertEquals( 1, profiles.size() );
+            AnnotationProcessorProfile profile = profiles.get( 0 );
+            assertEquals( "proc.MakingProcessor", profile.getProcessor() );
+            assertEquals( 1, profile.getGeneratedFiles() );
+            assertTrue( profile.toString(), profile.getRoundNanos().size() >= 2 );
+        }
+    }
+
+    private String compileProcessor()
+        throws Exception
+    {
+        String name = getClass().getSimpleName();
+        CompilerConfiguration processorConfig = new CompilerConfiguration();
+        processorConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/processor-" + name );
+        processorConfig.setSourceVersion( "1.6" );
+        processorConfig.setTargetVersion( "1.6" );
+        processorConfig.addInMemorySource( new InMemorySource( "proc/MakingProcessor.java", "package proc; "
+            + "@javax.annotation.processing.SupportedAnnotationTypes( \"*\" ) "
+            + "public class MakingProcessor extends javax.annotation.processing.AbstractProcessor { "
+            + "private boolean done; "
+            + "public javax.lang.model.SourceVersion getSupportedSourceVersion() { "
+            + "return javax.lang.model.SourceVersion.latestSupported(); } "
+            + "public boolean process( java.util.Set<? extends javax.lang.model.element.TypeElement> annotations, "
+            + "javax.annotation.processing.RoundEnvironment roundEnv ) { "
+            + "if ( done ) { return false; } done = true; "
+            + "try { java.io.Writer writer = processingEnv.getFiler().createSourceFile( \"made.Made\" ).openWriter(); "
+            + "writer.write( \"package made; public class Made {}\" ); writer.close(); } "
+            + "catch ( java.io.IOException e ) { throw new RuntimeException( e ); } "
+            + "return false; } }" ) );
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, getRoleHint() );
+        CompilerResult result = compiler.performCompile( processorConfig );
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        return processorConfig.getOutputLocation();
+
+    }
+
+    public void testAnnotationProcessorCache()
+        throws Exception
+    {
+        if ( isForceJavacCompilerUse() )
+        {
+            return;
+        }
+        String processorPath = compileProcessor();
+        File cache = getTestFile( "target/" + getRoleHint() + "/processor-cache-" + getClass().getSimpleName() );
+        FileUtils.deleteDirectory( cache );
+        String source = "class User { made.Made made; }";
+
+        CompilerResult result = compileWithProcessor( processorPath, "cached", source, cache );
+        assertEquals( 1, result.getAnnotationProcessorProfiles().size() );
+        assertTrue( new File( cache, "sources/made/Made.java" ).isFile() );
+
+        File generated = getTestFile(
+            "target/" + getRoleHint() + "/generated-sources-" + getClass().getSimpleName() + "-cached/made/Made.java" );
+        assertTrue( generated.setLastModified( 1000 ) );
+        result = compileWithProcessor( processorPath, "cached", source, cache );
+        assertEquals( "replayed", 0, result.getAnnotationProcessorProfiles().size() );
+        assertEquals( "unchanged generated source rewritten", 1000, generated.lastModified() );
+
+        result = compileWithProcessor( processorPath, "cached", "class User { made.Made made; int changed; }", cache );
+        assertEquals( 1, result.getAnnotationProcessorProfiles().size() );
+        assertEquals( "unchanged generated source rewritten", 1000, generated.lastModified() );
+    }
+
+    private CompilerResult compileWithProcessor( String processorPath, String version, String source, File cache )
+        throws Exception
+    {
+        String name = getClass().getSimpleName() + "-" + version;
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-processed-" + name );
+        FileUtils.deleteDirectory( compilerConfig.getOutputLocation() );
+        compilerConfig.setGeneratedSourcesDirectory(
+            getTestFile( "target/" + getRoleHint() + "/generated-sources-" + name ) );
+        compilerConfig.setSourceVersion( "1.6" );
+        compilerConfig.setTargetVersion( "1.6" );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        compilerConfig.setProcessorPathEntries( Collections.singletonList( processorPath ) );
+        compilerConfig.setAnnotationProcessors( new String[]{ "proc.MakingProcessor" } );
+        compilerConfig.setProfileAnnotationProcessors( true );
+        compilerConfig.setAnnotationProcessorCacheDirectory( cache );
+        compilerConfig.addInMemorySource( new InMemorySource( "user/User.java", "package user; " + source ) );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        assertTrue( new File( compilerConfig.getOutputLocation(), "made/Made.class" ).isFile() );
+        return result;
+    }
+
+    public void testMaxErrors()
+        throws Exception
+    {
+        assertMaxErrors( false );
+    }
+
+    public void testForkedMaxErrors()
+        throws Exception
+    {
+        assertMaxErrors( true );
+    }
+
+    private void assertMaxErrors( boolean fork )
+        throws Exception
+    {
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-max-errors-"
+                                              + ( fork ? "forked-" : "" ) + getClass().getSimpleName() );
+        compilerConfig.setFork( fork );
+        compilerConfig.setWorkingDirectory( new File( getBasedir() ) );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        for ( String name : new String[]{ "First", "Second", "Third" } )
+        {
+            compilerConfig.addInMemorySource(
+                new InMemorySource( "broken/" + name + ".java", "package broken; class " + name + " { int i = \"\"; }" ) );
+        }
+        compilerConfig.setMaxErrors( 1 );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+
+        assertFalse( result.isSuccess() );
+        int errors = 0;
+        for ( CompilerMessage message : result.getCompilerMessages() )
+        {
+            errors += message.isError() ? 1 : 0;
+        }
+        if ( isForceJavacCompilerUse() && !fork )
+        {
+            // com.sun.tools.javac.Main cannot be stopped
+            assertFalse( result.isStoppedEarly() );
+            assertEquals( result.getCompilerMessages().toString(), 3, errors );
+        }
+        else
+        {
+            assertTrue( result.isStoppedEarly() );
+            assertEquals( result.getCompilerMessages().toString(), 1, errors );
+        }
+    }
+
+    public void testAbiJar()
+        throws Exception
+    {
+        String api = "public static final String NAME = \"api\"; public static class Nested {} "
+            + "public <T extends Comparable<T>> Nested pick( java.util.List<T> values ) ";
+
+        byte[] original = compileAbi( "original", "package abi; public class Api { " + api
+            + "{ return new Nested(); } private int count; }" );
+        byte[] reimplemented = compileAbi( "reimplemented", "package abi; public class Api { " + api
+            + "{ helper(); new Thread() { public void run() {} }.start(); return null; } "
+            + "private long count; private static class Hidden {} private void helper() {} }" );
+        byte[] extended = compileAbi( "extended", "package abi; public class Api { " + api
+            + "{ return null; } public void more() {} }" );
+
+        assertTrue( Arrays.equals( original, reimplemented ) );
+        assertFalse( Arrays.equals( original, extended ) );
+
+        File abiJar = getTestFile( "target/" + getRoleHint() + "/abi-" + getClass().getSimpleName() + "-original.jar" );
+        CompilerConfiguration compilerConfig = createAbiConfiguration( "dependent" );
+        compilerConfig.addClasspathEntry( abiJar.getAbsolutePath() );
+        compilerConfig.addInMemorySource( new InMemorySource( "user/User.java", "package user; public class User { "
+            + "String name = abi.Api.NAME; abi.Api.Nested nested = new abi.Api().pick( "
+            + "new java.util.ArrayList<String>() ); }" ) );
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+    }
+
+    private byte[] compileAbi( String version, String source )
+        throws Exception
+    {
+        CompilerConfiguration compilerConfig = createAbiConfiguration( version );
+        compilerConfig.addInMemorySource( new InMemorySource( "abi/Api.java", source ) );
+        File abiJar = getTestFile( "target/" + getRoleHint() + "/abi-" + getClass().getSimpleName() + "-" + version
+                                       + ".jar" );
+        compilerConfig.setAbiJar( abiJar );
+
+        CompilerResult result = ( (Compiler) lookup( Compiler.ROLE, getRoleHint() ) ).performCompile( compilerConfig );
+
+        assertTrue( result.getCompilerMessages().toString(), result.isSuccess() );
+        JarFile jarFile = new JarFile( abiJar );
+        try
+        {
+            assertNotNull( jarFile.getEntry( "abi/Api.class" ) );
+            assertNotNull( jarFile.getEntry( "abi/Api$Nested.class" ) );
+            assertNull( jarFile.getEntry( "abi/Api$1.class" ) );
+            assertNull( jarFile.getEntry( "abi/Api$Hidden.class" ) );
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        InputStream in = new FileInputStream( abiJar );
+        try
+        {
+            return IOUtil.toByteArray( in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private CompilerConfiguration createAbiConfiguration( String version )
+        throws Exception
+    {
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        compilerConfig.setOutputLocation( getBasedir() + "/target/" + getRoleHint() + "/classes-abi-"
+                                              + getClass().getSimpleName() + "-" + version );
+        FileUtils.deleteDirectory( compilerConfig.getOutputLocation() );
+        compilerConfig.setSourceVersion( "1.5" );
+        compilerConfig.setTargetVersion( "1.5" );
+        compilerConfig.setDebug( true );
+        compilerConfig.setForceJavacCompilerUse( isForceJavacCompilerUse() );
+        return compilerConfig;
+    }
+
     public void internalTest( CompilerConfiguration compilerConfiguration, List<String> expectedArguments )
     {
         String[] actualArguments = JavacCompiler.buildCompilerArguments( compilerConfiguration, new String[0] );
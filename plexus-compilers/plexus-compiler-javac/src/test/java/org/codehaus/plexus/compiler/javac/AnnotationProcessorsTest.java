@@ -0,0 +1,112 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class AnnotationProcessorsTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        directory = new File( "target/annotation-processors/" + getName() ).getAbsoluteFile();
+        FileUtils.deleteDirectory( directory );
+    }
+
+    public void testRebuiltProcessorInDirectoryIsLoadedAgain()
+        throws Exception
+    {
+        File processorPath = new File( directory, "processor" );
+        File processor = write( new File( processorPath, "proc/Processor.class" ), "original" );
+        List<String> path = Collections.singletonList( processorPath.getPath() );
+        ClassLoader parent = getClass().getClassLoader();
+
+        ClassLoader first = acquire( path, parent );
+        assertSame( first, acquire( path, parent ) );
+
+        // rebuilt with the same size, the directories keep their time
+        write( processor, "rebuilt!" );
+        processor.setLastModified( processor.lastModified() + 2000 );
+
+        assertNotSame( first, acquire( path, parent ) );
+    }
+
+    public void testEvictedClassLoaderIsClosedOnceReleased()
+        throws Exception
+    {
+        File processorPath = new File( directory, "first" );
+        write( new File( processorPath, "resource.txt" ), "first" );
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setProcessorPathEntries( Collections.singletonList( processorPath.getPath() ) );
+        config.setAnnotationProcessors( new String[0] );
+
+        AnnotationProcessors processors = AnnotationProcessors.load( config, getClass().getClassLoader() );
+        ClassLoader loader = processors.getClassLoader();
+        assertNotNull( loader.getResource( "resource.txt" ) );
+
+        List<AnnotationProcessors> others = new ArrayList<AnnotationProcessors>();
+        for ( int i = 0; i < AnnotationProcessors.MAX_CACHED_CLASSLOADERS; i++ )
+        {
+            CompilerConfiguration other = new CompilerConfiguration();
+            File otherPath = new File( directory, "other-" + i );
+            write( new File( otherPath, "resource.txt" ), "other" );
+            other.setProcessorPathEntries( Collections.singletonList( otherPath.getPath() ) );
+            other.setAnnotationProcessors( new String[0] );
+            others.add( AnnotationProcessors.load( other, getClass().getClassLoader() ) );
+        }
+        // evicted, but still in use
+        assertNotNull( loader.getResource( "resource.txt" ) );
+
+        processors.close();
+        if ( loader instanceof Closeable )
+        {
+            assertNull( loader.getResource( "resource.txt" ) );
+        }
+        for ( AnnotationProcessors other : others )
+        {
+            other.close();
+        }
+    }
+
+    private static ClassLoader acquire( List<String> path, ClassLoader parent )
+        throws Exception
+    {
+        return AnnotationProcessors.acquireClassLoader( path, parent ).loader;
+    }
+
+    private static File write( File file, String content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), content );
+        return file;
+    }
+}
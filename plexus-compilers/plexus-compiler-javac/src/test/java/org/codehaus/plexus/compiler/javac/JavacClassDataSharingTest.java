@@ -0,0 +1,158 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.Os;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class JavacClassDataSharingTest
+    extends TestCase
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        directory = new File( System.getProperty( "basedir", "." ), "target/cds-test/" + getName() );
+        FileUtils.deleteDirectory( directory );
+    }
+
+    public void testArchivesOnFirstForkAndSharesAfterwards()
+        throws Exception
+    {
+        String javac = createJdk( "17.0.9" );
+        JavacClassDataSharing sharing = new JavacClassDataSharing( new File( directory, "cds" ) );
+
+        JavacClassDataSharing.Fork first = sharing.prepare( javac );
+        String dump = first.getArguments()[0];
+        assertTrue( dump, dump.startsWith( "-J-XX:ArchiveClassesAtExit=" ) );
+
+        // a concurrent fork does not write it as well
+        assertEquals( 0, sharing.prepare( javac ).getArguments().length );
+
+        FileUtils.fileWrite( dump.substring( dump.indexOf( '=' ) + 1 ), "archive" );
+        first.finished( true );
+
+        String[] arguments = sharing.prepare( javac ).getArguments();
+        assertTrue( Arrays.toString( arguments ), arguments[0].startsWith( "-J-XX:SharedArchiveFile=" ) );
+        assertTrue( new File( arguments[0].substring( arguments[0].indexOf( '=' ) + 1 ) ).isFile() );
+        assertEquals( 1, new File( directory, "cds" ).list().length );
+    }
+
+    public void testDestroyedForkLeavesTheArchiveToTheNextOne()
+        throws Exception
+    {
+        String javac = createJdk( "21" );
+        JavacClassDataSharing sharing = new JavacClassDataSharing( new File( directory, "cds" ) );
+
+        sharing.prepare( javac ).finished( false );
+
+        String dump = sharing.prepare( javac ).getArguments()[0];
+        assertTrue( dump, dump.startsWith( "-J-XX:ArchiveClassesAtExit=" ) );
+    }
+
+    public void testUpdatedJdkGetsItsOwnArchive()
+        throws Exception
+    {
+        String javac = createJdk( "17.0.9" );
+        JavacClassDataSharing sharing = new JavacClassDataSharing( new File( directory, "cds" ) );
+
+        JavacClassDataSharing.Fork first = sharing.prepare( javac );
+        String dump = first.getArguments()[0];
+        FileUtils.fileWrite( dump.substring( dump.indexOf( '=' ) + 1 ), "archive" );
+        first.finished( true );
+
+        File modules = new File( directory, "jdk-17.0.9/lib/modules" );
+        assertTrue( modules.setLastModified( modules.lastModified() - 60000 ) );
+
+        dump = sharing.prepare( javac ).getArguments()[0];
+        assertTrue( dump, dump.startsWith( "-J-XX:ArchiveClassesAtExit=" ) );
+    }
+
+    public void testForkStoppedByMaxErrorsLeavesTheArchiveToTheNextOne()
+        throws Exception
+    {
+        if ( Os.isFamily( Os.FAMILY_WINDOWS ) )
+        {
+            return;
+        }
+        // reports an error, then waits to be destroyed
+        String javac = createJdk( "17.0.9" );
+        FileUtils.fileWrite( javac, "#!/bin/sh" + EOL
+            + "echo 'Broken.java:1: error: incompatible types' >&2" + EOL
+            + "echo 'class Broken { int i = \"\"; }' >&2" + EOL
+            + "echo '                       ^' >&2" + EOL
+            + "exec sleep 60" + EOL );
+        assertTrue( new File( javac ).setExecutable( true ) );
+
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setWorkingDirectory( directory );
+        config.setOutputLocation( new File( directory, "classes" ).getPath() );
+        config.setFork( true );
+        config.setMaxErrors( 1 );
+
+        File cds = new File( directory, "cds" );
+        System.setProperty( JavacClassDataSharing.DIRECTORY_PROPERTY, cds.getPath() );
+        try
+        {
+            CompilerResult result = new JavacCompiler().compileOutOfProcess( config, javac, new String[0] );
+            assertTrue( result.isStoppedEarly() );
+
+            String dump = JavacClassDataSharing.getShared().prepare( javac ).getArguments()[0];
+            assertTrue( dump, dump.startsWith( "-J-XX:ArchiveClassesAtExit=" ) );
+        }
+        finally
+        {
+            System.getProperties().remove( JavacClassDataSharing.DIRECTORY_PROPERTY );
+        }
+    }
+
+    public void testOlderJdksGetNoArguments()
+        throws Exception
+    {
+        JavacClassDataSharing sharing = new JavacClassDataSharing( new File( directory, "cds" ) );
+
+        assertEquals( 0, sharing.prepare( createJdk( "1.8.0_392" ) ).getArguments().length );
+        assertEquals( 0, sharing.prepare( "javac" ).getArguments().length );
+        assertEquals( 11, JdkToolchain.parseFeatureVersion( "\"11.0.21\"" ) );
+        assertEquals( 0, JdkToolchain.parseFeatureVersion( "" ) );
+    }
+
+    private String createJdk( String version )
+        throws Exception
+    {
+        File home = new File( directory, "jdk-" + version );
+        File javac = new File( home, "bin/javac" );
+        javac.getParentFile().mkdirs();
+        FileUtils.fileWrite( javac.getAbsolutePath(), "" );
+        FileUtils.fileWrite( new File( home, "release" ).getAbsolutePath(), "JAVA_VERSION=\"" + version + "\"" );
+        new File( home, "lib" ).mkdirs();
+        FileUtils.fileWrite( new File( home, "lib/modules" ).getAbsolutePath(), "" );
+        return javac.getAbsolutePath();
+    }
+}
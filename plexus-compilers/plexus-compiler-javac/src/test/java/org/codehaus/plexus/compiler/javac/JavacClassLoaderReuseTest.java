@@ -0,0 +1,182 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.compiler.Compiler;
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerMetrics;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that the legacy <code>com.sun.tools.javac.Main</code> path closes the <code>tools.jar</code> classloaders
+ * it no longer uses. Only runs where javac comes from <code>tools.jar</code>, up to JDK 8.
+ */
+public class JavacClassLoaderReuseTest
+    extends PlexusTestCase
+{
+    public void testAlwaysNewClosesEveryClassLoader()
+        throws Exception
+    {
+        if ( !isToolsJarJavac() )
+        {
+            return;
+        }
+        Map<CompilerMetrics.Counter, Long> counters =
+            compile( CompilerConfiguration.CompilerReuseStrategy.AlwaysNew, 3 );
+
+        assertEquals( counters.toString(), 3L, get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CREATED ) );
+        assertEquals( counters.toString(), 3L, get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CLOSED ) );
+        assertTrue( counters.toString(), counters.containsKey( CompilerMetrics.Counter.METASPACE_BYTES ) );
+    }
+
+    public void testReuseCreatedKeepsItsClassLoader()
+        throws Exception
+    {
+        if ( !isToolsJarJavac() )
+        {
+            return;
+        }
+        Map<CompilerMetrics.Counter, Long> counters =
+            compile( CompilerConfiguration.CompilerReuseStrategy.ReuseCreated, 3 );
+
+        assertEquals( counters.toString(), 1L, get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CREATED ) );
+        assertEquals( counters.toString(), 0L, get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CLOSED ) );
+        assertEquals( counters.toString(), 2L, get( counters, CompilerMetrics.Counter.POOL_HITS ) );
+    }
+
+    public void testReuseCreatedClosesClassLoadersReleasedBeyondTheBound()
+        throws Exception
+    {
+        if ( !isToolsJarJavac() )
+        {
+            return;
+        }
+        Map<CompilerMetrics.Counter, Long> counters =
+            new EnumMap<CompilerMetrics.Counter, Long>( CompilerMetrics.Counter.class );
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setForceJavacCompilerUse( true );
+        configuration.setCompilerReuseStrategy( CompilerConfiguration.CompilerReuseStrategy.ReuseCreated );
+        configuration.setCompilerMetrics( createMetrics( counters ) );
+
+        // as many javac classes in use at once as concurrent compilations would check out
+        JavacCompiler compiler = (JavacCompiler) lookup( Compiler.ROLE, "javac" );
+        int inUse = JavacCompiler.MAX_POOLED_CLASSES + 2;
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for ( int i = 0; i < inUse; i++ )
+        {
+            classes.add( compiler.getJavacClass( configuration ) );
+        }
+        for ( Class<?> javacClass : classes )
+        {
+            compiler.releaseJavaccClass( javacClass, configuration );
+        }
+
+        assertEquals( counters.toString(), (long) inUse,
+                      get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CREATED ) );
+        assertEquals( counters.toString(), 2L, get( counters, CompilerMetrics.Counter.CLASS_LOADERS_CLOSED ) );
+
+        // the pooled ones are still open and reused
+        Class<?> pooled = compiler.getJavacClass( configuration );
+        assertTrue( classes.contains( pooled ) );
+        assertNotNull( pooled.getClassLoader().loadClass( "com.sun.tools.javac.main.Main" ) );
+        assertEquals( counters.toString(), 1L, get( counters, CompilerMetrics.Counter.POOL_HITS ) );
+        compiler.releaseJavaccClass( pooled, configuration );
+    }
+
+    private boolean isToolsJarJavac()
+    {
+        try
+        {
+            getClass().getClassLoader().loadClass( "com.sun.tools.javac.Main" );
+            return false;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return JdkToolchain.current().getToolsJar() != null;
+        }
+    }
+
+    /**
+     * @return the counters reported by the given number of sequential compilations through a fresh compiler
+     */
+    private Map<CompilerMetrics.Counter, Long> compile( CompilerConfiguration.CompilerReuseStrategy strategy,
+                                                        int compilations )
+        throws Exception
+    {
+        File src = getTestFile( "target/classloader-reuse/" + getName() + "/src" );
+        FileUtils.deleteDirectory( src );
+        File source = new File( src, "reuse/Reused.java" );
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite( source.getAbsolutePath(), "package reuse; public class Reused { }" );
+
+        Map<CompilerMetrics.Counter, Long> counters =
+            new EnumMap<CompilerMetrics.Counter, Long>( CompilerMetrics.Counter.class );
+        CompilerMetrics metrics = createMetrics( counters );
+
+        Compiler compiler = (Compiler) lookup( Compiler.ROLE, "javac" );
+        for ( int i = 0; i < compilations; i++ )
+        {
+            CompilerConfiguration configuration = new CompilerConfiguration();
+            configuration.addSourceLocation( src.getAbsolutePath() );
+            configuration.setOutputLocation( getTestFile( "target/classloader-reuse/" + getName() + "/classes-" + i )
+                                                 .getAbsolutePath() );
+            configuration.setForceJavacCompilerUse( true );
+            configuration.setCompilerReuseStrategy( strategy );
+            configuration.setCompilerMetrics( metrics );
+            assertTrue( compiler.performCompile( configuration ).isSuccess() );
+        }
+        return counters;
+    }
+
+    /**
+     * @return metrics adding up their counters into the given map
+     */
+    private static CompilerMetrics createMetrics( final Map<CompilerMetrics.Counter, Long> counters )
+    {
+        return new CompilerMetrics()
+        {
+            public boolean isEnabled()
+            {
+                return true;
+            }
+
+            public void time( String compilerId, Timer timer, long nanos )
+            {
+            }
+
+            public void count( String compilerId, Counter counter, long amount )
+            {
+                counters.put( counter, get( counters, counter ) + amount );
+            }
+        };
+    }
+
+    private static long get( Map<CompilerMetrics.Counter, Long> counters, CompilerMetrics.Counter counter )
+    {
+        Long value = counters.get( counter );
+        return value == null ? 0 : value;
+    }
+}
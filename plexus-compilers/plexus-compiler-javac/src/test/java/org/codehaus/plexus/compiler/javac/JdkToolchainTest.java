@@ -0,0 +1,137 @@
+package org.codehaus.plexus.compiler.javac;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Properties;
+
+public class JdkToolchainTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        directory = new File( System.getProperty( "basedir", "." ), "target/toolchain-test/" + getName() );
+        FileUtils.deleteDirectory( directory );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        System.getProperties().remove( JdkToolchain.CACHE_PROPERTY );
+        super.tearDown();
+    }
+
+    public void testProbesJdk8Layout()
+        throws Exception
+    {
+        File jdk = new File( directory, "jdk8" );
+        write( new File( jdk, "bin/javac" ), "" );
+        write( new File( jdk, "lib/tools.jar" ), "" );
+        write( new File( jdk, "release" ), "JAVA_VERSION=\"1.8.0_392\"" );
+        File jre = new File( jdk, "jre" );
+        jre.mkdirs();
+
+        JdkToolchain toolchain = JdkToolchain.forJavaHome( jre );
+
+        assertEquals( 8, toolchain.getVersion() );
+        assertEquals( new File( jdk, "lib/tools.jar" ).getCanonicalFile(), toolchain.getToolsJar().getCanonicalFile() );
+        assertEquals( new File( jdk, "bin/javac" ).getCanonicalFile(), toolchain.getExecutable().getCanonicalFile() );
+        assertSame( toolchain, JdkToolchain.forJavaHome( jre ) );
+    }
+
+    public void testProbesModularJdkLayout()
+        throws Exception
+    {
+        File jdk = new File( directory, "jdk17" );
+        File javac = new File( jdk, "bin/javac" );
+        write( javac, "" );
+        write( new File( jdk, "release" ), "JAVA_VERSION=\"17.0.9\"" );
+
+        JdkToolchain toolchain = JdkToolchain.forExecutable( javac );
+
+        assertEquals( 17, toolchain.getVersion() );
+        assertNull( toolchain.getToolsJar() );
+        assertEquals( javac.getCanonicalFile(), toolchain.getExecutable().getCanonicalFile() );
+    }
+
+    public void testKeepsProbesOnDisk()
+        throws Exception
+    {
+        File cache = new File( directory, "toolchains.properties" );
+        System.setProperty( JdkToolchain.CACHE_PROPERTY, cache.getAbsolutePath() );
+
+        File probed = new File( directory, "probed" );
+        write( new File( probed, "release" ), "JAVA_VERSION=\"11.0.21\"" );
+        JdkToolchain.forJavaHome( probed );
+
+        Properties properties = read( cache );
+        assertEquals( "11", properties.getProperty( probed.getCanonicalPath() + ".version" ) );
+
+        // a later JVM trusts the file as long as the release file is unchanged
+        File stored = new File( directory, "stored" );
+        File release = new File( stored, "release" );
+        write( release, "JAVA_VERSION=\"11.0.21\"" );
+        String path = stored.getCanonicalPath();
+        properties.setProperty( path + ".stamp", String.valueOf( release.lastModified() ) );
+        properties.setProperty( path + ".version", "99" );
+        FileOutputStream out = new FileOutputStream( cache );
+        try
+        {
+            properties.store( out, null );
+        }
+        finally
+        {
+            out.close();
+        }
+
+        assertEquals( 99, JdkToolchain.forJavaHome( stored ).getVersion() );
+    }
+
+    private static void write( File file, String content )
+        throws Exception
+    {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), content );
+    }
+
+    private static Properties read( File file )
+        throws Exception
+    {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        return properties;
+    }
+}
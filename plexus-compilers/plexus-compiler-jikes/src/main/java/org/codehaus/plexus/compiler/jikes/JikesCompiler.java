@@ -74,11 +74,14 @@ package org.codehaus.plexus.compiler.jikes;
 */
 
 import org.codehaus.plexus.compiler.AbstractCompiler;
+import org.codehaus.plexus.compiler.CompilerCancelledException;
 import org.codehaus.plexus.compiler.CompilerConfiguration;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerMessage;
+import org.codehaus.plexus.compiler.CompilerMetrics;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.compiler.CompilerSpan;
 import org.codehaus.plexus.compiler.util.StreamPumper;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.Os;
@@ -115,9 +118,16 @@ public class JikesCompiler
     // Compiler Implementation
     // -----------------------------------------------------------------------
 
+    protected String getCompilerId()
+    {
+        return "jikes";
+    }
+
     public CompilerResult performCompile( CompilerConfiguration config )
         throws CompilerException
     {
+        rejectInMemorySources( config, getCompilerId() );
+
         // Ensures that the directory exist.
         getDestinationDir( config );
 
@@ -129,7 +139,17 @@ public class JikesCompiler
             // Execute the compiler
             // -----------------------------------------------------------------------
 
-            Process p = Runtime.getRuntime().exec( createCommandLine( config ) );
+            CompilerSpan span = startTimer( config, CompilerMetrics.Timer.ARGUMENT_BUILDING );
+
+            String[] commandLine = createCommandLine( config );
+
+            span.end();
+
+            checkCancelled();
+
+            span = startTimer( config, CompilerMetrics.Timer.COMPILE );
+
+            Process p = Runtime.getRuntime().exec( commandLine );
 
             BufferedInputStream compilerErr = new BufferedInputStream( p.getErrorStream() );
 
@@ -138,7 +158,19 @@ public class JikesCompiler
 
             errPumper.start();
 
-            p.waitFor();
+            CompilerSpan forkWait = startTimer( config, CompilerMetrics.Timer.FORK_WAIT );
+            try
+            {
+                p.waitFor();
+            }
+            catch ( InterruptedException e )
+            {
+                p.destroy();
+                Thread.currentThread().interrupt();
+                throw new CompilerCancelledException( "The compilation has been cancelled.", e );
+            }
+
+            forkWait.end();
 
             int exitValue = p.exitValue();
 
@@ -151,6 +183,8 @@ public class JikesCompiler
 
             tmpErr.close();
 
+            span.end();
+
             // -----------------------------------------------------------------------
             // Parse the output
             // -----------------------------------------------------------------------
@@ -158,10 +192,16 @@ public class JikesCompiler
             BufferedReader input =
                 new BufferedReader( new InputStreamReader( new ByteArrayInputStream( tmpErr.toByteArray() ) ) );
 
+            span = startTimer( config, CompilerMetrics.Timer.OUTPUT_PARSING );
+
             List<CompilerMessage> messages = new ArrayList<CompilerMessage>();
 
             parseStream( input, messages );
 
+            span.end();
+
+            count( config, CompilerMetrics.Counter.MESSAGES_PARSED, messages.size() );
+
             if ( exitValue != 0 && exitValue != 1 )
             {
                 messages.add( new CompilerMessage( "Exit code from jikes was not 0 or 1 ->" + exitValue, true ) );
@@ -270,7 +310,9 @@ public class JikesCompiler
             args.add( sourcePath );
         }
 
-        String[] sourceFiles = getSourceFiles( config );
+        String[] sourceFiles = scanSourceFiles( config );
+
+        countSourceBytes( config, sourceFiles );
 
         if ( Os.isFamily( Os.FAMILY_WINDOWS ) )
         {